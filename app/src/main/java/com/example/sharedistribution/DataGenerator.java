@@ -0,0 +1,330 @@
+package com.example.sharedistribution;
+
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.service.DailyRollupService;
+import com.example.sharedistribution.service.DistributionCalculator;
+import com.example.sharedistribution.service.DistributionPlan;
+import com.example.sharedistribution.service.DistributionPlanService;
+import com.example.sharedistribution.service.HierarchyClosureService;
+import com.example.sharedistribution.service.HierarchyGraphService;
+import com.example.sharedistribution.service.ParticipantBalanceLedger;
+import com.example.sharedistribution.service.ShareConfigSnapshotService;
+import com.example.sharedistribution.service.TradeArchive;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthetic hierarchy and trade history for load and scale testing, run with the application stopped:
+ *   java -jar share-distribution.jar --spring.profiles.active=generate --spring.main.web-application-type=none
+ *        --generate.owners=2 --generate.trades=10000000 --generate.days=90 --generate.seed=42
+ * Adds to whatever is in the database: owners, each with operators / agents / customers at the configured
+ * fan-outs and random share config percentages, then trades spread over the days ending at generate.end-date,
+ * distributed with the same plans as live trades. The same seed and settings give the same rows.
+ * Rows go in through JDBC batches with the trade tables' secondary indexes dropped; indexes, sequences, rollups
+ * and balances are rebuilt at the end. Exits when done.
+ */
+@Component
+@Profile("generate")
+public class DataGenerator {
+
+    private static final String INSERT_PARTICIPANT =
+            "insert into participant (id, name, type, created_at) values (?, ?, ?, ?)";
+    private static final String INSERT_LINK =
+            "insert into hierarchy_link (id, parent_id, child_id, created_at) values (?, ?, ?, ?)";
+    private static final String INSERT_SHARE =
+            "insert into share_config (id, parent_id, child_id, pass_percentage, updated_at, effective_from) values (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_TRADE =
+            "insert into trade (id, customer_id, amount, type, created_at, share_config_version) values (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_DISTRIBUTION =
+            "insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at) "
+            + "values (?, ?, ?, ?, ?, ?)";
+
+    // statements as H2's SCRIPT command writes them
+    private static final Pattern CREATE_INDEX = Pattern.compile("CREATE INDEX (\\S+) ON ");
+    private static final Pattern ADD_FOREIGN_KEY =
+            Pattern.compile("ALTER TABLE (\\S+) ADD CONSTRAINT (\\S+) FOREIGN KEY");
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final HierarchyGraphService hierarchyGraph;
+    private final HierarchyClosureService hierarchyClosure;
+    private final ShareConfigSnapshotService shareSnapshots;
+    private final DistributionPlanService plans;
+    private final SequenceAligner sequences;
+    private final DailyRollupService dailyRollups;
+    private final ParticipantBalanceLedger balanceLedger;
+    private final TradeArchive archive;
+    private final ApplicationContext context;
+
+    private final int owners;
+    private final int operatorsPerOwner;
+    private final int agentsPerOperator;
+    private final int customersPerAgent;
+    private final long trades;
+    private final int days;
+    private final LocalDate endDate;
+    private final long seed;
+    private final int batchSize;
+
+    public DataGenerator(JdbcTemplate jdbc, PlatformTransactionManager txManager,
+                         HierarchyGraphService hierarchyGraph, HierarchyClosureService hierarchyClosure,
+                         ShareConfigSnapshotService shareSnapshots,
+                         DistributionPlanService plans, SequenceAligner sequences,
+                         DailyRollupService dailyRollups, ParticipantBalanceLedger balanceLedger,
+                         TradeArchive archive, ApplicationContext context,
+                         @Value("${generate.owners:1}") int owners,
+                         @Value("${generate.operators-per-owner:5}") int operatorsPerOwner,
+                         @Value("${generate.agents-per-operator:10}") int agentsPerOperator,
+                         @Value("${generate.customers-per-agent:20}") int customersPerAgent,
+                         @Value("${generate.trades:100000}") long trades,
+                         @Value("${generate.days:30}") int days,
+                         @Value("${generate.end-date:}") String endDate,
+                         @Value("${generate.seed:1}") long seed,
+                         @Value("${generate.batch-size:5000}") int batchSize) {
+        if (owners < 1 || operatorsPerOwner < 1 || agentsPerOperator < 1 || customersPerAgent < 1) {
+            throw new IllegalArgumentException("generate.owners and the fan-outs must be >= 1");
+        }
+        if (trades < 0 || days < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("generate.trades must be >= 0, generate.days and generate.batch-size >= 1");
+        }
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.hierarchyGraph = hierarchyGraph;
+        this.hierarchyClosure = hierarchyClosure;
+        this.shareSnapshots = shareSnapshots;
+        this.plans = plans;
+        this.sequences = sequences;
+        this.dailyRollups = dailyRollups;
+        this.balanceLedger = balanceLedger;
+        this.archive = archive;
+        this.context = context;
+        this.owners = owners;
+        this.operatorsPerOwner = operatorsPerOwner;
+        this.agentsPerOperator = agentsPerOperator;
+        this.customersPerAgent = customersPerAgent;
+        this.trades = trades;
+        this.days = days;
+        this.endDate = endDate.isBlank() ? LocalDate.now(DailyRollupService.IST) : LocalDate.parse(endDate.trim());
+        this.seed = seed;
+        this.batchSize = batchSize;
+    }
+
+    // after DataInitializer, so generated ids start past the seeded rows
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        // archived days are read from their files only, so trades generated into them would never be seen
+        if (archive.isArchived(endDate.minusDays(days - 1))) {
+            throw new IllegalStateException("generate.days reaches back into archived days (archived through "
+                    + archive.archivedThrough() + ")");
+        }
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] customers = generateHierarchy(random);
+        System.out.println("Generated " + customers.length + " customers under " + owners + " owners in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        long tradesStart = System.nanoTime();
+        // maintaining the secondary indexes row by row halves the insert rate, so drop them (and the foreign
+        // keys owning the others) for the load and build them in one pass afterwards. The foreign keys come back
+        // unchecked: every generated row references existing ids by construction.
+        List<String> deferred = dropSecondaryIndexes("trade", "trade_distribution");
+        try {
+            generateTrades(random, customers);
+        } finally {
+            long indexStart = System.nanoTime();
+            deferred.forEach(jdbc::execute);
+            System.out.println("Rebuilt " + deferred.size() + " indexes and foreign keys in "
+                    + (System.nanoTime() - indexStart) / 1_000_000 + " ms");
+        }
+        System.out.println("Generated " + trades + " trades over " + days + " days in "
+                + (System.nanoTime() - tradesStart) / 1_000_000 + " ms");
+
+        sequences.align();
+        dailyRollups.rebuild();
+        balanceLedger.rebuild();
+        System.out.println("Data generation finished in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    /**
+     * Insert the participants, links and share configs and return the new customer ids.
+     */
+    private long[] generateHierarchy(SplittableRandom random) {
+        long participantId = nextId("participant");
+        long linkId = nextId("hierarchy_link");
+        long shareId = nextId("share_config");
+        // dated at the start of the trade range rather than now, so reruns produce identical rows
+        OffsetDateTime now = endDate.minusDays(days - 1).atStartOfDay(DailyRollupService.IST).toOffsetDateTime();
+
+        List<Object[]> participants = new ArrayList<>();
+        List<Object[]> links = new ArrayList<>();
+        List<Object[]> shares = new ArrayList<>();
+        int customerCount = owners * operatorsPerOwner * agentsPerOperator * customersPerAgent;
+        long[] customers = new long[customerCount];
+        int c = 0;
+        for (int o = 0; o < owners; o++) {
+            long owner = participantId++;
+            participants.add(new Object[]{owner, "Owner " + owner, "OWNER", now});
+            for (int op = 0; op < operatorsPerOwner; op++) {
+                long operator = participantId++;
+                participants.add(new Object[]{operator, "Operator " + operator, "OPERATOR", now});
+                links.add(new Object[]{linkId++, owner, operator, now});
+                shares.add(new Object[]{shareId++, owner, operator, percentage(random, 70, 95), now, now});
+                for (int a = 0; a < agentsPerOperator; a++) {
+                    long agent = participantId++;
+                    participants.add(new Object[]{agent, "Agent " + agent, "AGENT", now});
+                    links.add(new Object[]{linkId++, operator, agent, now});
+                    shares.add(new Object[]{shareId++, operator, agent, percentage(random, 60, 90), now, now});
+                    for (int k = 0; k < customersPerAgent; k++) {
+                        long customer = participantId++;
+                        participants.add(new Object[]{customer, "Customer " + customer, "CUSTOMER", now});
+                        links.add(new Object[]{linkId++, agent, customer, now});
+                        shares.add(new Object[]{shareId++, agent, customer, percentage(random, 30, 80), now, now});
+                        customers[c++] = customer;
+                    }
+                }
+            }
+        }
+        tx.executeWithoutResult(status -> {
+            jdbc.batchUpdate(INSERT_PARTICIPANT, participants, batchSize, DataGenerator::setRow);
+            jdbc.batchUpdate(INSERT_LINK, links, batchSize, DataGenerator::setRow);
+            jdbc.batchUpdate(INSERT_SHARE, shares, batchSize, DataGenerator::setRow);
+        });
+        // explicit ids bypass the identity columns, so move them past the new rows
+        restartIdentity("participant", participantId);
+        restartIdentity("hierarchy_link", linkId);
+        restartIdentity("share_config", shareId);
+
+        hierarchyClosure.rebuild();
+        hierarchyGraph.reload();
+        shareSnapshots.reload();
+        return customers;
+    }
+
+    /**
+     * Insert the trades in id order with increasing timestamps, batchSize trades per transaction.
+     */
+    private void generateTrades(SplittableRandom random, long[] customers) {
+        long tradeId = Math.max(nextId("trade"), sequenceValue("trade_seq"));
+        long distributionId = Math.max(nextId("trade_distribution"), sequenceValue("trade_distribution_seq"));
+        long from = toMicros(endDate.minusDays(days - 1).atStartOfDay(DailyRollupService.IST).toInstant());
+        long span = toMicros(endDate.plusDays(1).atStartOfDay(DailyRollupService.IST).toInstant()) - from;
+        long step = Math.max(1, span / Math.max(1, trades));
+
+        List<Object[]> tradeRows = new ArrayList<>(batchSize);
+        List<Object[]> lineRows = new ArrayList<>(batchSize * 4);
+        for (long k = 0; k < trades; k++) {
+            long customer = customers[random.nextInt(customers.length)];
+            TradeType type = random.nextBoolean() ? TradeType.PROFIT : TradeType.LOSS;
+            long amountMinor = 100 + random.nextLong(1_000_000);
+            long micros = from + Math.min(span - 1, k * span / trades + random.nextLong(step));
+            OffsetDateTime createdAt = OffsetDateTime.ofInstant(fromMicros(micros), ZoneOffset.UTC);
+
+            DistributionPlan plan = plans.planFor(customer);
+            long[] flow = plan.flow(type);
+            long[] kept = new long[flow.length];
+            long[] passed = new long[flow.length];
+            DistributionCalculator.distribute(amountMinor, plan.passBasisPoints(type), kept, passed);
+
+            tradeRows.add(new Object[]{tradeId, customer, BigDecimal.valueOf(amountMinor, 2), type.name(), createdAt,
+                    plan.getShareConfigVersion()});
+            for (int i = 0; i < flow.length; i++) {
+                lineRows.add(new Object[]{distributionId++, tradeId, flow[i],
+                        BigDecimal.valueOf(kept[i], 2), BigDecimal.valueOf(passed[i], 2), createdAt});
+            }
+            tradeId++;
+            if (tradeRows.size() == batchSize) {
+                insertTrades(tradeRows, lineRows);
+            }
+        }
+        insertTrades(tradeRows, lineRows);
+    }
+
+    private void insertTrades(List<Object[]> tradeRows, List<Object[]> lineRows) {
+        if (tradeRows.isEmpty()) return;
+        tx.executeWithoutResult(status -> {
+            jdbc.batchUpdate(INSERT_TRADE, tradeRows, tradeRows.size(), DataGenerator::setRow);
+            jdbc.batchUpdate(INSERT_DISTRIBUTION, lineRows, lineRows.size(), DataGenerator::setRow);
+        });
+        tradeRows.clear();
+        lineRows.clear();
+    }
+
+    /**
+     * Drop the non-primary-key indexes and foreign keys of the tables; returns the statements recreating them.
+     */
+    private List<String> dropSecondaryIndexes(String... tables) {
+        List<String> script = jdbc.queryForList("script nodata table " + String.join(", ", tables), String.class);
+        List<String> indexes = new ArrayList<>();
+        List<String> foreignKeys = new ArrayList<>();
+        for (String statement : script) {
+            Matcher index = CREATE_INDEX.matcher(statement);
+            Matcher foreignKey = ADD_FOREIGN_KEY.matcher(statement);
+            if (index.lookingAt()) {
+                jdbc.execute("drop index " + index.group(1));
+                indexes.add(statement);
+            } else if (foreignKey.lookingAt()) {
+                jdbc.execute("alter table " + foreignKey.group(1) + " drop constraint " + foreignKey.group(2));
+                foreignKeys.add(statement);
+            }
+        }
+        // foreign keys last, so they pick up a recreated index instead of building their own
+        indexes.addAll(foreignKeys);
+        return indexes;
+    }
+
+    private static void setRow(PreparedStatement ps, Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            ps.setObject(i + 1, row[i]);
+        }
+    }
+
+    // whole basis points in [min, max] percent, e.g. 87.35
+    private static BigDecimal percentage(SplittableRandom random, int min, int max) {
+        return BigDecimal.valueOf(random.nextInt(min * 100, max * 100 + 1), 2);
+    }
+
+    private long nextId(String table) {
+        Long max = jdbc.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+        return (max == null ? 0 : max) + 1;
+    }
+
+    private long sequenceValue(String sequence) {
+        List<Long> next = jdbc.queryForList(
+                "select base_value from information_schema.sequences where lower(sequence_name) = ?", Long.class, sequence);
+        return next.isEmpty() || next.get(0) == null ? 0 : next.get(0);
+    }
+
+    private void restartIdentity(String table, long next) {
+        jdbc.execute("alter table " + table + " alter column id restart with " + next);
+    }
+
+    private static long toMicros(Instant t) {
+        return t.getEpochSecond() * 1_000_000L + t.getNano() / 1_000;
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+}
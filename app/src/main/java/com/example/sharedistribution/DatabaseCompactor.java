@@ -0,0 +1,58 @@
+package com.example.sharedistribution;
+
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.db.Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Gives the space of deleted rows back to the file system while the database stays open.
+ * H2 reuses free pages for new rows, but its background compaction never shrinks the file, and
+ * SHUTDOWN COMPACT needs the database closed. MVStore can move the live pages to the front of the file and
+ * truncate it online; writers keep running, only slower while pages are being moved.
+ */
+@Component
+public class DatabaseCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseCompactor.class);
+
+    /**
+     * File size before and after compaction, in bytes; both 0 for databases without a file (in-memory, remote).
+     */
+    public record Result(long bytesBefore, long bytesAfter) {}
+
+    private final DataSource dataSource;
+
+    public DatabaseCompactor(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Compact the database file for at most maxMillis.
+     */
+    public Result compact(int maxMillis) {
+        try (Connection c = dataSource.getConnection()) {
+            if (!c.isWrapperFor(JdbcConnection.class)
+                    || !(c.unwrap(JdbcConnection.class).getSession() instanceof SessionLocal session)) {
+                return new Result(0, 0);
+            }
+            Store store = session.getDatabase().getStore();
+            if (store == null || store.getMvStore().getFileStore() == null) {
+                return new Result(0, 0);
+            }
+            long before = store.getMvStore().getFileStore().size();
+            store.compactFile(maxMillis);
+            long after = store.getMvStore().getFileStore().size();
+            log.info("Compacted database file from {} to {} bytes", before, after);
+            return new Result(before, after);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not compact the database: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.sharedistribution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps how many threads hold a database connection at once (db.access.limit). With request.threads=virtual
+ * nothing else bounds concurrency, so every in-flight request would queue inside the connection pool, and
+ * threads blocked in the H2 driver's synchronized code pin their carrier threads; the limit is on by default
+ * there. On platform threads it is off by default and can be switched on to queue requests in FIFO order
+ * ahead of the pool instead of inside it.
+ * Threads wait for a permit in FIFO order; one that gets none within db.access.timeout-ms fails with
+ * SQLTransientConnectionException, the same error as a connection pool timeout. Only connection acquisition
+ * is gated, so write-behind trade executions, which touch no database, are never held up.
+ */
+@Component
+public class DbAccessLimiter implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(DbAccessLimiter.class);
+
+    private final boolean enabled;
+    private final Semaphore permits;
+    private final long timeoutMs;
+
+    // permits default to the connection pool size: more could only wait inside the pool
+    public DbAccessLimiter(@Value("${db.access.limit:}") String limit,
+                           @Value("${request.threads:platform}") String requestThreads,
+                           @Value("${db.access.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+                           @Value("${db.access.timeout-ms:5000}") long timeoutMs) {
+        if (permits < 1) throw new IllegalArgumentException("db.access.permits must be >= 1");
+        this.enabled = limit.isBlank() ? RequestThreads.isVirtual(requestThreads) : Boolean.parseBoolean(limit.trim());
+        this.permits = new Semaphore(permits, true);
+        this.timeoutMs = timeoutMs;
+        if (enabled) log.info("Database access limited to {} concurrent connections", permits);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource ds && !(bean instanceof LimitedDataSource)) {
+            return new LimitedDataSource(ds);
+        }
+        return bean;
+    }
+
+    private Connection acquire(ConnectionSupplier supplier) throws SQLException {
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Database busy: no connection permit within " + timeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection permit", e);
+        }
+        Connection c;
+        try {
+            c = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return releasingOnClose(c);
+    }
+
+    // the permit goes back exactly once, when the connection is returned to the pool
+    private Connection releasingOnClose(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+    private class LimitedDataSource extends DelegatingDataSource {
+        LimitedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return acquire(() -> obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return acquire(() -> obtainTargetDataSource().getConnection(username, password));
+        }
+    }
+}
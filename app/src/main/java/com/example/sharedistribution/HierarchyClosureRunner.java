@@ -0,0 +1,36 @@
+package com.example.sharedistribution;
+
+import com.example.sharedistribution.service.HierarchyClosureService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Offline rebuild of hierarchy_closure from hierarchy_link, e.g. after links were loaded with SQL:
+ *   java -jar share-distribution.jar --hierarchy.closure.rebuild=true --spring.main.web-application-type=none
+ * Runs once the application is ready and exits when done.
+ */
+@Component
+@ConditionalOnProperty(name = "hierarchy.closure.rebuild", havingValue = "true")
+public class HierarchyClosureRunner {
+
+    private final HierarchyClosureService closure;
+    private final ApplicationContext context;
+
+    public HierarchyClosureRunner(HierarchyClosureService closure, ApplicationContext context) {
+        this.closure = closure;
+        this.context = context;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        long start = System.nanoTime();
+        int rows = closure.rebuild();
+        System.out.println("Rebuilt hierarchy_closure with " + rows + " rows in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
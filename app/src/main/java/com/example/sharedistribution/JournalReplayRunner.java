@@ -0,0 +1,44 @@
+package com.example.sharedistribution;
+
+import com.example.sharedistribution.service.JournalReplayService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Offline replay of the trade journal, run with the application stopped:
+ *   java -jar share-distribution.jar --journal.replay=tables  --spring.main.web-application-type=none
+ *   java -jar share-distribution.jar --journal.replay=rollups --spring.main.web-application-type=none
+ * Runs once the application is ready (after DataInitializer) and exits when done.
+ */
+@Component
+@ConditionalOnProperty(name = "journal.replay")
+public class JournalReplayRunner {
+
+    private final JournalReplayService replay;
+    private final ApplicationContext context;
+    private final String mode;
+
+    public JournalReplayRunner(JournalReplayService replay, ApplicationContext context,
+                               @Value("${journal.replay}") String mode) {
+        this.replay = replay;
+        this.context = context;
+        this.mode = mode;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        long start = System.nanoTime();
+        String result = switch (mode.trim().toLowerCase()) {
+            case "tables" -> "Inserted " + replay.replayTables() + " trades from the journal";
+            case "rollups" -> "Rebuilt rollups of " + replay.replayRollups() + " days from the journal";
+            default -> throw new IllegalArgumentException("journal.replay must be 'tables' or 'rollups'");
+        };
+        System.out.println(result + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.sharedistribution;
+
+import com.example.sharedistribution.controller.ReactiveTradeController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Serves the reactive trade API (ReactiveTradeController) with Reactor Netty on trade.reactive.port, next to
+ * the servlet server that keeps every other endpoint. Off unless a port is set; 0 picks a free port.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ReactiveTradeServer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveTradeServer.class);
+
+    private final ReactiveTradeController controller;
+    private final ObjectMapper objectMapper;
+    private final int port;
+
+    private DisposableServer server;
+
+    public ReactiveTradeServer(ReactiveTradeController controller,
+                               ObjectMapper objectMapper,
+                               @Value("${trade.reactive.port:-1}") int port) {
+        this.controller = controller;
+        this.objectMapper = objectMapper;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (port < 0) return;
+        // the application's ObjectMapper, so JSON looks the same on both servers
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(c -> {
+                    c.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    c.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                })
+                .build();
+        HttpHandler handler = RouterFunctions.toHttpHandler(controller.routes(), strategies);
+        server = HttpServer.create().port(port).handle(new ReactorHttpHandlerAdapter(handler)).bindNow();
+        log.info("Reactive trade API listening on port {}", server.port());
+    }
+
+    /**
+     * The bound port, or -1 when the API is off.
+     */
+    public int port() {
+        return server == null ? -1 : server.port();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) server.disposeNow();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.sharedistribution;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Which threads serve the servlet API (every controller on server.port), set by request.threads:
+ *   platform  Tomcat's own pool of server.tomcat.threads.max threads (the default)
+ *   virtual   one virtual thread per request; needs a Java 21+ runtime and fails startup on an older one
+ * The project compiles for Java 17, so the virtual-thread executor is looked up at runtime. In virtual mode
+ * DbAccessLimiter is on by default and is what bounds database concurrency.
+ */
+@Component
+public class RequestThreads implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestThreads.class);
+
+    private final ExecutorService executor;
+
+    public RequestThreads(@Value("${request.threads:platform}") String mode) {
+        this.executor = isVirtual(mode) ? virtualThreadPerTaskExecutor() : null;
+    }
+
+    static boolean isVirtual(String mode) {
+        return switch (mode.trim().toLowerCase()) {
+            case "platform" -> false;
+            case "virtual" -> true;
+            default -> throw new IllegalArgumentException("request.threads must be 'platform' or 'virtual'");
+        };
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        if (executor == null) return;
+        factory.addProtocolHandlerCustomizers(handler -> handler.setExecutor(executor));
+        log.info("Serving requests on virtual threads");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) executor.shutdown();
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("request.threads=virtual needs Java 21+, running on " + Runtime.version());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual-thread executor", e);
+        }
+    }
+}
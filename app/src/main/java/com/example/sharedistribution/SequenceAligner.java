@@ -0,0 +1,42 @@
+package com.example.sharedistribution;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Trade ids used to be IDENTITY columns and now come from sequences. On a database created before that
+ * change (or after rows were inserted with explicit ids) the sequence may lag behind max(id), so restart it
+ * past the existing rows before anything inserts.
+ */
+@Component
+public class SequenceAligner {
+
+    // table -> sequence
+    private static final List<String[]> SEQUENCES = List.of(
+            new String[]{"trade", "trade_seq"},
+            new String[]{"trade_distribution", "trade_distribution_seq"});
+
+    private final JdbcTemplate jdbc;
+
+    // the EntityManagerFactory dependency makes sure Hibernate has created/updated the schema first
+    public SequenceAligner(JdbcTemplate jdbc, EntityManagerFactory emf) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    public void align() {
+        for (String[] s : SEQUENCES) {
+            Long max = jdbc.queryForObject("select coalesce(max(id), 0) from " + s[0], Long.class);
+            Long next = jdbc.queryForObject(
+                    "select base_value from information_schema.sequences where lower(sequence_name) = ?",
+                    Long.class, s[1]);
+            if (next != null && max != null && next <= max) {
+                jdbc.execute("alter sequence " + s[1] + " restart with " + (max + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.sharedistribution;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// R2DBC is only used by ReactiveTradeService, on its own connection; a ConnectionFactory bean would replace the DataSource
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
+public class ShareDistributionApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(ShareDistributionApplication.class, args);
+	}
+
+}
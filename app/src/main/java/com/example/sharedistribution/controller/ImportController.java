@@ -0,0 +1,58 @@
+package com.example.sharedistribution.controller;
+
+import com.example.sharedistribution.service.HierarchyImportReader;
+import com.example.sharedistribution.service.HierarchyImportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/imports")
+public class ImportController {
+
+    private final HierarchyImportService imports;
+
+    public ImportController(HierarchyImportService imports) {
+        this.imports = imports;
+    }
+
+    /**
+     * Create participants, links and share configs from one file, all or nothing
+     * POST /api/imports/hierarchy   (Content-Type: text/csv or application/x-ndjson)
+     *   {"kind":"participant","ref":"op-1","name":"Operator 1","type":"OPERATOR"}
+     *   {"kind":"link","parent":"#1","child":"op-1"}
+     *   {"kind":"share","parent":"#1","child":"op-1","passPercentage":90}
+     * "#1" is the existing participant with id 1, other references are refs of the same file.
+     * Returns 201 with the counts and the id of every ref, or 400 with the errors by line number.
+     */
+    @PostMapping(value = "/hierarchy", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> importHierarchy(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                             InputStream body) throws IOException {
+        MediaType type = MediaType.parseMediaType(contentType);
+        HierarchyImportReader.Format format = "csv".equalsIgnoreCase(type.getSubtype())
+                ? HierarchyImportReader.Format.CSV : HierarchyImportReader.Format.NDJSON;
+        Charset charset = type.getCharset() != null ? type.getCharset() : StandardCharsets.UTF_8;
+
+        HierarchyImportService.Result result = imports.importFile(new InputStreamReader(body, charset), format);
+        if (result.errorCount() > 0) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", result.errorCount() + " invalid rows, nothing was imported",
+                    "errors", result.errors()));
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
+                "participants", result.participants(),
+                "links", result.links(),
+                "shares", result.shares(),
+                "elapsedMs", result.elapsedMs(),
+                "ids", result.ids()));
+    }
+}
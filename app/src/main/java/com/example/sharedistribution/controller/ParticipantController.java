@@ -0,0 +1,264 @@
+package com.example.sharedistribution.controller;
+
+import com.example.sharedistribution.dto.CursorPage;
+import com.example.sharedistribution.entity.HierarchyLink;
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ParticipantType;
+import com.example.sharedistribution.repository.DailyParticipantRollupRepository;
+import com.example.sharedistribution.repository.HierarchyClosureRepository;
+import com.example.sharedistribution.repository.HierarchyLinkRepository;
+import com.example.sharedistribution.repository.ParticipantRepository;
+import com.example.sharedistribution.repository.RollupTotals;
+import com.example.sharedistribution.service.HierarchyClosureService;
+import com.example.sharedistribution.service.HierarchyGraphService;
+import com.example.sharedistribution.service.ParticipantBalanceLedger;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/participants")
+public class ParticipantController {
+
+    private final ParticipantRepository participantRepo;
+    private final HierarchyLinkRepository linkRepo;
+    private final HierarchyClosureRepository closureRepo;
+    private final DailyParticipantRollupRepository rollupRepo;
+    private final HierarchyGraphService hierarchyGraph;
+    private final HierarchyClosureService hierarchyClosure;
+    private final ParticipantBalanceLedger balanceLedger;
+
+    public ParticipantController(ParticipantRepository participantRepo,
+                                 HierarchyLinkRepository linkRepo,
+                                 HierarchyClosureRepository closureRepo,
+                                 DailyParticipantRollupRepository rollupRepo,
+                                 HierarchyGraphService hierarchyGraph,
+                                 HierarchyClosureService hierarchyClosure,
+                                 ParticipantBalanceLedger balanceLedger) {
+        this.participantRepo = participantRepo;
+        this.linkRepo = linkRepo;
+        this.closureRepo = closureRepo;
+        this.rollupRepo = rollupRepo;
+        this.hierarchyGraph = hierarchyGraph;
+        this.hierarchyClosure = hierarchyClosure;
+        this.balanceLedger = balanceLedger;
+    }
+
+    // Create participant
+    @PostMapping
+    public ResponseEntity<Participant> create(@Valid @RequestBody ParticipantRequest req) {
+        if (req.name == null || req.name.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Participant p = new Participant(req.name, ParticipantType.valueOf(req.type));
+        Participant saved = participantRepo.save(p);
+        hierarchyGraph.onParticipantSaved(saved);
+        return ResponseEntity.created(URI.create("/api/participants/" + saved.getId())).body(saved);
+    }
+
+    // Update participant (name or type)
+    @PutMapping("/{id}")
+    public ResponseEntity<?> update(@PathVariable("id") Long id, @Valid @RequestBody ParticipantRequest req) {
+        return participantRepo.findById(id).map(existing -> {
+            if (req.name != null && !req.name.isBlank()) existing.setName(req.name);
+            if (req.type != null && !req.type.isBlank()) {
+                try {
+                    ParticipantType pt = ParticipantType.valueOf(req.type.trim().toUpperCase());
+                    existing.setType(pt);
+                } catch (IllegalArgumentException ex) {
+                    return ResponseEntity.badRequest().body(Map.of("error","Invalid type. Allowed: OWNER,OPERATOR,AGENT,CUSTOMER"));
+                }
+            }
+            Participant saved = participantRepo.save(existing);
+            hierarchyGraph.onParticipantSaved(saved);
+            return ResponseEntity.ok(saved);
+        }).orElse(ResponseEntity.notFound().build());
+    }
+
+
+    /**
+     * List participants one page at a time, ordered by id
+     * GET /api/participants?type=CUSTOMER&after=&limit=
+     * type is optional; pass the returned nextCursor as after for the next page.
+     */
+    @GetMapping
+    public ResponseEntity<?> list(@RequestParam(value = "type", required = false) String type,
+                                  @RequestParam(value = "after", defaultValue = "0") Long after,
+                                  @RequestParam(value = "limit", required = false) Integer limit) {
+        int size = CursorPage.pageSize(limit);
+        List<Participant> rows;
+        if (type == null || type.isBlank()) {
+            rows = participantRepo.findByIdGreaterThanOrderByIdAsc(after, Limit.of(size + 1));
+        } else {
+            ParticipantType pt;
+            try {
+                pt = ParticipantType.valueOf(type.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().body(Map.of("error","Invalid type. Allowed: OWNER,OPERATOR,AGENT,CUSTOMER"));
+            }
+            rows = participantRepo.findByTypeAndIdGreaterThanOrderByIdAsc(pt, after, Limit.of(size + 1));
+        }
+        return ResponseEntity.ok(CursorPage.of(rows, size, Participant::getId));
+    }
+
+    /**
+     * Direct children of a participant, paged like the list
+     * GET /api/participants/{id}/children?after=&limit=
+     */
+    @GetMapping("/{id}/children")
+    public ResponseEntity<?> children(@PathVariable("id") Long id,
+                                      @RequestParam(value = "after", defaultValue = "0") Long after,
+                                      @RequestParam(value = "limit", required = false) Integer limit) {
+        if (!hierarchyGraph.contains(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        int size = CursorPage.pageSize(limit);
+        List<Participant> rows = linkRepo.findByParent(id, after, Limit.of(size + 1));
+        return ResponseEntity.ok(CursorPage.of(rows, size, Participant::getId));
+    }
+
+    /**
+     * Descendants of one type at any depth, paged like the list; read from hierarchy_closure
+     * GET /api/participants/{id}/descendants?type=CUSTOMER&after=&limit=
+     */
+    @GetMapping("/{id}/descendants")
+    public ResponseEntity<?> descendants(@PathVariable("id") Long id,
+                                         @RequestParam(value = "type", defaultValue = "CUSTOMER") String type,
+                                         @RequestParam(value = "after", defaultValue = "0") Long after,
+                                         @RequestParam(value = "limit", required = false) Integer limit) {
+        if (!hierarchyGraph.contains(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        ParticipantType pt;
+        try {
+            pt = ParticipantType.valueOf(type.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error","Invalid type. Allowed: OWNER,OPERATOR,AGENT,CUSTOMER"));
+        }
+        int size = CursorPage.pageSize(limit);
+        List<Participant> rows = hierarchyClosure.descendants(id, pt, after, size + 1);
+        return ResponseEntity.ok(CursorPage.of(rows, size, Participant::getId));
+    }
+
+    // Ancestor ids from the parent up to the root
+    @GetMapping("/{id}/ancestors")
+    public ResponseEntity<?> ancestors(@PathVariable("id") Long id) {
+        if (!hierarchyGraph.contains(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("participantId", id, "ancestors", closureRepo.findAncestorIds(id)));
+    }
+
+    // Is {id} an ancestor of {descendantId}? 200 with the number of links between them, else 404
+    @GetMapping("/{id}/descendants/{descendantId}")
+    public ResponseEntity<?> isAncestor(@PathVariable("id") Long id, @PathVariable("descendantId") Long descendantId) {
+        return closureRepo.findDepth(id, descendantId)
+                .<ResponseEntity<?>>map(depth -> ResponseEntity.ok(Map.of(
+                        "ancestorId", id, "descendantId", descendantId, "depth", depth)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Kept/passed totals of a participant's whole subtree (itself included) and its trade count over IST days
+     * from..to inclusive. Served from the participant's own daily rollup rows, so the cost depends on the
+     * number of days, not on the size of the downline.
+     * GET /api/participants/{id}/rollup?from=2025-03-01&to=2025-03-31
+     */
+    @GetMapping("/{id}/rollup")
+    public ResponseEntity<?> rollup(@PathVariable("id") Long id,
+                                    @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                    @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (!hierarchyGraph.contains(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (from.isAfter(to)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "from must not be after to"));
+        }
+        RollupTotals totals = rollupRepo.findTotalsBetween(id, from, to);
+        return ResponseEntity.ok(Map.of(
+                "participantId", id,
+                "name", hierarchyGraph.nameOf(id),
+                "from", from,
+                "to", to,
+                // every trade in the subtree has a line for each of its ancestors, this one included
+                "tradeCount", totals.getTradeCount() == null ? 0L : totals.getTradeCount(),
+                "totalKept", amount(totals.getSubtreeKept()),
+                "totalPassed", amount(totals.getSubtreePassed()),
+                "ownKept", amount(totals.getTotalKept()),
+                "ownPassed", amount(totals.getTotalPassed())));
+    }
+
+    private static BigDecimal amount(BigDecimal sum) {
+        return sum == null ? BigDecimal.ZERO.setScale(2) : sum.setScale(2);
+    }
+
+    // Live kept/passed totals for a participant (served from the in-memory ledger)
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<?> balance(@PathVariable("id") Long id) {
+        if (!hierarchyGraph.contains(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        BigDecimal[] totals = balanceLedger.balanceOf(id);
+        BigDecimal kept = totals == null ? BigDecimal.ZERO.setScale(2) : totals[0];
+        BigDecimal passed = totals == null ? BigDecimal.ZERO.setScale(2) : totals[1];
+        return ResponseEntity.ok(Map.of(
+                "participantId", id,
+                "name", hierarchyGraph.nameOf(id),
+                "totalKept", kept,
+                "totalPassed", passed));
+    }
+
+    // Create parent-child link
+    @PostMapping("/link")
+    public ResponseEntity<?> link(@Valid @RequestBody LinkRequest req) {
+        Optional<Participant> parentOpt = participantRepo.findById(req.parentId);
+        Optional<Participant> childOpt = participantRepo.findById(req.childId);
+        if (parentOpt.isEmpty() || childOpt.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Participant parent = parentOpt.get();
+        Participant child = childOpt.get();
+
+        // basic validation: don't link same id
+        if (parent.getId().equals(child.getId())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // the graph rejects a second parent or a cycle before anything is saved
+        HierarchyLink saved;
+        try {
+            saved = hierarchyGraph.link(parent, child);
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+        return ResponseEntity.created(URI.create("/api/participants/link/" + saved.getId())).body(saved);
+    }
+
+    // Simple DTOs inside controller for brevity
+    public static class ParticipantRequest {
+        @NotBlank(message = "Name is required")
+        public String name;
+
+        @NotBlank(message = "Type is required (OWNER/OPERATOR/AGENT/CUSTOMER)")
+        public String type;
+    }
+
+    public static class LinkRequest {
+        @NotNull(message = "parentId is required")
+        public Long parentId;
+
+        @NotNull(message = "childId is required")
+        public Long childId;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.sharedistribution.controller;
+
+import com.example.sharedistribution.dto.BatchTradeResult;
+import com.example.sharedistribution.dto.TradeRequest;
+import com.example.sharedistribution.exception.TradeBackpressureException;
+import com.example.sharedistribution.service.ReactiveTradeService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.CodecException;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Trade endpoints of the reactive API, served by ReactiveTradeServer on its own port.
+ * Request bodies, responses and errors are the same as TradeController's.
+ */
+@Component
+public class ReactiveTradeController {
+
+    // one String per line of the body, without the line break
+    private static final StringDecoder LINES = StringDecoder.allMimeTypes(List.of("\n"), true);
+
+    private final ReactiveTradeService tradeService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int streamConcurrency;
+
+    public ReactiveTradeController(ReactiveTradeService tradeService,
+                                   Validator validator,
+                                   ObjectMapper objectMapper,
+                                   @Value("${trade.reactive.stream-concurrency:256}") int streamConcurrency) {
+        this.tradeService = tradeService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.streamConcurrency = streamConcurrency;
+    }
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .POST("/api/trades", this::execute)
+                .POST("/api/trades/stream", this::stream)
+                .build();
+    }
+
+    /**
+     * Execute a trade
+     * POST /api/trades
+     * Body: { "customerId": 10, "amount": 1000.0, "type": "LOSS" }, optional Idempotency-Key header
+     */
+    Mono<ServerResponse> execute(ServerRequest request) {
+        String idempotencyKey = request.headers().firstHeader("Idempotency-Key");
+        return request.bodyToMono(TradeRequest.class)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Invalid trade request")))
+                .flatMap(req -> {
+                    Map<String, String> errors = validationErrors(req);
+                    if (!errors.isEmpty()) {
+                        return ServerResponse.badRequest().bodyValue(Map.of("validationErrors", errors));
+                    }
+                    return tradeService.executeTrade(req, idempotencyKey)
+                            .flatMap(resp -> ServerResponse.ok().bodyValue(resp));
+                })
+                .onErrorResume(ReactiveTradeController::errorResponse);
+    }
+
+    /**
+     * Execute a stream of trades
+     * POST /api/trades/stream
+     * Body: one trade per line (application/x-ndjson), same fields as POST /api/trades; blank lines are skipped
+     * Answers one line per trade, in request order: its TradeResponse, or a BatchTradeResult with the error,
+     * worded like the results of POST /api/trades/batch. A line that is not a valid trade only fails itself.
+     * At most stream-concurrency trades are in flight; the body is read no faster than they complete, and
+     * a full trade buffer makes a trade wait and retry rather than fail.
+     */
+    Mono<ServerResponse> stream(ServerRequest request) {
+        Flux<String> lines = LINES.decode(request.body(BodyExtractors.toDataBuffers()),
+                ResolvableType.forClass(String.class), null, null);
+        Flux<Object> results = lines
+                .filter(line -> !line.isBlank())
+                .index()
+                .flatMapSequential(t -> executeLine((int) (long) t.getT1(), t.getT2()), streamConcurrency, 1);
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(results, Object.class);
+    }
+
+    private Mono<Object> executeLine(int index, String line) {
+        TradeRequest req;
+        try {
+            req = objectMapper.readValue(line, TradeRequest.class);
+        } catch (JsonProcessingException e) {
+            return Mono.just(BatchTradeResult.failed(index, "Malformed trade request"));
+        }
+        // amounts and missing fields are checked by the service, as for POST /api/trades/batch
+        return tradeService.executeTrade(req, null)
+                .retryWhen(Retry.backoff(10, Duration.ofMillis(10))
+                        .filter(e -> e instanceof TradeBackpressureException)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .<Object>map(resp -> resp)
+                .onErrorResume(e -> Mono.just(BatchTradeResult.failed(index, e.getMessage())));
+    }
+
+    // field -> message, like GlobalExceptionHandler's validationErrors
+    private Map<String, String> validationErrors(TradeRequest req) {
+        Map<String, String> errors = new TreeMap<>();
+        for (ConstraintViolation<TradeRequest> v : validator.validate(req)) {
+            errors.putIfAbsent(v.getPropertyPath().toString(), v.getMessage());
+        }
+        return errors;
+    }
+
+    private static Mono<ServerResponse> errorResponse(Throwable e) {
+        if (e instanceof TradeBackpressureException) {
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .bodyValue(Map.of("error", e.getMessage()));
+        }
+        if (e instanceof IllegalArgumentException || e instanceof IllegalStateException) {
+            return ServerResponse.badRequest().bodyValue(Map.of("error", e.getMessage()));
+        }
+        if (e instanceof CodecException || e instanceof ServerWebInputException) {
+            return ServerResponse.badRequest().bodyValue(Map.of("error", "Malformed trade request"));
+        }
+        return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).bodyValue(Map.of("error", String.valueOf(e.getMessage())));
+    }
+}
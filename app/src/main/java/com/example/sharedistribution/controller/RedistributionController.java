@@ -0,0 +1,123 @@
+package com.example.sharedistribution.controller;
+
+import com.example.sharedistribution.entity.RedistributionEdge;
+import com.example.sharedistribution.entity.RedistributionJob;
+import com.example.sharedistribution.entity.RedistributionStatus;
+import com.example.sharedistribution.service.RedistributionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/redistributions")
+public class RedistributionController {
+
+    private final RedistributionService redistributions;
+
+    public RedistributionController(RedistributionService redistributions) {
+        this.redistributions = redistributions;
+    }
+
+    /**
+     * Start a job that corrects the distributions of past trades
+     * POST /api/redistributions
+     * Body: { "from": "2025-03-01T00:00:00Z", "to": "2025-04-01T00:00:00Z",
+     *         "edges": [ { "parentId": 1, "childId": 2, "passPercentage": 85.0 } ] }
+     * Trades created in [from, to) below any of the edges are recomputed with the given percentages
+     * (or the recorded ones where passPercentage is omitted) and get compensating distribution rows.
+     * Returns 202 with the job; poll GET /api/redistributions/{id} for progress.
+     */
+    @PostMapping
+    public ResponseEntity<JobResponse> submit(@RequestBody RedistributionRequest req) {
+        // invalid windows and edges are raised as IllegalArgumentException and answered by GlobalExceptionHandler
+        if (req == null) throw new IllegalArgumentException("Request body is required");
+        List<RedistributionService.EdgeCorrection> edges = req.edges == null ? null : req.edges.stream()
+                .map(e -> e == null ? null : new RedistributionService.EdgeCorrection(e.parentId, e.childId, e.passPercentage))
+                .toList();
+        RedistributionJob job = redistributions.submit(req.from, req.to, edges);
+        return ResponseEntity.accepted().location(URI.create("/api/redistributions/" + job.getId())).body(new JobResponse(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<JobResponse> get(@PathVariable("id") Long id) {
+        return redistributions.find(id).map(j -> ResponseEntity.ok(new JobResponse(j)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // --- DTOs ---
+    public static class RedistributionRequest {
+        public Instant from;
+        public Instant to;
+        public List<EdgeRequest> edges;
+    }
+
+    public static class EdgeRequest {
+        public Long parentId;
+        public Long childId;
+        public BigDecimal passPercentage;
+    }
+
+    public static class JobResponse {
+        public Long id;
+        public RedistributionStatus status;
+        public Instant from;
+        public Instant to;
+        public List<EdgeResponse> edges;
+        public Long firstTradeId;
+        public Long lastTradeId;
+        public Long checkpointTradeId;
+        // share of the trade id range done, 0..1
+        public double progress;
+        public long tradesScanned;
+        public long tradesAdjusted;
+        public long linesWritten;
+        public Double tradesPerSecond;
+        public Instant startedAt;
+        public Instant finishedAt;
+        public String error;
+
+        JobResponse(RedistributionJob j) {
+            this.id = j.getId();
+            this.status = j.getStatus();
+            this.from = j.getWindowFrom();
+            this.to = j.getWindowTo();
+            this.edges = j.getEdges().stream().map(EdgeResponse::new).toList();
+            this.firstTradeId = j.getFirstTradeId();
+            this.lastTradeId = j.getLastTradeId();
+            this.checkpointTradeId = j.getCheckpointTradeId();
+            if (j.getStatus() == RedistributionStatus.COMPLETED) {
+                this.progress = 1;
+            } else if (j.getFirstTradeId() != null && j.getCheckpointTradeId() != null) {
+                this.progress = (double) (j.getCheckpointTradeId() - j.getFirstTradeId() + 1)
+                        / (j.getLastTradeId() - j.getFirstTradeId() + 1);
+            }
+            this.tradesScanned = j.getTradesScanned();
+            this.tradesAdjusted = j.getTradesAdjusted();
+            this.linesWritten = j.getLinesWritten();
+            if (j.getStartedAt() != null && j.getUpdatedAt() != null) {
+                long ms = Duration.between(j.getStartedAt(), j.getUpdatedAt()).toMillis();
+                if (ms > 0) this.tradesPerSecond = j.getTradesScanned() * 1000.0 / ms;
+            }
+            this.startedAt = j.getStartedAt();
+            this.finishedAt = j.getFinishedAt();
+            this.error = j.getError();
+        }
+    }
+
+    public static class EdgeResponse {
+        public Long parentId;
+        public Long childId;
+        public BigDecimal passPercentage;
+
+        EdgeResponse(RedistributionEdge e) {
+            this.parentId = e.getParentId();
+            this.childId = e.getChildId();
+            this.passPercentage = e.getPassBasisPoints() == null ? null : BigDecimal.valueOf(e.getPassBasisPoints(), 2);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.sharedistribution.controller;
+
+import com.example.sharedistribution.dto.CursorPage;
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ShareConfig;
+import com.example.sharedistribution.repository.ParticipantRepository;
+import com.example.sharedistribution.repository.ShareConfigRepository;
+import com.example.sharedistribution.repository.ShareConfigView;
+import com.example.sharedistribution.service.ShareConfigHistory;
+import com.example.sharedistribution.service.ShareConfigSnapshotService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/shares")
+public class ShareConfigController {
+
+    private final ShareConfigRepository shareRepo;
+    private final ParticipantRepository participantRepo;
+    private final ShareConfigSnapshotService snapshots;
+
+    public ShareConfigController(ShareConfigRepository shareRepo,
+                                 ParticipantRepository participantRepo,
+                                 ShareConfigSnapshotService snapshots) {
+        this.shareRepo = shareRepo;
+        this.participantRepo = participantRepo;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Create or update a share config between parent and child.
+     * Body: { "parentId": 1, "childId": 2, "passPercentage": 90.0 }
+     * If a config exists for parent->child it is closed and the new percentage is stored as the next version,
+     * effective from now; earlier versions stay queryable with /lookup?at=.
+     * Trades pick up the change through the next published share config snapshot.
+     */
+    @PostMapping
+    public ResponseEntity<ShareConfigResponse> upsert(@Valid @RequestBody ShareConfigRequest req) {
+        if (req == null || req.parentId == null || req.childId == null || req.passPercentage == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (req.parentId.equals(req.childId)) {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<Participant> parentOpt = participantRepo.findById(req.parentId);
+        Optional<Participant> childOpt = participantRepo.findById(req.childId);
+        if (parentOpt.isEmpty() || childOpt.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Participant parent = parentOpt.get();
+        Participant child = childOpt.get();
+
+        // validate passPercentage range (0..100)
+        BigDecimal pct = req.passPercentage;
+        if (pct.compareTo(BigDecimal.ZERO) < 0 || pct.compareTo(BigDecimal.valueOf(100)) > 0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ShareConfig saved = snapshots.upsert(parent, child, pct);
+
+        ShareConfigResponse resp = new ShareConfigResponse(saved.getId(), saved.getParent().getId(),
+                saved.getChild().getId(), saved.getPassPercentage(), saved.getEffectiveFrom(), saved.getEffectiveTo());
+        return ResponseEntity.created(URI.create("/api/shares/" + saved.getId())).body(resp);
+    }
+
+    /**
+     * List share configs one page at a time, ordered by id
+     * GET /api/shares?parentId=&childId=&after=&limit=
+     * parentId / childId are optional filters; pass the returned nextCursor as after for the next page.
+     * Every version is listed; the current one per edge has no effectiveTo.
+     */
+    @GetMapping
+    public ResponseEntity<CursorPage<ShareConfigView>> list(@RequestParam(value = "parentId", required = false) Long parentId,
+                                                            @RequestParam(value = "childId", required = false) Long childId,
+                                                            @RequestParam(value = "after", defaultValue = "0") Long after,
+                                                            @RequestParam(value = "limit", required = false) Integer limit) {
+        int size = CursorPage.pageSize(limit);
+        Limit fetch = Limit.of(size + 1);
+        List<ShareConfigView> rows;
+        if (parentId != null && childId != null) {
+            rows = shareRepo.findViewsByParentAndChild(parentId, childId, after, fetch);
+        } else if (parentId != null) {
+            rows = shareRepo.findViewsByParent(parentId, after, fetch);
+        } else if (childId != null) {
+            rows = shareRepo.findViewsByChild(childId, after, fetch);
+        } else {
+            rows = shareRepo.findViews(after, fetch);
+        }
+        return ResponseEntity.ok(CursorPage.of(rows, size, ShareConfigView::getId));
+    }
+
+    /**
+     * Config for parent -> child: the current version, or the version in effect at the given instant
+     * GET /api/shares/lookup?parentId=1&childId=2&at=2025-03-01T10:15:30Z
+     * Point-in-time lookups are answered from the in-memory history without a query.
+     */
+    @GetMapping("/lookup")
+    public ResponseEntity<ShareConfigResponse> lookup(@RequestParam Long parentId, @RequestParam Long childId,
+                                                      @RequestParam(value = "at", required = false)
+                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        if (at != null) {
+            ShareConfigHistory.Version v = snapshots.history().versionAt(parentId, childId, at);
+            if (v == null) return ResponseEntity.notFound().build();
+            return ResponseEntity.ok(new ShareConfigResponse(v.id(), parentId, childId,
+                    BigDecimal.valueOf(v.basisPoints(), 2), v.effectiveFrom(), v.effectiveTo()));
+        }
+        Optional<Participant> parentOpt = participantRepo.findById(parentId);
+        Optional<Participant> childOpt = participantRepo.findById(childId);
+        if (parentOpt.isEmpty() || childOpt.isEmpty()) return ResponseEntity.notFound().build();
+        Optional<ShareConfig> sc = shareRepo.findTopByParentAndChildOrderByEffectiveFromDescIdDesc(parentOpt.get(), childOpt.get());
+        return sc.map(s -> ResponseEntity.ok(new ShareConfigResponse(s.getId(), s.getParent().getId(),
+                        s.getChild().getId(), s.getPassPercentage(), s.getEffectiveFrom(), s.getEffectiveTo())))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // --- DTOs ---
+    public static class ShareConfigRequest {
+        @NotNull(message = "parentId is required")
+        public Long parentId;
+
+        @NotNull(message = "childId is required")
+        public Long childId;
+
+        @NotNull(message = "passPercentage is required")
+        @DecimalMin(value = "0.0", message = "passPercentage must be >= 0")
+        public BigDecimal passPercentage;
+    }
+
+    public static class ShareConfigResponse {
+        public Long id;
+        public Long parentId;
+        public Long childId;
+        public BigDecimal passPercentage;
+        public Instant effectiveFrom;
+        public Instant effectiveTo;
+
+        public ShareConfigResponse(Long id, Long parentId, Long childId, BigDecimal passPercentage,
+                                   Instant effectiveFrom, Instant effectiveTo) {
+            this.id = id;
+            this.parentId = parentId;
+            this.childId = childId;
+            this.passPercentage = passPercentage;
+            this.effectiveFrom = effectiveFrom;
+            this.effectiveTo = effectiveTo;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.sharedistribution.controller;
+
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.service.SegmentScanner;
+import com.example.sharedistribution.service.TradeArchive;
+import com.example.sharedistribution.service.TradeArchiveService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping("/api/trades/archive")
+public class TradeArchiveController {
+
+    private final TradeArchive archive;
+    private final TradeArchiveService archiveService;
+
+    public TradeArchiveController(TradeArchive archive, TradeArchiveService archiveService) {
+        this.archive = archive;
+        this.archiveService = archiveService;
+    }
+
+    /**
+     * Archived days and their files
+     * GET /api/trades/archive
+     */
+    @GetMapping
+    public ResponseEntity<?> list() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("archivedThrough", archive.archivedThrough());
+        body.put("files", archive.list());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Line count and kept/passed totals of archived IST days from..to, read from the columnar day files
+     * GET /api/trades/archive/totals?from=2025-01-01&to=2025-03-31&type=LOSS&groupBy=participant
+     * type (PROFIT or LOSS) and groupBy=participant are optional.
+     */
+    @GetMapping("/totals")
+    public ResponseEntity<?> totals(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                    @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                    @RequestParam(value = "type", required = false) String type,
+                                    @RequestParam(value = "groupBy", required = false) String groupBy) {
+        // errors are raised as IllegalArgumentException and answered by GlobalExceptionHandler
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        if (!archive.isArchived(to)) {
+            throw new IllegalArgumentException(archive.archivedThrough() == null ? "No trades are archived"
+                    : "Only days up to " + archive.archivedThrough() + " are archived");
+        }
+        TradeType t = null;
+        if (type != null) {
+            try {
+                t = TradeType.valueOf(type.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("type must be PROFIT or LOSS");
+            }
+        }
+        if (groupBy != null && !groupBy.trim().equalsIgnoreCase("participant")) {
+            throw new IllegalArgumentException("groupBy must be participant");
+        }
+        SegmentScanner scanner = archive.scan(from, to, t, groupBy != null);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("from", from);
+        body.put("to", to);
+        body.put("type", t == null ? "ALL" : t.name());
+        body.put("totals", totals(scanner.totals()));
+        if (groupBy != null) {
+            Map<Long, Object> participants = new TreeMap<>();
+            scanner.byParticipant().forEach((id, totals) -> participants.put(id, totals(totals)));
+            body.put("participants", participants);
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    private static Map<String, Object> totals(SegmentScanner.Totals t) {
+        return Map.of("lines", t.lines(), "totalKept", t.kept().setScale(2, RoundingMode.HALF_UP),
+                "totalPassed", t.passed().setScale(2, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * Move the trades of IST days before today minus olderThanDays into archive files now
+     * POST /api/trades/archive?olderThanDays=90   (defaults to trade.archive.retention-days)
+     * Returns the archived days, the trades and lines moved and the database file size before and after;
+     * 409 if a day could not be archived in the current state of the data (days archived before it stay archived).
+     */
+    @PostMapping
+    public ResponseEntity<?> run(@RequestParam(value = "olderThanDays", required = false) Integer olderThanDays) {
+        TradeArchiveService.Result r;
+        try {
+            r = archiveService.run(olderThanDays);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(Map.of(
+                "days", r.days(),
+                "trades", r.trades(),
+                "lines", r.lines(),
+                "dbBytesBefore", r.dbBytesBefore(),
+                "dbBytesAfter", r.dbBytesAfter(),
+                "elapsedMs", r.elapsedMs(),
+                "archivedThrough", String.valueOf(archive.archivedThrough())));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.sharedistribution.controller;
+
+import com.example.sharedistribution.dto.BatchTradeResult;
+import com.example.sharedistribution.dto.DistributionLine;
+import com.example.sharedistribution.dto.TradeRequest;
+import com.example.sharedistribution.dto.TradeResponse;
+import com.example.sharedistribution.exception.TradeBackpressureException;
+import com.example.sharedistribution.service.DistributionExportService;
+import com.example.sharedistribution.service.TradeService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/trades")
+public class TradeController {
+
+    private final TradeService tradeService;
+    private final DistributionExportService exportService;
+    private final int batchChunkSize;
+    private final int batchMaxSize;
+
+    public TradeController(TradeService tradeService,
+                           DistributionExportService exportService,
+                           @Value("${trade.batch.chunk-size:500}") int batchChunkSize,
+                           @Value("${trade.batch.max-size:10000}") int batchMaxSize) {
+        this.tradeService = tradeService;
+        this.exportService = exportService;
+        this.batchChunkSize = batchChunkSize;
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    /**
+     * Execute a trade
+     * POST /api/trades
+     * Body: { "customerId": 10, "amount": 1000.0, "type": "LOSS" }
+     * With an Idempotency-Key header, retries with the same key return the first response instead of
+     * executing the trade again.
+     */
+    @PostMapping
+    public ResponseEntity<?> execute(@Valid @RequestBody TradeRequest req,
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        try {
+            TradeResponse resp = tradeService.executeTrade(req, idempotencyKey);
+            return ResponseEntity.ok(resp);
+        } catch (TradeBackpressureException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Preview how a trade would be split, without saving anything
+     * POST /api/trades/quote
+     * Body: same as POST /api/trades; the response has no tradeId
+     */
+    @PostMapping("/quote")
+    public ResponseEntity<?> quote(@Valid @RequestBody TradeRequest req) {
+        try {
+            return ResponseEntity.ok(tradeService.quoteTrade(req));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Execute a list of trades in chunked transactions
+     * POST /api/trades/batch
+     * Body: [ { "customerId": 10, "amount": 1000.0, "type": "LOSS" }, ... ]
+     * Every trade gets its own result entry, in request order.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> executeBatch(@RequestBody List<TradeRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At least one trade is required"));
+        }
+        if (requests.size() > batchMaxSize) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Batch size exceeds " + batchMaxSize));
+        }
+        List<BatchTradeResult> results = tradeService.executeBatch(requests, batchChunkSize);
+        long succeeded = results.stream().filter(BatchTradeResult::isSuccess).count();
+        return ResponseEntity.ok(Map.of(
+                "succeeded", succeeded,
+                "failed", results.size() - succeeded,
+                "results", results));
+    }
+
+    // Get distribution lines for a trade
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getTrade(@PathVariable("id") Long id) {
+        try {
+            List<DistributionLine> lines = tradeService.getTradeDistributions(id);
+            return ResponseEntity.ok(Map.of("tradeId", id, "distributions", lines));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Stream every distribution line of trades created on the IST days from..to (inclusive)
+     * GET /api/trades/export?from=2025-01-01&to=2025-01-31&format=csv
+     * format is csv (default) or ndjson; rows are written as they are read, so any range size works.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                    @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                    @RequestParam(value = "format", defaultValue = "csv") String format) {
+        // errors are raised as IllegalArgumentException and answered by GlobalExceptionHandler
+        DistributionExportService.Format f;
+        try {
+            f = DistributionExportService.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("format must be csv or ndjson");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        StreamingResponseBody body = out -> exportService.export(from, to, f, out);
+        String extension = f == DistributionExportService.Format.CSV ? "csv" : "ndjson";
+        return ResponseEntity.ok()
+                .contentType(f == DistributionExportService.Format.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"distributions-" + from + "-" + to + "." + extension + "\"")
+                .body(body);
+    }
+
+    // Daily report: summary per participant
+    @GetMapping("/reports/daily")
+    public ResponseEntity<?> dailyReport(@RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            Map<Long, TradeService.ParticipantSummary> map = tradeService.dailySummary(date);
+            var out = map.entrySet().stream().collect(Collectors.toMap(
+                    Map.Entry::getKey,
+                    e -> Map.of("name", e.getValue().name,
+                            "totalKept", e.getValue().totalKept,
+                            "totalPassed", e.getValue().totalPassed)
+            ));
+            return ResponseEntity.ok(out);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.sharedistribution.dto;
+
+/**
+ * Outcome of one trade in a batch request; index is the position in the submitted list.
+ */
+public class BatchTradeResult {
+    private int index;
+    private boolean success;
+    private Long tradeId;
+    private String error;
+
+    public BatchTradeResult() {}
+
+    public BatchTradeResult(int index, boolean success, Long tradeId, String error) {
+        this.index = index;
+        this.success = success;
+        this.tradeId = tradeId;
+        this.error = error;
+    }
+
+    public static BatchTradeResult succeeded(int index, Long tradeId) {
+        return new BatchTradeResult(index, true, tradeId, null);
+    }
+
+    public static BatchTradeResult failed(int index, String error) {
+        return new BatchTradeResult(index, false, null, error);
+    }
+
+    public int getIndex() { return index; }
+    public boolean isSuccess() { return success; }
+    public Long getTradeId() { return tradeId; }
+    public String getError() { return error; }
+}
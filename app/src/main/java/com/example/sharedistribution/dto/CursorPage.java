@@ -0,0 +1,43 @@
+package com.example.sharedistribution.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated list ordered by id. Pass nextCursor back as ?after= to get the
+ * following page; it is null on the last page.
+ */
+public class CursorPage<T> {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    private final Long nextCursor;
+
+    public CursorPage(List<T> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Page size to use for a requested limit: the default when absent, capped at MAX_LIMIT.
+     */
+    public static int pageSize(Integer limit) {
+        if (limit == null) return DEFAULT_LIMIT;
+        if (limit < 1) throw new IllegalArgumentException("limit must be >= 1");
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Build a page from rows fetched with pageSize + 1: the extra row only tells that another page exists.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize, Function<T, Long> idOf) {
+        if (rows.size() <= pageSize) return new CursorPage<>(rows, null);
+        List<T> items = rows.subList(0, pageSize);
+        return new CursorPage<>(items, idOf.apply(items.get(pageSize - 1)));
+    }
+
+    public List<T> getItems() { return items; }
+    public Long getNextCursor() { return nextCursor; }
+}
@@ -0,0 +1,29 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * Kept/passed totals per participant of the distribution rows moved to archive files. Increased in the
+ * same transaction that deletes the rows, so archived + live rows always add up to the full history.
+ */
+@Entity
+@Table(name = "archived_balance")
+public class ArchivedBalance {
+
+    @Id
+    @Column(name = "participant_id")
+    private Long participantId;
+
+    @Column(name = "total_kept", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalKept;
+
+    @Column(name = "total_passed", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalPassed;
+
+    public ArchivedBalance() {}
+
+    public Long getParticipantId() { return participantId; }
+    public BigDecimal getTotalKept() { return totalKept; }
+    public BigDecimal getTotalPassed() { return totalPassed; }
+}
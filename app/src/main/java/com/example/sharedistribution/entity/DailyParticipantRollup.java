@@ -0,0 +1,59 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Per-day (IST) totals for one participant, maintained in the same transaction as the trade.
+ * Each (date, participant) is spread over a few slots so concurrent trades touching the same
+ * participant (e.g. the owner) don't all wait on one row lock; readers sum the slots.
+ * The subtree columns add the lines of everyone below the participant on the same trades, so totals for a
+ * whole downline are read from the participant's own rows.
+ */
+@Entity
+@Table(name = "daily_participant_rollup")
+@IdClass(DailyParticipantRollupId.class)
+public class DailyParticipantRollup {
+
+    @Id
+    @Column(name = "report_date")
+    private LocalDate reportDate;
+
+    @Id
+    @Column(name = "participant_id")
+    private Long participantId;
+
+    @Id
+    @Column(name = "slot")
+    private int slot;
+
+    @Column(name = "total_kept", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalKept;
+
+    @Column(name = "total_passed", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalPassed;
+
+    // number of trades this participant received a distribution line in
+    @Column(name = "trade_count", nullable = false)
+    private long tradeCount;
+
+    // kept / passed of this participant and all its descendants on the trades counted above;
+    // null only in rows written before the columns existed, which the startup backfill recomputes
+    @Column(name = "subtree_kept", precision = 19, scale = 2)
+    private BigDecimal subtreeKept;
+
+    @Column(name = "subtree_passed", precision = 19, scale = 2)
+    private BigDecimal subtreePassed;
+
+    public DailyParticipantRollup() {}
+
+    public LocalDate getReportDate() { return reportDate; }
+    public Long getParticipantId() { return participantId; }
+    public int getSlot() { return slot; }
+    public BigDecimal getTotalKept() { return totalKept; }
+    public BigDecimal getTotalPassed() { return totalPassed; }
+    public long getTradeCount() { return tradeCount; }
+    public BigDecimal getSubtreeKept() { return subtreeKept; }
+    public BigDecimal getSubtreePassed() { return subtreePassed; }
+}
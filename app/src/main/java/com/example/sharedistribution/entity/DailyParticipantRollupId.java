@@ -0,0 +1,32 @@
+package com.example.sharedistribution.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class DailyParticipantRollupId implements Serializable {
+    private LocalDate reportDate;
+    private Long participantId;
+    private int slot;
+
+    public DailyParticipantRollupId() {}
+
+    public DailyParticipantRollupId(LocalDate reportDate, Long participantId, int slot) {
+        this.reportDate = reportDate;
+        this.participantId = participantId;
+        this.slot = slot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DailyParticipantRollupId that)) return false;
+        return slot == that.slot && Objects.equals(reportDate, that.reportDate)
+                && Objects.equals(participantId, that.participantId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(reportDate, participantId, slot);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Transitive closure of hierarchy_link: one row per (ancestor, descendant) pair, including (p, p, 0).
+ * The primary key (ancestor_id, descendant_id) answers descendants-of and is-ancestor with one range or
+ * point lookup; idx_hierarchy_closure_descendant answers ancestors-of. Maintained in the transaction that
+ * creates a link (see HierarchyGraphService.link).
+ */
+@Entity
+@Table(name = "hierarchy_closure", indexes = {
+        @Index(name = "idx_hierarchy_closure_descendant", columnList = "descendant_id, depth, ancestor_id")
+})
+@IdClass(HierarchyClosureId.class)
+public class HierarchyClosure {
+
+    @Id
+    @Column(name = "ancestor_id")
+    private Long ancestorId;
+
+    @Id
+    @Column(name = "descendant_id")
+    private Long descendantId;
+
+    // number of links between the two; 0 for the participant itself
+    @Column(nullable = false)
+    private int depth;
+
+    public HierarchyClosure() {}
+
+    public Long getAncestorId() { return ancestorId; }
+    public Long getDescendantId() { return descendantId; }
+    public int getDepth() { return depth; }
+}
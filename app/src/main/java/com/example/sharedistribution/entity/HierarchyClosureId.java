@@ -0,0 +1,28 @@
+package com.example.sharedistribution.entity;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class HierarchyClosureId implements Serializable {
+    private Long ancestorId;
+    private Long descendantId;
+
+    public HierarchyClosureId() {}
+
+    public HierarchyClosureId(Long ancestorId, Long descendantId) {
+        this.ancestorId = ancestorId;
+        this.descendantId = descendantId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HierarchyClosureId that)) return false;
+        return Objects.equals(ancestorId, that.ancestorId) && Objects.equals(descendantId, that.descendantId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ancestorId, descendantId);
+    }
+}
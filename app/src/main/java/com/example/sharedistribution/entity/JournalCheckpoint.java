@@ -0,0 +1,27 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Position in the trade journal up to which records are known to be in the database.
+ * Updated in the same transaction as the rows it covers.
+ */
+@Entity
+@Table(name = "trade_journal_checkpoint")
+public class JournalCheckpoint {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private long position;
+
+    private Instant updatedAt;
+
+    public JournalCheckpoint() {}
+
+    public Long getId() { return id; }
+    public long getPosition() { return position; }
+    public Instant getUpdatedAt() { return updatedAt; }
+}
@@ -6,7 +6,10 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @JsonIgnoreProperties({"hibernateLazyInitializer","handler"})
 @Entity
-@Table(name = "participant")
+@Table(name = "participant", indexes = {
+        // keyset pages filtered by type (GET /api/participants?type=)
+        @Index(name = "idx_participant_type_id", columnList = "type, id")
+})
 public class Participant {
 
     @Id
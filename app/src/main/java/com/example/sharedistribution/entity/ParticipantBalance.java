@@ -0,0 +1,34 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Running kept/passed totals per participant. Written periodically from the in-memory ledger;
+ * trade_distribution (with archived_balance for archived trades) stays the source of truth and the ledger
+ * is rebuilt from it at startup.
+ */
+@Entity
+@Table(name = "participant_balance")
+public class ParticipantBalance {
+
+    @Id
+    @Column(name = "participant_id")
+    private Long participantId;
+
+    @Column(name = "total_kept", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalKept;
+
+    @Column(name = "total_passed", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalPassed;
+
+    private Instant updatedAt;
+
+    public ParticipantBalance() {}
+
+    public Long getParticipantId() { return participantId; }
+    public BigDecimal getTotalKept() { return totalKept; }
+    public BigDecimal getTotalPassed() { return totalPassed; }
+    public Instant getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,34 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * A parent -> child edge whose share config is being corrected by a redistribution job.
+ * passBasisPoints is the corrected percentage for the whole window; null means the percentage
+ * recorded in the share config history at each trade's time.
+ */
+@Embeddable
+public class RedistributionEdge {
+
+    @Column(name = "parent_id", nullable = false)
+    private Long parentId;
+
+    @Column(name = "child_id", nullable = false)
+    private Long childId;
+
+    @Column(name = "pass_basis_points")
+    private Long passBasisPoints;
+
+    public RedistributionEdge() {}
+
+    public RedistributionEdge(Long parentId, Long childId, Long passBasisPoints) {
+        this.parentId = parentId;
+        this.childId = childId;
+        this.passBasisPoints = passBasisPoints;
+    }
+
+    public Long getParentId() { return parentId; }
+    public Long getChildId() { return childId; }
+    public Long getPassBasisPoints() { return passBasisPoints; }
+}
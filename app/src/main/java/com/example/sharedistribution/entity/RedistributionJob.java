@@ -0,0 +1,107 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recomputation of past trades after share config corrections (see RedistributionService).
+ * Trades with ids in [firstTradeId, checkpointTradeId] are done; a restarted job resumes after the checkpoint.
+ */
+@Entity
+@Table(name = "redistribution_job")
+public class RedistributionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // trades created in [windowFrom, windowTo)
+    @Column(nullable = false)
+    private Instant windowFrom;
+
+    @Column(nullable = false)
+    private Instant windowTo;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "redistribution_job_edge", joinColumns = @JoinColumn(name = "job_id"))
+    private List<RedistributionEdge> edges = new ArrayList<>();
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RedistributionStatus status = RedistributionStatus.PENDING;
+
+    // trade id range of the window, resolved when the job first starts
+    private Long firstTradeId;
+    private Long lastTradeId;
+    private Long checkpointTradeId;
+
+    private long tradesScanned;
+    private long tradesAdjusted;
+    private long linesWritten;
+
+    private Instant createdAt = Instant.now();
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Instant updatedAt;
+
+    @Column(length = 1000)
+    private String error;
+
+    public RedistributionJob() {}
+
+    public RedistributionJob(Instant windowFrom, Instant windowTo, List<RedistributionEdge> edges) {
+        this.windowFrom = windowFrom;
+        this.windowTo = windowTo;
+        this.edges = new ArrayList<>(edges);
+    }
+
+    public Long getId() { return id; }
+    public Instant getWindowFrom() { return windowFrom; }
+    public Instant getWindowTo() { return windowTo; }
+    public List<RedistributionEdge> getEdges() { return edges; }
+    public RedistributionStatus getStatus() { return status; }
+    public Long getFirstTradeId() { return firstTradeId; }
+    public Long getLastTradeId() { return lastTradeId; }
+    public Long getCheckpointTradeId() { return checkpointTradeId; }
+    public long getTradesScanned() { return tradesScanned; }
+    public long getTradesAdjusted() { return tradesAdjusted; }
+    public long getLinesWritten() { return linesWritten; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public String getError() { return error; }
+
+    public void start(Long firstTradeId, Long lastTradeId) {
+        this.status = RedistributionStatus.RUNNING;
+        if (startedAt == null) {
+            this.startedAt = Instant.now();
+            this.firstTradeId = firstTradeId;
+            this.lastTradeId = lastTradeId;
+        }
+        this.updatedAt = Instant.now();
+    }
+
+    public void checkpoint(long tradeId, long scanned, long adjusted, long lines) {
+        this.checkpointTradeId = tradeId;
+        this.tradesScanned += scanned;
+        this.tradesAdjusted += adjusted;
+        this.linesWritten += lines;
+        this.updatedAt = Instant.now();
+    }
+
+    public void complete() {
+        this.status = RedistributionStatus.COMPLETED;
+        this.finishedAt = Instant.now();
+        this.updatedAt = finishedAt;
+    }
+
+    public void fail(String error) {
+        this.status = RedistributionStatus.FAILED;
+        this.error = error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+        this.finishedAt = Instant.now();
+        this.updatedAt = finishedAt;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.sharedistribution.entity;
+
+public enum RedistributionStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,77 @@
+package com.example.sharedistribution.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+@Entity
+// append-only: a change closes the open row of the edge (effectiveTo) and inserts the next version
+@Table(name = "share_config",
+       indexes = @Index(name = "idx_share_config_edge_from", columnList = "parent_id, child_id, effective_from"))
+@JsonIgnoreProperties({"hibernateLazyInitializer","handler"})
+public class ShareConfig {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // parent -> child config
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "parent_id")
+    private Participant parent;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "child_id")
+    private Participant child;
+
+    // percentage to pass from parent -> child (0..100), stored as decimal (e.g., 90.00)
+    @Column(name = "pass_percentage", nullable = false, precision = 5, scale = 2)
+    private BigDecimal passPercentage;
+
+    private Instant updatedAt = Instant.now();
+
+    // validity interval [effectiveFrom, effectiveTo); effectiveTo is null for the current version.
+    // Nullable columns so the schema update can add them to existing rows, which are backfilled on load.
+    @Column(name = "effective_from")
+    private Instant effectiveFrom;
+
+    @Column(name = "effective_to")
+    private Instant effectiveTo;
+
+    // share config snapshot version produced by the write that last changed this row
+    private Long snapshotVersion;
+
+    public ShareConfig() {}
+
+    public ShareConfig(Participant parent, Participant child, BigDecimal passPercentage) {
+        this(parent, child, passPercentage, Instant.now().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    public ShareConfig(Participant parent, Participant child, BigDecimal passPercentage, Instant effectiveFrom) {
+        this.parent = parent;
+        this.child = child;
+        this.passPercentage = passPercentage;
+        this.effectiveFrom = effectiveFrom;
+        this.updatedAt = effectiveFrom;
+    }
+
+    public Long getId() { return id; }
+    public Participant getParent() { return parent; }
+    public Participant getChild() { return child; }
+    public BigDecimal getPassPercentage() { return passPercentage; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public Instant getEffectiveFrom() { return effectiveFrom; }
+    public Instant getEffectiveTo() { return effectiveTo; }
+
+    // the only change an existing version accepts: ending its validity when the next one starts
+    public void close(Instant effectiveTo) { this.effectiveTo = effectiveTo; this.updatedAt = Instant.now(); }
+
+    public void setEffectivePeriod(Instant effectiveFrom, Instant effectiveTo) {
+        this.effectiveFrom = effectiveFrom;
+        this.effectiveTo = effectiveTo;
+    }
+    public Long getSnapshotVersion() { return snapshotVersion; }
+    public void setSnapshotVersion(Long snapshotVersion) { this.snapshotVersion = snapshotVersion; }
+}
@@ -0,0 +1,58 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Entity
+@Table(name = "trade", indexes = {
+        @Index(name = "idx_trade_created_at", columnList = "created_at"),
+        @Index(name = "ux_trade_idempotency_key", columnList = "idempotency_key", unique = true)
+})
+public class Trade {
+
+    // pooled sequence ids let Hibernate batch inserts (IDENTITY forces one insert per row)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_seq")
+    @SequenceGenerator(name = "trade_seq", sequenceName = "trade_seq", allocationSize = 50)
+    private Long id;
+
+    // customer who initiated the trade
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id")
+    private Participant customer;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TradeType type;
+
+    private Instant createdAt = Instant.now();
+
+    // version of the share config snapshot the distribution was computed with
+    private Long shareConfigVersion;
+
+    // Idempotency-Key of the request that created the trade, if it sent one
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    public Trade() {}
+
+    public Trade(Participant customer, BigDecimal amount, TradeType type) {
+        this.customer = customer;
+        this.amount = amount;
+        this.type = type;
+    }
+
+    public Long getId() { return id; }
+    public Participant getCustomer() { return customer; }
+    public BigDecimal getAmount() { return amount; }
+    public TradeType getType() { return type; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Long getShareConfigVersion() { return shareConfigVersion; }
+    public void setShareConfigVersion(Long shareConfigVersion) { this.shareConfigVersion = shareConfigVersion; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+}
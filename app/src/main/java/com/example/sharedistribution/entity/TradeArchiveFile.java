@@ -0,0 +1,61 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One IST day of trades moved out of trade / trade_distribution into a compressed archive file
+ * (see TradeArchive). The trade id range lets lookups open only the files that can hold a trade.
+ */
+@Entity
+@Table(name = "trade_archive_file")
+public class TradeArchiveFile {
+
+    @Id
+    @Column(name = "report_date")
+    private LocalDate reportDate;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private long tradeCount;
+
+    @Column(nullable = false)
+    private long lineCount;
+
+    @Column(nullable = false)
+    private long minTradeId;
+
+    @Column(nullable = false)
+    private long maxTradeId;
+
+    @Column(nullable = false)
+    private long sizeBytes;
+
+    private Instant archivedAt;
+
+    public TradeArchiveFile() {}
+
+    public TradeArchiveFile(LocalDate reportDate, String fileName, long tradeCount, long lineCount,
+                            long minTradeId, long maxTradeId, long sizeBytes, Instant archivedAt) {
+        this.reportDate = reportDate;
+        this.fileName = fileName;
+        this.tradeCount = tradeCount;
+        this.lineCount = lineCount;
+        this.minTradeId = minTradeId;
+        this.maxTradeId = maxTradeId;
+        this.sizeBytes = sizeBytes;
+        this.archivedAt = archivedAt;
+    }
+
+    public LocalDate getReportDate() { return reportDate; }
+    public String getFileName() { return fileName; }
+    public long getTradeCount() { return tradeCount; }
+    public long getLineCount() { return lineCount; }
+    public long getMinTradeId() { return minTradeId; }
+    public long getMaxTradeId() { return maxTradeId; }
+    public long getSizeBytes() { return sizeBytes; }
+    public Instant getArchivedAt() { return archivedAt; }
+}
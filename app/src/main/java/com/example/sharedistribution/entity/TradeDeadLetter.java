@@ -0,0 +1,35 @@
+package com.example.sharedistribution.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A write-behind trade the database kept refusing (see WriteBehindTradeWriter). It was acknowledged to the
+ * client, so it is parked here as the journal record's JSON, with the error, for someone to look at and
+ * re-enter, instead of blocking every trade queued behind it.
+ */
+@Entity
+@Table(name = "trade_dead_letter")
+public class TradeDeadLetter {
+
+    @Id
+    @Column(name = "trade_id")
+    private Long tradeId;
+
+    @Lob
+    @Column(nullable = false)
+    private String record;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private Instant failedAt;
+
+    public TradeDeadLetter() {}
+
+    public Long getTradeId() { return tradeId; }
+    public String getRecord() { return record; }
+    public String getError() { return error; }
+    public Instant getFailedAt() { return failedAt; }
+}
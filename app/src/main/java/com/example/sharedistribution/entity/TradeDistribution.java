@@ -9,7 +9,8 @@ import java.time.Instant;
 public class TradeDistribution {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_distribution_seq")
+    @SequenceGenerator(name = "trade_distribution_seq", sequenceName = "trade_distribution_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -30,6 +31,11 @@ public class TradeDistribution {
 
     private Instant createdAt = Instant.now();
 
+    // set on compensating rows written by a redistribution job (amounts are deltas and may be negative);
+    // null for the lines written with the trade
+    @Column(name = "adjustment_job_id")
+    private Long adjustmentJobId;
+
     public TradeDistribution() {}
 
     public TradeDistribution(Trade trade, Participant participant, BigDecimal amountKept, BigDecimal amountPassed) {
@@ -45,4 +51,5 @@ public class TradeDistribution {
     public BigDecimal getAmountKept() { return amountKept; }
     public BigDecimal getAmountPassed() { return amountPassed; }
     public Instant getCreatedAt() { return createdAt; }
+    public Long getAdjustmentJobId() { return adjustmentJobId; }
 }
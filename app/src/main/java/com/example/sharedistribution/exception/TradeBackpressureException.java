@@ -0,0 +1,11 @@
+package com.example.sharedistribution.exception;
+
+/**
+ * Thrown when the write-behind buffer stayed full for longer than the configured wait.
+ * The trade was not accepted and can be retried.
+ */
+public class TradeBackpressureException extends RuntimeException {
+    public TradeBackpressureException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.entity.DailyParticipantRollup;
+import com.example.sharedistribution.entity.DailyParticipantRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyParticipantRollupRepository extends JpaRepository<DailyParticipantRollup, DailyParticipantRollupId> {
+
+    boolean existsByReportDate(LocalDate reportDate);
+
+    // one row per participant active on that day, regardless of how much history exists
+    @Query("select r.participantId as participantId, p.name as name, "
+            + "sum(r.totalKept) as totalKept, sum(r.totalPassed) as totalPassed "
+            + "from DailyParticipantRollup r, Participant p "
+            + "where p.id = r.participantId and r.reportDate = :date "
+            + "group by r.participantId, p.name")
+    List<ParticipantTotals> findTotalsByDate(@Param("date") LocalDate date);
+
+    // one primary key range scan (participant_id, report_date), independent of the size of the subtree
+    @Query("select sum(r.tradeCount) as tradeCount, sum(r.totalKept) as totalKept, sum(r.totalPassed) as totalPassed, "
+            + "sum(r.subtreeKept) as subtreeKept, sum(r.subtreePassed) as subtreePassed "
+            + "from DailyParticipantRollup r "
+            + "where r.participantId = :participantId and r.reportDate between :from and :to")
+    RollupTotals findTotalsBetween(@Param("participantId") Long participantId,
+                                   @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
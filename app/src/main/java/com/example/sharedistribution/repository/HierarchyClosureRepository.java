@@ -0,0 +1,48 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.entity.HierarchyClosure;
+import com.example.sharedistribution.entity.HierarchyClosureId;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface HierarchyClosureRepository extends JpaRepository<HierarchyClosure, HierarchyClosureId> {
+
+    // all descendants (not the participant itself), one range scan of the primary key
+    @Query("select c.descendantId from HierarchyClosure c where c.ancestorId = :ancestorId and c.depth > 0")
+    List<Long> findDescendantIds(@Param("ancestorId") Long ancestorId);
+
+    // keyset page of descendant ids, a range scan of the primary key from (ancestorId, afterId)
+    @Query("select c.descendantId from HierarchyClosure c "
+            + "where c.ancestorId = :ancestorId and c.descendantId > :afterId and c.depth > 0 order by c.descendantId")
+    List<Long> findDescendantIds(@Param("ancestorId") Long ancestorId, @Param("afterId") Long afterId, Limit limit);
+
+    // ancestors from the parent up to the root, read along idx_hierarchy_closure_descendant
+    @Query("select c.ancestorId from HierarchyClosure c where c.descendantId = :descendantId and c.depth > 0 "
+            + "order by c.depth")
+    List<Long> findAncestorIds(@Param("descendantId") Long descendantId);
+
+    // is-ancestor: a primary key lookup; empty if ancestorId is not above descendantId
+    @Query("select c.depth from HierarchyClosure c where c.ancestorId = :ancestorId and c.descendantId = :descendantId "
+            + "and c.depth > 0")
+    Optional<Integer> findDepth(@Param("ancestorId") Long ancestorId, @Param("descendantId") Long descendantId);
+
+    @Modifying
+    @Query(value = "merge into hierarchy_closure (ancestor_id, descendant_id, depth) key (ancestor_id, descendant_id) "
+            + "values (:id, :id, 0)", nativeQuery = true)
+    int addSelf(@Param("id") Long participantId);
+
+    // linking a root child under a parent: every ancestor of the parent (itself included) gets
+    // every descendant of the child (itself included)
+    @Modifying
+    @Query(value = "insert into hierarchy_closure (ancestor_id, descendant_id, depth) "
+            + "select a.ancestor_id, d.descendant_id, a.depth + d.depth + 1 "
+            + "from hierarchy_closure a join hierarchy_closure d on a.descendant_id = :parentId and d.ancestor_id = :childId",
+            nativeQuery = true)
+    int addLink(@Param("parentId") Long parentId, @Param("childId") Long childId);
+}
@@ -0,0 +1,19 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.entity.HierarchyLink;
+import com.example.sharedistribution.entity.Participant;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface HierarchyLinkRepository extends JpaRepository<HierarchyLink, Long> {
+    List<HierarchyLink> findByChild(Participant child);
+    List<HierarchyLink> findByParent(Participant parent);
+
+    // children of a parent as a keyset page ordered by child id, read along the (parent_id, child_id) unique index
+    @Query("select c from HierarchyLink l join l.child c where l.parent.id = :parentId and c.id > :afterChildId order by c.id")
+    List<Participant> findByParent(@Param("parentId") Long parentId, @Param("afterChildId") Long afterChildId, Limit limit);
+}
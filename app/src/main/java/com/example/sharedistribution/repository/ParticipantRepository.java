@@ -0,0 +1,19 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ParticipantType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ParticipantRepository extends JpaRepository<Participant, Long> {
+
+    // keyset pages ordered by id; callers pass page size + 1 as the limit
+    List<Participant> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    List<Participant> findByTypeAndIdGreaterThanOrderByIdAsc(ParticipantType type, Long afterId, Limit limit);
+
+    List<Participant> findByIdInAndTypeOrderByIdAsc(Collection<Long> ids, ParticipantType type);
+}
@@ -0,0 +1,13 @@
+package com.example.sharedistribution.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection for per-participant kept/passed sums returned by report queries.
+ */
+public interface ParticipantTotals {
+    Long getParticipantId();
+    String getName();
+    BigDecimal getTotalKept();
+    BigDecimal getTotalPassed();
+}
@@ -0,0 +1,14 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.entity.RedistributionJob;
+import com.example.sharedistribution.entity.RedistributionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface RedistributionJobRepository extends JpaRepository<RedistributionJob, Long> {
+    List<RedistributionJob> findByStatusInOrderByIdAsc(Collection<RedistributionStatus> statuses);
+
+    List<RedistributionJob> findByIdLessThanOrderByIdAsc(Long id);
+}
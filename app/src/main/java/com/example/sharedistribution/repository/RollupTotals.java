@@ -0,0 +1,14 @@
+package com.example.sharedistribution.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection for a participant's rollup sums over a date range; the sums are null when no row matched.
+ */
+public interface RollupTotals {
+    Long getTradeCount();
+    BigDecimal getTotalKept();
+    BigDecimal getTotalPassed();
+    BigDecimal getSubtreeKept();
+    BigDecimal getSubtreePassed();
+}
@@ -0,0 +1,36 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ShareConfig;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ShareConfigRepository extends JpaRepository<ShareConfig, Long> {
+    // latest version of the edge, served by idx_share_config_edge_from
+    Optional<ShareConfig> findTopByParentAndChildOrderByEffectiveFromDescIdDesc(Participant parent, Participant child);
+
+    String VIEW = "select s.id as id, p.id as parentId, p.name as parentName, c.id as childId, c.name as childName, "
+            + "s.passPercentage as passPercentage, s.updatedAt as updatedAt, s.snapshotVersion as snapshotVersion, "
+            + "s.effectiveFrom as effectiveFrom, s.effectiveTo as effectiveTo "
+            + "from ShareConfig s join s.parent p join s.child c ";
+
+    // keyset pages ordered by id as flat projections (one select per page, no entities or proxies),
+    // one method per filter combination so each can use its index; callers pass page size + 1 as the limit
+    @Query(VIEW + "where s.id > :afterId order by s.id")
+    List<ShareConfigView> findViews(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(VIEW + "where p.id = :parentId and s.id > :afterId order by s.id")
+    List<ShareConfigView> findViewsByParent(@Param("parentId") Long parentId, @Param("afterId") Long afterId, Limit limit);
+
+    @Query(VIEW + "where c.id = :childId and s.id > :afterId order by s.id")
+    List<ShareConfigView> findViewsByChild(@Param("childId") Long childId, @Param("afterId") Long afterId, Limit limit);
+
+    @Query(VIEW + "where p.id = :parentId and c.id = :childId and s.id > :afterId order by s.id")
+    List<ShareConfigView> findViewsByParentAndChild(@Param("parentId") Long parentId, @Param("childId") Long childId,
+                                                    @Param("afterId") Long afterId, Limit limit);
+}
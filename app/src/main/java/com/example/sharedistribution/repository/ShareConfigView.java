@@ -0,0 +1,20 @@
+package com.example.sharedistribution.repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Projection for share config list rows, with the parent / child names read in the same select.
+ */
+public interface ShareConfigView {
+    Long getId();
+    Long getParentId();
+    String getParentName();
+    Long getChildId();
+    String getChildName();
+    BigDecimal getPassPercentage();
+    Instant getUpdatedAt();
+    Long getSnapshotVersion();
+    Instant getEffectiveFrom();
+    Instant getEffectiveTo();
+}
@@ -0,0 +1,24 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.entity.TradeArchiveFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface TradeArchiveFileRepository extends JpaRepository<TradeArchiveFile, LocalDate> {
+
+    List<TradeArchiveFile> findByReportDateBetweenOrderByReportDateAsc(LocalDate from, LocalDate to);
+
+    List<TradeArchiveFile> findAllByOrderByReportDateAsc();
+
+    Optional<TradeArchiveFile> findTopByOrderByReportDateDesc();
+
+    // files whose trade id range contains the id; trade ids grow with time, so usually one
+    @Query("select f from TradeArchiveFile f where f.minTradeId <= :tradeId and f.maxTradeId >= :tradeId "
+            + "order by f.reportDate")
+    List<TradeArchiveFile> findCovering(@Param("tradeId") long tradeId);
+}
@@ -0,0 +1,45 @@
+package com.example.sharedistribution.repository;
+
+import com.example.sharedistribution.dto.DistributionLine;
+import com.example.sharedistribution.entity.Trade;
+import com.example.sharedistribution.entity.TradeDistribution;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface TradeDistributionRepository extends JpaRepository<TradeDistribution, Long> {
+    List<TradeDistribution> findByTrade(Trade trade);
+
+    // response lines of one trade in a single select, participant names included
+    @Query("select new com.example.sharedistribution.dto.DistributionLine(p.id, p.name, d.amountKept, d.amountPassed) "
+            + "from TradeDistribution d join d.participant p where d.trade.id = :tradeId order by d.id")
+    List<DistributionLine> findLinesByTradeId(@Param("tradeId") Long tradeId);
+
+    // grouped in the database over the indexed trade.created_at range [from, to)
+    @Query("select p.id as participantId, p.name as name, "
+            + "sum(d.amountKept) as totalKept, sum(d.amountPassed) as totalPassed "
+            + "from TradeDistribution d join d.participant p join d.trade t "
+            + "where t.createdAt >= :from and t.createdAt < :to "
+            + "group by p.id, p.name")
+    List<ParticipantTotals> sumByParticipantBetween(@Param("from") Instant from, @Param("to") Instant to);
+
+    // export: rows are read from an open cursor in fetch-size steps, with the trade in the same select.
+    // The participant is left as a lazy reference (names come from HierarchyGraphService): joining it made H2
+    // drive the join from participant and sort the whole range. Ordering only by created_at lets it walk
+    // idx_trade_created_at instead. Must be consumed inside a transaction and closed.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select d from TradeDistribution d join fetch d.trade t "
+            + "where t.createdAt >= :from and t.createdAt < :to "
+            + "order by t.createdAt")
+    Stream<TradeDistribution> streamBetween(@Param("from") Instant from, @Param("to") Instant to);
+}
@@ -3,5 +3,9 @@ package com.example.sharedistribution.repository;
 import com.example.sharedistribution.entity.Trade;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Optional;
+
 public interface TradeRepository extends JpaRepository<Trade, Long> {
+
+    Optional<Trade> findByIdempotencyKey(String idempotencyKey);
 }
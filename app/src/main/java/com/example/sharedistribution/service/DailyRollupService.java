@@ -0,0 +1,332 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.Trade;
+import com.example.sharedistribution.entity.TradeDistribution;
+import com.example.sharedistribution.entity.TradeType;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Savepoint;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Maintains daily_participant_rollup incrementally. Callers invoke record() inside the transaction that
+ * saves the distributions, so the rollup commits or rolls back together with the trade.
+ *
+ * Every line also adds to the subtree totals of its own participant and of everyone above it on the same
+ * trade. The lines of a trade are one ancestor chain, so these are running sums along the flow and cost no
+ * extra statements; subtree reports then read a single participant's rows.
+ */
+@Service
+public class DailyRollupService {
+
+    public static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    // rows per (date, participant); see DailyParticipantRollup
+    static final int SLOTS = 8;
+
+    static final String MERGE_SQL =
+            "merge into daily_participant_rollup r "
+            + "using (values (cast(? as date), cast(? as bigint), cast(? as int), "
+            + "cast(? as decimal(19,2)), cast(? as decimal(19,2)), cast(? as bigint), "
+            + "cast(? as decimal(19,2)), cast(? as decimal(19,2)))) "
+            + "v(report_date, participant_id, slot, kept, passed, cnt, subtree_kept, subtree_passed) "
+            + "on r.report_date = v.report_date and r.participant_id = v.participant_id and r.slot = v.slot "
+            + "when matched then update set total_kept = r.total_kept + v.kept, "
+            + "total_passed = r.total_passed + v.passed, trade_count = r.trade_count + v.cnt, "
+            + "subtree_kept = r.subtree_kept + v.subtree_kept, subtree_passed = r.subtree_passed + v.subtree_passed "
+            + "when not matched then insert (report_date, participant_id, slot, total_kept, total_passed, trade_count, "
+            + "subtree_kept, subtree_passed) "
+            + "values (v.report_date, v.participant_id, v.slot, v.kept, v.passed, v.cnt, v.subtree_kept, v.subtree_passed)";
+
+    private final JdbcTemplate jdbc;
+    private final HierarchyClosureService hierarchyClosure;
+    private final TradeArchive archive;
+
+    // the EntityManagerFactory dependency makes sure the table exists before the startup backfill
+    public DailyRollupService(JdbcTemplate jdbc, EntityManagerFactory emf, HierarchyClosureService hierarchyClosure,
+                              TradeArchive archive) {
+        this.jdbc = jdbc;
+        this.hierarchyClosure = hierarchyClosure;
+        this.archive = archive;
+    }
+
+    public static LocalDate istDate(Instant instant) {
+        return instant.atZone(IST).toLocalDate();
+    }
+
+    // databases from before the rollup table (or its subtree columns) get it filled once from the existing distributions
+    @PostConstruct
+    public void backfillIfEmpty() {
+        Integer rollups = jdbc.queryForObject("select count(*) from daily_participant_rollup", Integer.class);
+        Boolean legacy = jdbc.queryForObject(
+                "select exists(select 1 from daily_participant_rollup where subtree_kept is null)", Boolean.class);
+        if ((rollups != null && rollups == 0) || Boolean.TRUE.equals(legacy)) {
+            hierarchyClosure.backfillIfEmpty();
+            rebuild();
+        }
+    }
+
+    /**
+     * Recompute every rollup row from trade / trade_distribution. hierarchy_closure must be up to date.
+     * Rows of archived days are kept: their trades are no longer in the tables.
+     */
+    public void rebuild() {
+        LocalDate archivedThrough = archive.archivedThrough();
+        if (archivedThrough == null) {
+            jdbc.update("delete from daily_participant_rollup");
+        } else {
+            jdbc.update("delete from daily_participant_rollup where report_date > ?", Date.valueOf(archivedThrough));
+        }
+        // d: one original line per (trade, participant); e: every row of the same trade at or below d's
+        // participant, adjustments included. Links are never removed, so the closure orders a trade's lines
+        // the same way its chain did when it was executed. "+ 0" keeps H2 from driving the join from the small
+        // closure table through the participant_id indexes, which visits every line of an owner once per
+        // closure row below it; the trade_id joins keep it linear in the number of lines.
+        // H2 casts a timestamp with time zone to a date in the session's time zone (even after AT TIME ZONE),
+        // so the IST day is formatted explicitly.
+        jdbc.update("insert into daily_participant_rollup "
+                + "(report_date, participant_id, slot, total_kept, total_passed, trade_count, subtree_kept, subtree_passed) "
+                + "select cast(formatdatetime(t.created_at, 'yyyy-MM-dd', 'en', 'Asia/Kolkata') as date), d.participant_id, 0, "
+                + "sum(case when e.participant_id = d.participant_id then e.amount_kept else 0 end), "
+                + "sum(case when e.participant_id = d.participant_id then e.amount_passed else 0 end), "
+                + "count(case when e.id = d.id then 1 end), sum(e.amount_kept), sum(e.amount_passed) "
+                + "from trade_distribution d join trade t on t.id = d.trade_id "
+                + "join trade_distribution e on e.trade_id = d.trade_id "
+                + "join hierarchy_closure c on c.ancestor_id = d.participant_id + 0 and c.descendant_id = e.participant_id + 0 "
+                + "where d.adjustment_job_id is null and t.created_at >= ? "
+                + "group by cast(formatdatetime(t.created_at, 'yyyy-MM-dd', 'en', 'Asia/Kolkata') as date), d.participant_id",
+                OffsetDateTime.ofInstant(archive.liveFrom(), ZoneOffset.UTC));
+    }
+
+    /**
+     * Replace the rollups of every IST day after the given one with precomputed totals
+     * (date -> participant -> {kept, passed, line count, subtree kept, subtree passed}, amounts in paise).
+     * Used by the journal replay.
+     * Must run inside the caller's transaction.
+     */
+    public void replaceAfter(LocalDate day, Map<LocalDate, Map<Long, long[]>> totals) {
+        jdbc.update("delete from daily_participant_rollup where report_date > ?", Date.valueOf(day));
+        List<Object[]> rows = new ArrayList<>();
+        totals.forEach((date, byParticipant) -> byParticipant.forEach((participantId, t) ->
+                rows.add(new Object[]{Date.valueOf(date), participantId, 0, BigDecimal.valueOf(t[0], 2),
+                        BigDecimal.valueOf(t[1], 2), t[2], BigDecimal.valueOf(t[3], 2), BigDecimal.valueOf(t[4], 2)})));
+        jdbc.batchUpdate("insert into daily_participant_rollup (report_date, participant_id, slot, total_kept, "
+                + "total_passed, trade_count, subtree_kept, subtree_passed) values (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Add the given distribution rows to the rollups of their trade's IST day.
+     * Must run inside the caller's transaction.
+     */
+    public void record(Collection<TradeDistribution> rows) {
+        // aggregate first so a chunk touches each (date, participant) once
+        Map<Key, Delta> deltas = new TreeMap<>();
+        // the rows of a trade are in flow order
+        Map<Trade, List<TradeDistribution>> byTrade = new LinkedHashMap<>();
+        for (TradeDistribution d : rows) {
+            byTrade.computeIfAbsent(d.getTrade(), t -> new ArrayList<>()).add(d);
+        }
+        byTrade.forEach((trade, lines) -> {
+            int n = lines.size();
+            long[] participantIds = new long[n];
+            BigDecimal[] kept = new BigDecimal[n];
+            BigDecimal[] passed = new BigDecimal[n];
+            for (int i = 0; i < n; i++) {
+                TradeDistribution d = lines.get(i);
+                participantIds[i] = d.getParticipant().getId();
+                kept[i] = d.getAmountKept();
+                passed[i] = d.getAmountPassed();
+            }
+            add(deltas, istDate(trade.getCreatedAt()), new TradeFlow(trade.getType(), participantIds), kept, passed, true);
+        });
+        merge(deltas);
+    }
+
+    /**
+     * Same as record() for trades persisted outside JPA (write-behind, journal replay).
+     */
+    public void recordTrades(Collection<TradeRecord> trades) {
+        merge(tradeDeltas(trades));
+    }
+
+    /**
+     * The MERGE_SQL arguments recordTrades() would run, in row lock order, for a writer that runs them on its
+     * own connection (ReactiveTradeService).
+     */
+    List<Object[]> mergeArgs(Collection<TradeRecord> trades) {
+        return mergeArgs(tradeDeltas(trades));
+    }
+
+    private static Map<Key, Delta> tradeDeltas(Collection<TradeRecord> trades) {
+        Map<Key, Delta> deltas = new TreeMap<>();
+        for (TradeRecord t : trades) {
+            int n = t.lineCount();
+            BigDecimal[] kept = new BigDecimal[n];
+            BigDecimal[] passed = new BigDecimal[n];
+            for (int i = 0; i < n; i++) {
+                kept[i] = BigDecimal.valueOf(t.keptMinor()[i], 2);
+                passed[i] = BigDecimal.valueOf(t.passedMinor()[i], 2);
+            }
+            add(deltas, istDate(t.createdAt()), new TradeFlow(t.type(), t.participantIds()), kept, passed, true);
+        }
+        return deltas;
+    }
+
+    /**
+     * Add compensating amounts to the rollups of their trade's IST day; they are not counted as trades.
+     * flows holds the flow of every adjusted trade by trade id; participants above an adjusted line get the
+     * change in their subtree totals even when their own line is unchanged.
+     * Must run inside the caller's transaction.
+     */
+    public void recordAdjustments(Collection<DistributionAdjustment> adjustments, Map<Long, TradeFlow> flows) {
+        Map<Key, Delta> deltas = new TreeMap<>();
+        Map<Long, List<DistributionAdjustment>> byTrade = new LinkedHashMap<>();
+        for (DistributionAdjustment a : adjustments) {
+            byTrade.computeIfAbsent(a.tradeId(), t -> new ArrayList<>()).add(a);
+        }
+        byTrade.forEach((tradeId, lines) -> {
+            TradeFlow flow = flows.get(tradeId);
+            if (flow == null) {
+                throw new IllegalArgumentException("No flow for adjusted trade " + tradeId);
+            }
+            long[] participantIds = flow.participantIds();
+            BigDecimal[] kept = new BigDecimal[participantIds.length];
+            BigDecimal[] passed = new BigDecimal[participantIds.length];
+            Arrays.fill(kept, BigDecimal.ZERO);
+            Arrays.fill(passed, BigDecimal.ZERO);
+            for (DistributionAdjustment a : lines) {
+                int i = indexOf(participantIds, a.participantId());
+                if (i < 0) {
+                    throw new IllegalArgumentException("Participant " + a.participantId() + " is not on trade " + tradeId);
+                }
+                kept[i] = kept[i].add(a.kept());
+                passed[i] = passed[i].add(a.passed());
+            }
+            add(deltas, istDate(lines.get(0).tradeCreatedAt()), flow, kept, passed, false);
+        });
+        merge(deltas);
+    }
+
+    /**
+     * For every position of a flow, the amount of that participant plus everyone below it on the trade:
+     * LOSS flows start at the customer and PROFIT flows end there, so this is a prefix sum for LOSS and a
+     * suffix sum for PROFIT.
+     */
+    static long[] subtreeSums(TradeType type, long[] amounts) {
+        long[] sums = new long[amounts.length];
+        long sum = 0;
+        for (int k = 0; k < amounts.length; k++) {
+            int i = type == TradeType.LOSS ? k : amounts.length - 1 - k;
+            sum += amounts[i];
+            sums[i] = sum;
+        }
+        return sums;
+    }
+
+    private static BigDecimal[] subtreeSums(TradeType type, BigDecimal[] amounts) {
+        BigDecimal[] sums = new BigDecimal[amounts.length];
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int k = 0; k < amounts.length; k++) {
+            int i = type == TradeType.LOSS ? k : amounts.length - 1 - k;
+            sum = sum.add(amounts[i]);
+            sums[i] = sum;
+        }
+        return sums;
+    }
+
+    // adds the lines of one trade; counted is false for adjustments, which are not new trades
+    private static void add(Map<Key, Delta> deltas, LocalDate date, TradeFlow flow,
+                            BigDecimal[] kept, BigDecimal[] passed, boolean counted) {
+        BigDecimal[] subtreeKept = subtreeSums(flow.type(), kept);
+        BigDecimal[] subtreePassed = subtreeSums(flow.type(), passed);
+        long[] participantIds = flow.participantIds();
+        for (int i = 0; i < participantIds.length; i++) {
+            deltas.computeIfAbsent(new Key(date, participantIds[i]), k -> new Delta())
+                    .add(kept[i], passed[i], subtreeKept[i], subtreePassed[i], counted);
+        }
+    }
+
+    private static int indexOf(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) return i;
+        }
+        return -1;
+    }
+
+    // one JDBC batch whatever the chain depth
+    private void merge(Map<Key, Delta> deltas) {
+        List<Object[]> rows = mergeArgs(deltas);
+        // the JPA dialect has no savepoints, so take one on the transaction's connection directly
+        Savepoint savepoint = jdbc.execute((ConnectionCallback<Savepoint>) con -> con.setSavepoint());
+        try {
+            jdbc.batchUpdate(MERGE_SQL, rows);
+            jdbc.execute((ConnectionCallback<Void>) con -> {
+                con.releaseSavepoint(savepoint);
+                return null;
+            });
+        } catch (DuplicateKeyException ex) {
+            // another transaction inserted one of the new rows first: undo the whole batch and merge row by
+            // row, where merging a row again updates the one that now exists
+            jdbc.execute((ConnectionCallback<Void>) con -> {
+                con.rollback(savepoint);
+                return null;
+            });
+            for (Object[] args : rows) {
+                try {
+                    jdbc.update(MERGE_SQL, args);
+                } catch (DuplicateKeyException again) {
+                    jdbc.update(MERGE_SQL, args);
+                }
+            }
+        }
+    }
+
+    // sorted keys keep the row lock order the same for every transaction (no deadlocks)
+    private static List<Object[]> mergeArgs(Map<Key, Delta> deltas) {
+        int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<Key, Delta> e : deltas.entrySet()) {
+            Delta d = e.getValue();
+            rows.add(new Object[]{e.getKey().date, e.getKey().participantId, slot,
+                    d.kept, d.passed, d.count, d.subtreeKept, d.subtreePassed});
+        }
+        return rows;
+    }
+
+    private record Key(LocalDate date, Long participantId) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key o) {
+            int c = date.compareTo(o.date);
+            return c != 0 ? c : participantId.compareTo(o.participantId);
+        }
+    }
+
+    private static final class Delta {
+        BigDecimal kept = BigDecimal.ZERO;
+        BigDecimal passed = BigDecimal.ZERO;
+        BigDecimal subtreeKept = BigDecimal.ZERO;
+        BigDecimal subtreePassed = BigDecimal.ZERO;
+        long count;
+
+        void add(BigDecimal k, BigDecimal p, BigDecimal sk, BigDecimal sp, boolean counted) {
+            kept = kept.add(k);
+            passed = passed.add(p);
+            subtreeKept = subtreeKept.add(sk);
+            subtreePassed = subtreePassed.add(sp);
+            if (counted) count++;
+        }
+    }
+}
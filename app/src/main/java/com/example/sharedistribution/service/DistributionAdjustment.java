@@ -0,0 +1,12 @@
+package com.example.sharedistribution.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One compensating trade_distribution row: the change of a participant's kept / passed amounts for a trade.
+ * tradeCreatedAt decides the rollup day the change lands in.
+ */
+public record DistributionAdjustment(long distributionId, long tradeId, Instant tradeCreatedAt,
+                                     long participantId, BigDecimal kept, BigDecimal passed) {
+}
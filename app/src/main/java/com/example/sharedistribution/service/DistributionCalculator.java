@@ -0,0 +1,96 @@
+package com.example.sharedistribution.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Distribution arithmetic along a chain, in the order money flows (customer -> owner for LOSS,
+ * owner -> customer for PROFIT). passBasisPoints[i] is the percentage participant i passes to
+ * participant i + 1, in basis points (90.00% -> 9000).
+ *
+ * The fixed-point path works on amounts in minor units (paise) and reproduces
+ * amount * pct / 100 rounded HALF_UP to 2 decimals exactly:
+ * passed = (amountMinor * bp + 5_000) / 10_000 for non-negative amounts.
+ * The BigDecimal path is the original formula. New trades never need it: TradeService caps amounts at
+ * MAX_FIXED_POINT_MINOR paise. It remains for trades stored before that cap (redistribution recomputes
+ * them) and as the reference distributeExact that the fixed-point path is tested against.
+ */
+public final class DistributionCalculator {
+
+    public static final int SCALE = 2;
+    private static final RoundingMode RM = RoundingMode.HALF_UP;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    // amountMinor * 10_000 (max basis points) must not overflow
+    static final long MAX_FIXED_POINT_MINOR = Long.MAX_VALUE / 10_000;
+
+    private DistributionCalculator() {}
+
+    /**
+     * True if a (positive, scale-2) amount can be distributed with the long arithmetic.
+     */
+    public static boolean fitsFixedPoint(BigDecimal amount) {
+        BigDecimal minor = amount.movePointRight(SCALE);
+        return minor.signum() >= 0 && minor.scale() <= 0 && minor.compareTo(BigDecimal.valueOf(MAX_FIXED_POINT_MINOR)) <= 0;
+    }
+
+    /**
+     * Amount passed on from amountMinor at the given percentage, rounded HALF_UP to whole paise.
+     */
+    public static long passedMinor(long amountMinor, long passBasisPoints) {
+        return (amountMinor * passBasisPoints + 5_000) / 10_000;
+    }
+
+    /**
+     * Fixed-point distribution. kept and passed must have passBasisPoints.length + 1 slots;
+     * the last participant keeps whatever reaches it and passes nothing.
+     */
+    public static void distribute(long amountMinor, long[] passBasisPoints, long[] kept, long[] passed) {
+        long current = amountMinor;
+        for (int i = 0; i < passBasisPoints.length; i++) {
+            long amountPassed = passedMinor(current, passBasisPoints[i]);
+            kept[i] = current - amountPassed;
+            passed[i] = amountPassed;
+            current = amountPassed;
+        }
+        kept[passBasisPoints.length] = current;
+        passed[passBasisPoints.length] = 0;
+    }
+
+    /**
+     * Distribution of a scale-2 amount as decimals, using the fixed-point path whenever the amount fits.
+     * The last participant passes BigDecimal.ZERO.
+     */
+    public static void distribute(BigDecimal amount, long[] passBasisPoints, BigDecimal[] kept, BigDecimal[] passed) {
+        int n = kept.length;
+        if (fitsFixedPoint(amount)) {
+            // long arithmetic on paise; only the results become BigDecimal
+            long[] keptMinor = new long[n];
+            long[] passedMinor = new long[n];
+            distribute(amount.unscaledValue().longValueExact(), passBasisPoints, keptMinor, passedMinor);
+            for (int i = 0; i < n; i++) {
+                kept[i] = BigDecimal.valueOf(keptMinor[i], SCALE);
+                passed[i] = i == n - 1 ? BigDecimal.ZERO : BigDecimal.valueOf(passedMinor[i], SCALE);
+            }
+        } else {
+            distributeExact(amount, passBasisPoints, kept, passed);
+        }
+    }
+
+    /**
+     * BigDecimal distribution, same layout as distribute(); kept for amounts beyond the long range
+     * and as the reference the fixed-point path must match.
+     */
+    public static void distributeExact(BigDecimal amount, long[] passBasisPoints, BigDecimal[] kept, BigDecimal[] passed) {
+        BigDecimal current = amount.setScale(SCALE, RM);
+        for (int i = 0; i < passBasisPoints.length; i++) {
+            BigDecimal passPct = BigDecimal.valueOf(passBasisPoints[i], 2);
+            BigDecimal amountPassed = current.multiply(passPct).divide(HUNDRED, SCALE, RM);
+            kept[i] = current.subtract(amountPassed).setScale(SCALE, RM);
+            passed[i] = amountPassed;
+            current = amountPassed;
+        }
+        kept[passBasisPoints.length] = current.setScale(SCALE, RM);
+        passed[passBasisPoints.length] = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.Trade;
+import com.example.sharedistribution.entity.TradeDistribution;
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.repository.TradeDistributionRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes every distribution line of a date range straight from a database cursor to an output stream.
+ * Memory use does not depend on the number of rows: the persistence context is cleared every CLEAR_EVERY
+ * rows and the writer buffer is fixed. Archived days are read from their TradeArchive files the same way.
+ */
+@Service
+public class DistributionExportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final int CLEAR_EVERY = 1000;
+    private static final String CSV_HEADER =
+            "distributionId,tradeId,tradeCreatedAt,tradeType,tradeAmount,participantId,participantName,amountKept,amountPassed\n";
+
+    private final TradeDistributionRepository distributionRepo;
+    private final JdbcTemplate jdbc;
+    private final HierarchyGraphService hierarchyGraph;
+    private final EntityManager entityManager;
+    private final TradeArchive archive;
+    private final TransactionTemplate readOnlyTx;
+
+    // one exported line, from either source
+    private record ExportRow(long distributionId, long tradeId, Instant tradeCreatedAt, TradeType tradeType,
+                             BigDecimal tradeAmount, long participantId, String participantName,
+                             BigDecimal amountKept, BigDecimal amountPassed) {}
+
+    public DistributionExportService(TradeDistributionRepository distributionRepo,
+                                     JdbcTemplate jdbc,
+                                     HierarchyGraphService hierarchyGraph,
+                                     TradeArchive archive,
+                                     EntityManager entityManager,
+                                     PlatformTransactionManager txManager) {
+        this.distributionRepo = distributionRepo;
+        this.jdbc = jdbc;
+        this.hierarchyGraph = hierarchyGraph;
+        this.archive = archive;
+        this.entityManager = entityManager;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Export the distributions of trades created on the IST days from..to (both inclusive).
+     */
+    public void export(LocalDate from, LocalDate to, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) writer.write(CSV_HEADER);
+        // days up to archivedThrough come from their files, later ones from the live tables
+        LocalDate archivedThrough = archive.archivedThrough();
+        LocalDate liveFrom = from;
+        try {
+            if (archivedThrough != null && !from.isAfter(archivedThrough)) {
+                archive.forEachLine(from, to.isBefore(archivedThrough) ? to : archivedThrough, l -> write(writer, format,
+                        new ExportRow(l.id(), l.tradeId(), l.tradeCreatedAt(), l.tradeType(), l.tradeAmount(),
+                                l.participantId(), participantName(l.participantId()), l.amountKept(), l.amountPassed())));
+                liveFrom = archivedThrough.plusDays(1);
+            }
+            if (!liveFrom.isAfter(to)) exportLive(liveFrom, to, format, writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void exportLive(LocalDate from, LocalDate to, Format format, Writer writer) {
+        Instant start = from.atStartOfDay(DailyRollupService.IST).toInstant();
+        Instant end = to.plusDays(1).atStartOfDay(DailyRollupService.IST).toInstant();
+        readOnlyTx.executeWithoutResult(status -> {
+            // by default H2 materializes a whole result before returning the first row; lazy execution
+            // streams it. Set on the transaction's connection only and reset before it goes back to the pool.
+            jdbc.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            try (Stream<TradeDistribution> rows = distributionRepo.streamBetween(start, end)) {
+                long n = 0;
+                for (Iterator<TradeDistribution> it = rows.iterator(); it.hasNext(); ) {
+                    TradeDistribution d = it.next();
+                    Trade t = d.getTrade();
+                    write(writer, format, new ExportRow(d.getId(), t.getId(), t.getCreatedAt(), t.getType(),
+                            t.getAmount(), d.getParticipant().getId(), participantName(d), d.getAmountKept(),
+                            d.getAmountPassed()));
+                    // rows already written are not needed any more
+                    if (++n % CLEAR_EVERY == 0) entityManager.clear();
+                }
+            } finally {
+                jdbc.execute("SET LAZY_QUERY_EXECUTION FALSE");
+            }
+        });
+    }
+
+    private String participantName(TradeDistribution d) {
+        String name = hierarchyGraph.nameOf(d.getParticipant().getId());
+        // only loads the participant if the graph does not know it
+        return name != null ? name : d.getParticipant().getName();
+    }
+
+    private String participantName(long participantId) {
+        String name = hierarchyGraph.nameOf(participantId);
+        return name != null ? name
+                : jdbc.queryForObject("select name from participant where id = ?", String.class, participantId);
+    }
+
+    private static void write(Writer w, Format format, ExportRow row) {
+        try {
+            if (format == Format.CSV) writeCsv(w, row);
+            else writeJson(w, row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsv(Writer w, ExportRow r) throws IOException {
+        w.write(r.distributionId() + "," + r.tradeId() + "," + r.tradeCreatedAt() + "," + r.tradeType() + ","
+                + r.tradeAmount().toPlainString() + "," + r.participantId() + ",");
+        String name = r.participantName();
+        if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || name.indexOf('\n') >= 0) {
+            name = '"' + name.replace("\"", "\"\"") + '"';
+        }
+        w.write(name);
+        w.write("," + r.amountKept().toPlainString() + "," + r.amountPassed().toPlainString() + "\n");
+    }
+
+    private static void writeJson(Writer w, ExportRow r) throws IOException {
+        w.write("{\"distributionId\":" + r.distributionId() + ",\"tradeId\":" + r.tradeId()
+                + ",\"tradeCreatedAt\":\"" + r.tradeCreatedAt() + "\",\"tradeType\":\"" + r.tradeType()
+                + "\",\"tradeAmount\":" + r.tradeAmount().toPlainString()
+                + ",\"participantId\":" + r.participantId() + ",\"participantName\":");
+        writeJsonString(w, r.participantName());
+        w.write(",\"amountKept\":" + r.amountKept().toPlainString()
+                + ",\"amountPassed\":" + r.amountPassed().toPlainString() + "}\n");
+    }
+
+    private static void writeJsonString(Writer w, String s) throws IOException {
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> w.write("\\\"");
+                case '\\' -> w.write("\\\\");
+                case '\n' -> w.write("\\n");
+                case '\r' -> w.write("\\r");
+                case '\t' -> w.write("\\t");
+                default -> {
+                    if (c < 0x20) w.write(String.format("\\u%04x", (int) c));
+                    else w.write(c);
+                }
+            }
+        }
+        w.write('"');
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+
+/**
+ * Compiled distribution inputs for one customer: the participants in flow order and the pass
+ * percentage (basis points) of every hop, for both trade types.
+ * LOSS flows customer -> owner, PROFIT flows owner -> customer.
+ */
+public final class DistributionPlan {
+
+    private final long customerId;
+    private final long shareConfigVersion;
+    private final long[] lossFlow;
+    private final long[] lossPassBps;
+    private final long[] profitFlow;
+    private final long[] profitPassBps;
+
+    DistributionPlan(long customerId, long shareConfigVersion,
+                     long[] lossFlow, long[] lossPassBps, long[] profitFlow, long[] profitPassBps) {
+        this.customerId = customerId;
+        this.shareConfigVersion = shareConfigVersion;
+        this.lossFlow = lossFlow;
+        this.lossPassBps = lossPassBps;
+        this.profitFlow = profitFlow;
+        this.profitPassBps = profitPassBps;
+    }
+
+    public long getCustomerId() { return customerId; }
+    public long getShareConfigVersion() { return shareConfigVersion; }
+    public int depth() { return lossFlow.length; }
+
+    // participant ids in the order the money moves; callers must not modify the array
+    public long[] flow(TradeType type) {
+        return type == TradeType.LOSS ? lossFlow : profitFlow;
+    }
+
+    // passBps[i] applies from flow[i] to flow[i + 1]; callers must not modify the array
+    public long[] passBasisPoints(TradeType type) {
+        return type == TradeType.LOSS ? lossPassBps : profitPassBps;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.sharedistribution.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-customer cache of DistributionPlans built from the hierarchy graph and the share config snapshot.
+ * A plan is dropped when a link or share config on its customer's chain changes, i.e. when the customer
+ * is in the subtree below the changed edge.
+ *
+ * Plans are built inside computeIfAbsent and dropped with remove on the same key, so an invalidation that
+ * runs after a change was published always removes a plan that may have been built from the old state.
+ */
+@Service
+public class DistributionPlanService {
+
+    private final HierarchyGraphService hierarchyGraph;
+    private final ShareConfigSnapshotService shareSnapshots;
+    private final Map<Long, DistributionPlan> plans = new ConcurrentHashMap<>();
+
+    public DistributionPlanService(HierarchyGraphService hierarchyGraph, ShareConfigSnapshotService shareSnapshots) {
+        this.hierarchyGraph = hierarchyGraph;
+        this.shareSnapshots = shareSnapshots;
+    }
+
+    /**
+     * Plan for the customer; throws IllegalArgumentException for an unknown customer and
+     * IllegalStateException for a broken chain or a missing share config.
+     */
+    public DistributionPlan planFor(Long customerId) {
+        DistributionPlan plan = plans.get(customerId);
+        return plan != null ? plan : plans.computeIfAbsent(customerId, this::build);
+    }
+
+    @EventListener
+    public void onHierarchyChanged(HierarchyChangedEvent event) {
+        invalidateSubtree(event.participantId());
+    }
+
+    @EventListener
+    public void onShareConfigChanged(ShareConfigChangedEvent event) {
+        invalidateSubtree(event.childId());
+    }
+
+    private void invalidateSubtree(Long participantId) {
+        if (participantId == null) {
+            plans.clear();
+            return;
+        }
+        for (Long id : hierarchyGraph.subtreeOf(participantId)) {
+            plans.remove(id);
+        }
+    }
+
+    private DistributionPlan build(Long customerId) {
+        long[] chain = hierarchyGraph.chainOf(customerId);
+        ShareConfigSnapshot shares = shareSnapshots.current();
+        int hops = chain.length - 1;
+
+        // LOSS: chain order, child chain[i] passes to parent chain[i + 1]
+        long[] lossPassBps = new long[hops];
+        for (int i = 0; i < hops; i++) {
+            lossPassBps[i] = passBasisPoints(shares, chain[i + 1], chain[i]);
+        }
+        // PROFIT: reversed chain, the percentages of the same edges in reverse
+        long[] profitFlow = new long[chain.length];
+        long[] profitPassBps = new long[hops];
+        for (int i = 0; i < chain.length; i++) {
+            profitFlow[i] = chain[chain.length - 1 - i];
+        }
+        for (int i = 0; i < hops; i++) {
+            profitPassBps[i] = lossPassBps[hops - 1 - i];
+        }
+        return new DistributionPlan(customerId, shares.getVersion(), chain, lossPassBps, profitFlow, profitPassBps);
+    }
+
+    private static long passBasisPoints(ShareConfigSnapshot shares, long parentId, long childId) {
+        long bp = shares.passBasisPoints(parentId, childId);
+        if (bp == ShareConfigSnapshot.MISSING) {
+            throw new IllegalStateException("ShareConfig missing for parent=" + parentId + " child=" + childId);
+        }
+        return bp;
+    }
+}
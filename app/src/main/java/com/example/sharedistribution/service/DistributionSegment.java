@@ -0,0 +1,558 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Columnar file holding one IST day of distribution lines with their trades, as written by TradeArchive.
+ * Every column is stored on its own, so a scan reads (and the OS pages in) only the columns it uses.
+ *
+ * Layout, little-endian:
+ *   int magic "TSEG", byte format version, long epochDay, int trades, int lines,
+ *   then (int offset, int length) for each of the COLUMNS columns, then the column blocks,
+ *   then int CRC32C of everything before it.
+ * Trade columns hold one value per trade, line columns one per line; the lines of a trade are adjacent and
+ * TRADE_LINES says how many there are (0 for a trade that has none). Integers are bit-packed: a base (the
+ * minimum), a bit width and (value - base) in width bits each, so a constant column takes no space at all.
+ * On top of that
+ * - ids and timestamps (epoch micros) are packed as deltas from the previous value; a line's created_at is
+ *   a delta from its trade's;
+ * - amounts are packed as hundredths; the rare amount that is not whole paise or does not fit in a long
+ *   is stored as a string in DECIMALS and packed as 0;
+ * - participants are an ascending dictionary of ids (delta packed) plus a packed index per line;
+ * - nullable columns start with a packed 0/1 presence column.
+ * Reading every line checks the CRC; scans that touch a few columns do not, the archive run verified the
+ * file when it wrote it. An open segment is not thread-safe.
+ */
+public final class DistributionSegment {
+
+    static final int MAGIC = 0x54534547; // "TSEG"
+    static final byte FORMAT_VERSION = 1;
+
+    // trade columns
+    private static final int TRADE_ID = 0;
+    private static final int TRADE_LINES = 1;
+    private static final int TRADE_CUSTOMER = 2;
+    private static final int TRADE_AMOUNT = 3;
+    private static final int TRADE_TYPE = 4;
+    private static final int TRADE_CREATED_AT = 5;
+    private static final int TRADE_CONFIG_VERSION = 6;
+    private static final int TRADE_KEY = 7;
+    // line columns
+    private static final int LINE_ID = 8;
+    private static final int LINE_PARTICIPANT = 9;
+    private static final int LINE_KEPT = 10;
+    private static final int LINE_PASSED = 11;
+    private static final int LINE_CREATED_AT = 12;
+    private static final int LINE_ADJUSTMENT_JOB = 13;
+    // participant dictionary and amounts that do not fit the packed columns
+    private static final int PARTICIPANTS = 14;
+    private static final int DECIMALS = 15;
+    private static final int COLUMNS = 16;
+
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 4 + 4 + COLUMNS * 8;
+
+    /**
+     * An amount stored in DECIMALS: column is LINE_KEPT, LINE_PASSED or TRADE_AMOUNT, index the line or trade.
+     */
+    record Decimal(int column, int index, BigDecimal value) {}
+
+    private final Path path;
+    private final ByteBuffer buf;
+    private final LocalDate day;
+    private final int trades;
+    private final int lines;
+    private final int[] offsets = new int[COLUMNS];
+    // packed words of the column being decoded
+    private long[] words;
+
+    private DistributionSegment(Path path, ByteBuffer buf) {
+        this.path = path;
+        this.buf = buf;
+        if (buf.capacity() < HEADER_BYTES + 4 || buf.getInt(0) != MAGIC) {
+            throw new IllegalStateException(path + " is not a distribution segment");
+        }
+        if (buf.get(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported segment format version " + buf.get(4) + " in " + path);
+        }
+        this.day = LocalDate.ofEpochDay(buf.getLong(5));
+        this.trades = buf.getInt(13);
+        this.lines = buf.getInt(17);
+        for (int c = 0; c < COLUMNS; c++) {
+            int offset = buf.getInt(21 + c * 8);
+            int length = buf.getInt(25 + c * 8);
+            if (offset < HEADER_BYTES || length < 0 || (long) offset + length > buf.capacity() - 4) {
+                throw new IllegalStateException("Distribution segment " + path + " is damaged");
+            }
+            offsets[c] = offset;
+        }
+    }
+
+    /**
+     * Map a segment file. Throws IllegalStateException if it is not one.
+     */
+    public static DistributionSegment open(Path path) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            return new DistributionSegment(path, buf);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read distribution segment " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Whether the file starts like a segment (rather than a gzip'd archive of the first format).
+     */
+    static boolean isSegment(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && ch.read(head) >= 0) { }
+            return !head.hasRemaining() && head.getInt(0) == MAGIC;
+        }
+    }
+
+    public LocalDate day() { return day; }
+    public int trades() { return trades; }
+    public int lines() { return lines; }
+
+    /**
+     * Whether the segment holds the trade, with or without lines.
+     */
+    public boolean containsTrade(long tradeId) {
+        for (long id : undelta(offsets[TRADE_ID], trades, new long[trades])) {
+            if (id == tradeId) return true;
+        }
+        return false;
+    }
+
+    // -- columns for SegmentScanner; each decodes into reuse when it is large enough
+
+    long[] tradeTypes(long[] reuse) {
+        return unpack(offsets[TRADE_TYPE], trades, fit(reuse, trades));
+    }
+
+    long[] tradeLines(long[] reuse) {
+        return unpack(offsets[TRADE_LINES], trades, fit(reuse, trades));
+    }
+
+    long[] kept(long[] reuse) {
+        return unpack(offsets[LINE_KEPT], lines, fit(reuse, lines));
+    }
+
+    long[] passed(long[] reuse) {
+        return unpack(offsets[LINE_PASSED], lines, fit(reuse, lines));
+    }
+
+    long[] participantIndexes(long[] reuse) {
+        return unpack(offsets[LINE_PARTICIPANT], lines, fit(reuse, lines));
+    }
+
+    long[] participants() {
+        int pos = offsets[PARTICIPANTS];
+        int n = buf.getInt(pos);
+        return undelta(pos + 4, n, new long[n]);
+    }
+
+    List<Decimal> decimals() {
+        int pos = offsets[DECIMALS];
+        int n = buf.getInt(pos);
+        pos += 4;
+        List<Decimal> decimals = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int column = buf.get(pos);
+            int index = buf.getInt(pos + 1);
+            int len = buf.getShort(pos + 5) & 0xffff;
+            byte[] bytes = new byte[len];
+            buf.get(pos + 7, bytes);
+            decimals.add(new Decimal(column, index, new BigDecimal(new String(bytes, StandardCharsets.US_ASCII))));
+            pos += 7 + len;
+        }
+        return decimals;
+    }
+
+    static boolean isKept(Decimal d) { return d.column() == LINE_KEPT; }
+    static boolean isPassed(Decimal d) { return d.column() == LINE_PASSED; }
+
+    /**
+     * Every line in file order, rebuilt with its trade.
+     */
+    public void forEachLine(Consumer<TradeArchive.Line> consumer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buf.duplicate().position(0).limit(buf.capacity() - 4));
+        if ((int) crc.getValue() != buf.getInt(buf.capacity() - 4)) {
+            throw new IllegalStateException("Distribution segment " + path + " is damaged");
+        }
+        long[] tradeIds = undelta(offsets[TRADE_ID], trades, new long[trades]);
+        long[] tradeLines = tradeLines(null);
+        long[] customers = unpack(offsets[TRADE_CUSTOMER], trades, new long[trades]);
+        long[] amounts = unpack(offsets[TRADE_AMOUNT], trades, new long[trades]);
+        long[] types = tradeTypes(null);
+        Nullable tradeCreated = nullableDeltas(offsets[TRADE_CREATED_AT], trades);
+        Nullable configVersions = nullable(offsets[TRADE_CONFIG_VERSION], trades);
+        String[] keys = strings(offsets[TRADE_KEY], trades);
+        long[] ids = undelta(offsets[LINE_ID], lines, new long[lines]);
+        long[] participantIds = participants();
+        long[] participantIndexes = participantIndexes(null);
+        long[] kept = kept(null);
+        long[] passed = passed(null);
+        Nullable created = nullable(offsets[LINE_CREATED_AT], lines);
+        Nullable jobs = nullable(offsets[LINE_ADJUSTMENT_JOB], lines);
+        BigDecimal[][] decimals = {new BigDecimal[0], new BigDecimal[0], new BigDecimal[0]};
+        for (Decimal d : decimals()) {
+            int k = d.column() == TRADE_AMOUNT ? 0 : d.column() == LINE_KEPT ? 1 : 2;
+            int size = k == 0 ? trades : lines;
+            if (decimals[k].length == 0) decimals[k] = new BigDecimal[size];
+            decimals[k][d.index()] = d.value();
+        }
+        TradeType[] typeValues = TradeType.values();
+        int line = 0;
+        for (int t = 0; t < trades; t++) {
+            BigDecimal amount = amount(amounts, decimals[0], t);
+            Instant tradeAt = tradeCreated.present(t) ? fromMicros(tradeCreated.values[t]) : null;
+            long tradeMicros = tradeCreated.present(t) ? tradeCreated.values[t] : 0;
+            Long configVersion = configVersions.present(t) ? configVersions.values[t] : null;
+            for (long end = line + tradeLines[t]; line < end; line++) {
+                consumer.accept(new TradeArchive.Line(ids[line], tradeIds[t], customers[t], amount,
+                        typeValues[(int) types[t]], tradeAt, configVersion, keys[t],
+                        participantIds[(int) participantIndexes[line]],
+                        amount(kept, decimals[1], line), amount(passed, decimals[2], line),
+                        created.present(line) ? fromMicros(tradeMicros + created.values[line]) : null,
+                        jobs.present(line) ? jobs.values[line] : null));
+            }
+        }
+    }
+
+    private static BigDecimal amount(long[] hundredths, BigDecimal[] decimals, int i) {
+        BigDecimal d = decimals.length == 0 ? null : decimals[i];
+        return d != null ? d : BigDecimal.valueOf(hundredths[i], 2);
+    }
+
+    // -- decoding
+
+    private record Nullable(long[] present, long[] values) {
+        boolean present(int i) { return present[i] != 0; }
+    }
+
+    private Nullable nullable(int pos, int n) {
+        long[] present = unpack(pos, n, new long[n]);
+        return new Nullable(present, unpack(pos + packedBytes(pos, n), n, new long[n]));
+    }
+
+    private Nullable nullableDeltas(int pos, int n) {
+        long[] present = unpack(pos, n, new long[n]);
+        return new Nullable(present, undelta(pos + packedBytes(pos, n), n, new long[n]));
+    }
+
+    private String[] strings(int pos, int n) {
+        long[] present = unpack(pos, n, new long[n]);
+        pos += packedBytes(pos, n);
+        long[] lengths = unpack(pos, n, new long[n]);
+        pos += packedBytes(pos, n);
+        String[] values = new String[n];
+        for (int i = 0; i < n; i++) {
+            if (present[i] == 0) continue;
+            byte[] bytes = new byte[(int) lengths[i]];
+            buf.get(pos, bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+            pos += bytes.length;
+        }
+        return values;
+    }
+
+    private long[] undelta(int pos, int n, long[] out) {
+        if (n == 0) return out;
+        out[0] = buf.getLong(pos);
+        unpackInto(pos + 8, n - 1, out, 1);
+        for (int i = 1; i < n; i++) out[i] += out[i - 1];
+        return out;
+    }
+
+    private long[] unpack(int pos, int n, long[] out) {
+        unpackInto(pos, n, out, 0);
+        return out;
+    }
+
+    // base + width-bit values; the packed words are copied out in bulk, and a value's bits from the next word
+    // are always ORed in, then masked off when the value does not straddle the two
+    private void unpackInto(int pos, int n, long[] out, int off) {
+        long base = buf.getLong(pos);
+        int width = buf.get(pos + 8);
+        if (width == 0) {
+            Arrays.fill(out, off, off + n, base);
+            return;
+        }
+        int count = (int) (((long) n * width + 63) >>> 6);
+        if (words == null || words.length < count + 1) words = new long[count + 1];
+        long[] w = words;
+        buf.slice(pos + 9, count * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(w, 0, count);
+        w[count] = 0;
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        long bit = 0;
+        for (int i = 0; i < n; i++, bit += width) {
+            int word = (int) (bit >>> 6);
+            int shift = (int) bit & 63;
+            long v = (w[word] >>> shift) | ((w[word + 1] << 1) << (63 - shift));
+            out[off + i] = base + (v & mask);
+        }
+    }
+
+    private int packedBytes(int pos, int n) {
+        return 9 + 8 * (int) (((long) n * buf.get(pos + 8) + 63) >>> 6);
+    }
+
+    private static long[] fit(long[] reuse, int n) {
+        return reuse != null && reuse.length >= n ? reuse : new long[n];
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    private static long toMicros(Instant t) {
+        return t.getEpochSecond() * 1_000_000L + t.getNano() / 1_000;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    /**
+     * Collects the lines of one day, in file order (the lines of a trade adjacent), and encodes them.
+     */
+    public static final class Builder {
+
+        private final LocalDate day;
+        private final Longs tradeIds = new Longs();
+        private final Longs tradeLines = new Longs();
+        private final Longs customers = new Longs();
+        private final Longs amounts = new Longs();
+        private final Longs types = new Longs();
+        private final Longs tradeCreatedPresent = new Longs();
+        private final Longs tradeCreated = new Longs();
+        private final Longs configPresent = new Longs();
+        private final Longs configVersions = new Longs();
+        private final List<String> keys = new ArrayList<>();
+        private final Longs ids = new Longs();
+        private final Longs participants = new Longs();
+        private final Longs kept = new Longs();
+        private final Longs passed = new Longs();
+        private final Longs createdPresent = new Longs();
+        private final Longs created = new Longs();
+        private final Longs jobPresent = new Longs();
+        private final Longs jobs = new Longs();
+        private final List<Decimal> decimals = new ArrayList<>();
+
+        public Builder(LocalDate day) {
+            this.day = day;
+        }
+
+        public int lines() {
+            return ids.size;
+        }
+
+        public int trades() {
+            return tradeIds.size;
+        }
+
+        /**
+         * Add a trade without distribution lines; the trade fields of header are used, its line fields ignored.
+         */
+        public void addTrade(TradeArchive.Line header) {
+            int t = tradeIds.size;
+            tradeIds.add(header.tradeId());
+            tradeLines.add(0);
+            customers.add(header.customerId());
+            amounts.add(hundredths(header.tradeAmount(), TRADE_AMOUNT, t));
+            types.add(header.tradeType().ordinal());
+            tradeCreatedPresent.add(header.tradeCreatedAt() != null ? 1 : 0);
+            tradeCreated.add(header.tradeCreatedAt() != null ? toMicros(header.tradeCreatedAt())
+                    : t > 0 ? tradeCreated.values[t - 1] : 0);
+            configPresent.add(header.shareConfigVersion() != null ? 1 : 0);
+            configVersions.add(header.shareConfigVersion() != null ? header.shareConfigVersion() : 0);
+            keys.add(header.idempotencyKey());
+        }
+
+        public void add(TradeArchive.Line l) {
+            int t = tradeIds.size - 1;
+            if (t < 0 || tradeIds.values[t] != l.tradeId()) {
+                addTrade(l);
+                t++;
+            }
+            tradeLines.values[t]++;
+            int i = ids.size;
+            ids.add(l.id());
+            participants.add(l.participantId());
+            kept.add(hundredths(l.amountKept(), LINE_KEPT, i));
+            passed.add(hundredths(l.amountPassed(), LINE_PASSED, i));
+            long tradeMicros = l.tradeCreatedAt() != null ? tradeCreated.values[t] : 0;
+            createdPresent.add(l.createdAt() != null ? 1 : 0);
+            created.add(l.createdAt() != null ? toMicros(l.createdAt()) - tradeMicros : 0);
+            jobPresent.add(l.adjustmentJobId() != null ? 1 : 0);
+            jobs.add(l.adjustmentJobId() != null ? l.adjustmentJobId() : 0);
+        }
+
+        private long hundredths(BigDecimal amount, int column, int index) {
+            if (amount.scale() <= 2 && amount.precision() - amount.scale() <= 16) {
+                return amount.movePointRight(2).longValueExact();
+            }
+            decimals.add(new Decimal(column, index, amount));
+            return 0;
+        }
+
+        /**
+         * The encoded file.
+         */
+        public ByteBuffer encode() {
+            int n = ids.size;
+            int t = tradeIds.size;
+            ByteBuffer[] blocks = new ByteBuffer[COLUMNS];
+            blocks[TRADE_ID] = new Out().delta(tradeIds.values, t).done();
+            blocks[TRADE_LINES] = new Out().packed(tradeLines.values, 0, t).done();
+            blocks[TRADE_CUSTOMER] = new Out().packed(customers.values, 0, t).done();
+            blocks[TRADE_AMOUNT] = new Out().packed(amounts.values, 0, t).done();
+            blocks[TRADE_TYPE] = new Out().packed(types.values, 0, t).done();
+            blocks[TRADE_CREATED_AT] = new Out().packed(tradeCreatedPresent.values, 0, t).delta(tradeCreated.values, t).done();
+            blocks[TRADE_CONFIG_VERSION] = new Out().packed(configPresent.values, 0, t).packed(configVersions.values, 0, t).done();
+            blocks[TRADE_KEY] = strings(keys);
+            blocks[LINE_ID] = new Out().delta(ids.values, n).done();
+
+            long[] dictionary = Arrays.stream(participants.values, 0, n).distinct().sorted().toArray();
+            long[] indexes = new long[n];
+            for (int i = 0; i < n; i++) indexes[i] = Arrays.binarySearch(dictionary, participants.values[i]);
+            blocks[LINE_PARTICIPANT] = new Out().packed(indexes, 0, n).done();
+            blocks[PARTICIPANTS] = new Out().putInt(dictionary.length).delta(dictionary, dictionary.length).done();
+
+            blocks[LINE_KEPT] = new Out().packed(kept.values, 0, n).done();
+            blocks[LINE_PASSED] = new Out().packed(passed.values, 0, n).done();
+            blocks[LINE_CREATED_AT] = new Out().packed(createdPresent.values, 0, n).packed(created.values, 0, n).done();
+            blocks[LINE_ADJUSTMENT_JOB] = new Out().packed(jobPresent.values, 0, n).packed(jobs.values, 0, n).done();
+            Out d = new Out().putInt(decimals.size());
+            for (Decimal dec : decimals) {
+                byte[] bytes = dec.value().toPlainString().getBytes(StandardCharsets.US_ASCII);
+                d.putByte(dec.column()).putInt(dec.index()).putShort(bytes.length).putBytes(bytes);
+            }
+            blocks[DECIMALS] = d.done();
+
+            int size = HEADER_BYTES + 4;
+            for (ByteBuffer b : blocks) size += b.remaining();
+            ByteBuffer file = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            file.putInt(MAGIC).put(FORMAT_VERSION).putLong(day.toEpochDay()).putInt(t).putInt(n);
+            int offset = HEADER_BYTES;
+            for (ByteBuffer b : blocks) {
+                file.putInt(offset).putInt(b.remaining());
+                offset += b.remaining();
+            }
+            for (ByteBuffer b : blocks) file.put(b);
+            CRC32C crc = new CRC32C();
+            crc.update(file.array(), 0, file.position());
+            file.putInt((int) crc.getValue());
+            return file.flip();
+        }
+
+        private static ByteBuffer strings(List<String> values) {
+            int n = values.size();
+            long[] present = new long[n];
+            long[] lengths = new long[n];
+            List<byte[]> bytes = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (values.get(i) == null) continue;
+                byte[] b = values.get(i).getBytes(StandardCharsets.UTF_8);
+                present[i] = 1;
+                lengths[i] = b.length;
+                bytes.add(b);
+            }
+            Out out = new Out().packed(present, 0, n).packed(lengths, 0, n);
+            for (byte[] b : bytes) out.putBytes(b);
+            return out.done();
+        }
+    }
+
+    // growable long array
+    private static final class Longs {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, size + (size >> 1));
+            values[size++] = v;
+        }
+    }
+
+    // growable little-endian buffer with the packed encodings
+    private static final class Out {
+        private ByteBuffer buf = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Out room(int bytes) {
+            if (buf.remaining() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buf = bigger.put(buf.flip());
+            }
+            return this;
+        }
+
+        Out putByte(int v) { room(1).buf.put((byte) v); return this; }
+        Out putShort(int v) { room(2).buf.putShort((short) v); return this; }
+        Out putInt(int v) { room(4).buf.putInt(v); return this; }
+        Out putLong(long v) { room(8).buf.putLong(v); return this; }
+        Out putBytes(byte[] b) { room(b.length).buf.put(b); return this; }
+
+        // first value, then the differences to the previous value
+        Out delta(long[] v, int n) {
+            if (n == 0) return putLong(0).packed(v, 0, 0);
+            long[] deltas = new long[n - 1];
+            for (int i = 1; i < n; i++) deltas[i - 1] = v[i] - v[i - 1];
+            return putLong(v[0]).packed(deltas, 0, n - 1);
+        }
+
+        Out packed(long[] v, int from, int n) {
+            long min = 0;
+            long max = 0;
+            if (n > 0) {
+                min = Long.MAX_VALUE;
+                max = Long.MIN_VALUE;
+                for (int i = from; i < from + n; i++) {
+                    min = Math.min(min, v[i]);
+                    max = Math.max(max, v[i]);
+                }
+            }
+            // max - min is read as unsigned, so any range fits in 64 bits
+            int width = 64 - Long.numberOfLeadingZeros(max - min);
+            int words = (int) (((long) n * width + 63) >>> 6);
+            room(9 + words * 8);
+            buf.putLong(min).put((byte) width);
+            if (width == 0) return this;
+            long[] packed = new long[words];
+            long bit = 0;
+            for (int i = from; i < from + n; i++, bit += width) {
+                long u = v[i] - min;
+                int word = (int) (bit >>> 6);
+                int shift = (int) (bit & 63);
+                packed[word] |= u << shift;
+                if (shift + width > 64) packed[word + 1] |= u >>> (64 - shift);
+            }
+            for (long w : packed) buf.putLong(w);
+            return this;
+        }
+
+        ByteBuffer done() {
+            return buf.flip();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.sharedistribution.service;
+
+/**
+ * Published after the ancestry of a subtree changed; participantId is the root of that subtree,
+ * or null when the whole hierarchy was reloaded or changed in bulk.
+ */
+public record HierarchyChangedEvent(Long participantId) {
+}
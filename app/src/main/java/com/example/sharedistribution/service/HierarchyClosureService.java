@@ -0,0 +1,101 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ParticipantType;
+import com.example.sharedistribution.repository.HierarchyClosureRepository;
+import com.example.sharedistribution.repository.ParticipantRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds hierarchy_closure from hierarchy_link. New links keep it up to date incrementally
+ * (HierarchyGraphService.link); this is for databases filled before the table existed or by bulk loads.
+ */
+@Service
+public class HierarchyClosureService {
+
+    private static final Logger log = LoggerFactory.getLogger(HierarchyClosureService.class);
+
+    // links deeper than this are treated as a cycle and not followed
+    static final int MAX_DEPTH = 64;
+
+    // descendant ids read per round trip when filtering by type
+    private static final int ID_BATCH = 1000;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final HierarchyClosureRepository closureRepo;
+    private final ParticipantRepository participantRepo;
+
+    // the EntityManagerFactory dependency makes sure the tables exist before the startup backfill
+    public HierarchyClosureService(JdbcTemplate jdbc, PlatformTransactionManager txManager, EntityManagerFactory emf,
+                                   HierarchyClosureRepository closureRepo, ParticipantRepository participantRepo) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.closureRepo = closureRepo;
+        this.participantRepo = participantRepo;
+    }
+
+    /**
+     * Up to limit descendants of the given type with id > afterId, ordered by id.
+     * Ids come from a range scan of the closure primary key and the type is checked on the participant
+     * rows by id: joining the two in one query lets H2 drive from the participant type index instead,
+     * which reads every participant of that type in the database.
+     */
+    public List<Participant> descendants(long ancestorId, ParticipantType type, long afterId, int limit) {
+        List<Participant> page = new ArrayList<>(limit);
+        long cursor = afterId;
+        while (page.size() < limit) {
+            List<Long> ids = closureRepo.findDescendantIds(ancestorId, cursor, Limit.of(ID_BATCH));
+            if (ids.isEmpty()) break;
+            for (Participant p : participantRepo.findByIdInAndTypeOrderByIdAsc(ids, type)) {
+                if (page.size() == limit) break;
+                page.add(p);
+            }
+            if (ids.size() < ID_BATCH) break;
+            cursor = ids.get(ids.size() - 1);
+        }
+        return page;
+    }
+
+    // runs after CommandLineRunners, so seeded links are included
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Integer rows = jdbc.queryForObject("select count(*) from hierarchy_closure", Integer.class);
+        if (rows != null && rows == 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Recompute every closure row from hierarchy_link in one transaction. Returns the number of rows.
+     */
+    public int rebuild() {
+        long start = System.nanoTime();
+        Integer rows = tx.execute(status -> {
+            jdbc.update("delete from hierarchy_closure");
+            // walk down from every participant; a participant reachable over several paths (legacy
+            // multi-parent data) keeps its shortest depth
+            return jdbc.update("insert into hierarchy_closure (ancestor_id, descendant_id, depth) "
+                    + "with recursive c(ancestor_id, descendant_id, depth) as ("
+                    + "select id, id, 0 from participant "
+                    + "union all "
+                    + "select c.ancestor_id, l.child_id, c.depth + 1 from c join hierarchy_link l on l.parent_id = c.descendant_id "
+                    + "where c.depth < " + MAX_DEPTH + ") "
+                    + "select ancestor_id, descendant_id, min(depth) from c group by ancestor_id, descendant_id");
+        });
+        log.info("Rebuilt hierarchy_closure: {} rows in {} ms", rows, (System.nanoTime() - start) / 1_000_000);
+        return rows == null ? 0 : rows;
+    }
+}
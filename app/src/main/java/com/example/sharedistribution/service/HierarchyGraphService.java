@@ -0,0 +1,287 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.HierarchyLink;
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.repository.HierarchyClosureRepository;
+import com.example.sharedistribution.repository.HierarchyLinkRepository;
+import com.example.sharedistribution.repository.ParticipantRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of the participant hierarchy.
+ * Every participant has a precomputed chain [self, parent, grandparent, ..., root] so the trade
+ * path can resolve its ancestors without querying hierarchy_link.
+ * Readers never lock; writers (link / participant changes) are serialized on this instance and
+ * publish new immutable chain arrays. reload() builds a whole new Graph and swaps it in, so a reader sees
+ * either the old or the new hierarchy, never a half-loaded one.
+ */
+@Service
+public class HierarchyGraphService {
+
+    private final HierarchyLinkRepository linkRepo;
+    private final HierarchyClosureRepository closureRepo;
+    private final ParticipantRepository participantRepo;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+
+    // null until the first load
+    private volatile Graph graph;
+
+    public HierarchyGraphService(HierarchyLinkRepository linkRepo, HierarchyClosureRepository closureRepo,
+                                 ParticipantRepository participantRepo, ApplicationEventPublisher events,
+                                 PlatformTransactionManager txManager) {
+        this.linkRepo = linkRepo;
+        this.closureRepo = closureRepo;
+        this.participantRepo = participantRepo;
+        this.events = events;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    // runs after CommandLineRunners, so seeded data is included
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        reload();
+    }
+
+    /**
+     * Rebuild the whole graph from the database.
+     */
+    public synchronized void reload() {
+        load();
+        events.publishEvent(new HierarchyChangedEvent(null));
+    }
+
+    // built off to the side and published with one write, like ShareConfigSnapshotService.load()
+    private Graph load() {
+        Graph g = new Graph();
+        for (Participant p : participantRepo.findAll()) {
+            g.names.put(p.getId(), p.getName());
+        }
+        Set<Long> multiParent = new HashSet<>();
+        for (HierarchyLink l : linkRepo.findAll()) {
+            Long parentId = l.getParent().getId();
+            Long childId = l.getChild().getId();
+            g.childrenOf.computeIfAbsent(parentId, k -> ConcurrentHashMap.newKeySet()).add(childId);
+            if (g.parentOf.putIfAbsent(childId, parentId) != null) {
+                multiParent.add(childId);
+            }
+        }
+        for (Long id : g.names.keySet()) {
+            computeChain(g, id, multiParent);
+        }
+        graph = g;
+        return g;
+    }
+
+    /**
+     * Chain of participant ids from the given participant up to the root: [customer, agent, operator, owner].
+     * Throws IllegalArgumentException if the participant is unknown and IllegalStateException if its
+     * ancestry is not a single path.
+     */
+    public long[] chainOf(Long participantId) {
+        Graph g = graph();
+        long[] chain = g.chains.get(participantId);
+        if (chain != null) return chain;
+        String reason = g.broken.get(participantId);
+        if (reason != null) throw new IllegalStateException(reason);
+        throw new IllegalArgumentException("Customer not found");
+    }
+
+    public String nameOf(Long participantId) {
+        return graph().names.get(participantId);
+    }
+
+    public boolean contains(Long participantId) {
+        return graph().names.containsKey(participantId);
+    }
+
+    /**
+     * Participant and all of its descendants, in breadth-first order.
+     */
+    public List<Long> subtreeOf(Long participantId) {
+        return subtreeOf(graph(), participantId);
+    }
+
+    private static List<Long> subtreeOf(Graph g, Long participantId) {
+        List<Long> out = new ArrayList<>();
+        // legacy data can hold a cycle below a participant; each node is visited once
+        Set<Long> seen = new HashSet<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(participantId);
+        while (!queue.isEmpty()) {
+            Long id = queue.poll();
+            if (!seen.add(id)) continue;
+            out.add(id);
+            queue.addAll(g.childrenOf.getOrDefault(id, Set.of()));
+        }
+        return out;
+    }
+
+    /**
+     * Why a chain in the participant's subtree cannot be resolved (legacy data with multiple parents or a
+     * cycle below it), or null if every chain in it resolves. Such a subtree cannot be linked under a parent.
+     */
+    public String unresolvedBelow(Long participantId) {
+        Graph g = graph();
+        for (Long id : subtreeOf(g, participantId)) {
+            String reason = g.broken.get(id);
+            if (reason != null) return reason;
+        }
+        return null;
+    }
+
+    /**
+     * Validate and persist a parent -> child link together with its hierarchy_closure rows, then update the
+     * cached chains of the child's subtree. Multi-parent and cycle errors are raised here instead of on the trade path.
+     */
+    public synchronized HierarchyLink link(Participant parent, Participant child) {
+        onParticipantSaved(parent);
+        onParticipantSaved(child);
+        Long parentId = parent.getId();
+        Long childId = child.getId();
+        Graph g = graph();
+
+        Long existingParent = g.parentOf.get(childId);
+        if (existingParent != null) {
+            throw new IllegalStateException("Participant id=" + childId + " already has parent id=" + existingParent);
+        }
+        for (long ancestor : chainOf(parentId)) {
+            if (ancestor == childId) {
+                throw new IllegalStateException("Link parent=" + parentId + " child=" + childId + " would create a cycle");
+            }
+        }
+        // checked before saving: the chains below the child are extended after the commit
+        String unresolved = unresolvedBelow(childId);
+        if (unresolved != null) {
+            throw new IllegalStateException("Cannot link participant id=" + childId + ": " + unresolved);
+        }
+
+        HierarchyLink saved = tx.execute(status -> {
+            HierarchyLink link = linkRepo.save(new HierarchyLink(parent, child));
+            closureRepo.addSelf(parentId);
+            closureRepo.addSelf(childId);
+            closureRepo.addLink(parentId, childId);
+            return link;
+        });
+
+        g.parentOf.put(childId, parentId);
+        g.childrenOf.computeIfAbsent(parentId, k -> ConcurrentHashMap.newKeySet()).add(childId);
+        // the child was a root until now, so every chain in its subtree grows by the parent's chain
+        for (Long id : subtreeOf(g, childId)) {
+            extendChain(g, id);
+        }
+        events.publishEvent(new HierarchyChangedEvent(childId));
+        return saved;
+    }
+
+    /**
+     * Run action while no other writer changes the graph: link, reload and addImported take the same lock.
+     */
+    public synchronized <T> T exclusive(Supplier<T> action) {
+        graph();
+        return action.get();
+    }
+
+    /**
+     * Add participants and links written in bulk (see HierarchyImportService). The caller validated the
+     * links against this graph while holding its lock, so every child was a root whose subtree resolves
+     * (unresolvedBelow) and no cycle is formed.
+     */
+    public synchronized void addImported(Map<Long, String> participants, long[] parentIds, long[] childIds) {
+        Graph g = graph();
+        participants.forEach((id, name) -> {
+            g.names.put(id, name);
+            g.chains.putIfAbsent(id, new long[]{id});
+        });
+        Set<Long> linkedChildren = new HashSet<>();
+        for (int i = 0; i < childIds.length; i++) {
+            g.parentOf.put(childIds[i], parentIds[i]);
+            g.childrenOf.computeIfAbsent(parentIds[i], k -> ConcurrentHashMap.newKeySet()).add(childIds[i]);
+            linkedChildren.add(childIds[i]);
+        }
+        // recompute from the topmost new links down; breadth-first order sees every parent before its children
+        for (int i = 0; i < childIds.length; i++) {
+            if (linkedChildren.contains(parentIds[i])) continue;
+            for (Long id : subtreeOf(g, childIds[i])) {
+                extendChain(g, id);
+            }
+        }
+        events.publishEvent(new HierarchyChangedEvent(null));
+    }
+
+    // chain of id = id followed by its parent's chain; a parent without one leaves id unresolved too
+    private static void extendChain(Graph g, Long id) {
+        Long parentId = g.parentOf.get(id);
+        long[] parentChain = g.chains.get(parentId);
+        if (parentChain == null) {
+            g.chains.remove(id);
+            g.broken.put(id, g.broken.getOrDefault(parentId, "No hierarchy chain for participant id=" + parentId));
+            return;
+        }
+        long[] chain = new long[parentChain.length + 1];
+        chain[0] = id;
+        System.arraycopy(parentChain, 0, chain, 1, parentChain.length);
+        g.chains.put(id, chain);
+    }
+
+    /**
+     * Register a newly created participant or pick up a name change.
+     */
+    public synchronized void onParticipantSaved(Participant p) {
+        Graph g = graph();
+        g.names.put(p.getId(), p.getName());
+        g.chains.putIfAbsent(p.getId(), new long[]{p.getId()});
+    }
+
+    private Graph graph() {
+        Graph g = graph;
+        if (g != null) return g;
+        synchronized (this) {
+            g = graph;
+            return g != null ? g : load();
+        }
+    }
+
+    private static void computeChain(Graph g, Long id, Set<Long> multiParent) {
+        List<Long> path = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        Long current = id;
+        while (current != null) {
+            if (!seen.add(current)) {
+                g.broken.put(id, "Cycle in hierarchy at participant id=" + current);
+                return;
+            }
+            if (multiParent.contains(current)) {
+                g.broken.put(id, "Multiple parents configured for participant id=" + current);
+                return;
+            }
+            path.add(current);
+            current = g.parentOf.get(current);
+        }
+        long[] chain = new long[path.size()];
+        for (int i = 0; i < chain.length; i++) chain[i] = path.get(i);
+        g.chains.put(id, chain);
+    }
+
+    /**
+     * One version of the hierarchy. Writers holding the service's lock update it in place; reload()
+     * replaces it.
+     */
+    private static final class Graph {
+        final Map<Long, String> names = new ConcurrentHashMap<>();
+        final Map<Long, Long> parentOf = new ConcurrentHashMap<>();
+        final Map<Long, Set<Long>> childrenOf = new ConcurrentHashMap<>();
+        final Map<Long, long[]> chains = new ConcurrentHashMap<>();
+        // participants whose chain cannot be resolved (legacy data with multiple parents or a cycle) -> reason
+        final Map<Long, String> broken = new ConcurrentHashMap<>();
+    }
+}
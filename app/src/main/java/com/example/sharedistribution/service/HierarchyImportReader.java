@@ -0,0 +1,184 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.ParticipantType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads a hierarchy import file line by line into rows that keep their line numbers.
+ * Only the syntax of each line is checked here; references are resolved by HierarchyImportService.
+ *
+ * Every row has a kind: participant (ref, name, type), link (parent, child) or share (parent, child,
+ * passPercentage). parent / child name the ref of a participant in the same file, or an existing
+ * participant as "#id".
+ *
+ * NDJSON: one object per line, e.g. {"kind":"link","parent":"op-1","child":"#42"}; an existing
+ * participant may also be given as a JSON number.
+ * CSV: a header line naming the columns (kind, ref, name, type, parent, child, passPercentage, in any
+ * order), then one row per line. Fields may be quoted with "; a quoted field cannot span lines.
+ */
+public final class HierarchyImportReader {
+
+    public enum Format { CSV, NDJSON }
+
+    public record ParticipantRow(int line, String ref, String name, ParticipantType type) {}
+
+    public record LinkRow(int line, String parent, String child) {}
+
+    public record ShareRow(int line, String parent, String child, BigDecimal passPercentage) {}
+
+    public record LineError(int line, String error) {}
+
+    /**
+     * The rows of a file by kind, in file order, and the lines that could not be read.
+     */
+    public record Rows(List<ParticipantRow> participants, List<LinkRow> links, List<ShareRow> shares,
+                       List<LineError> errors) {}
+
+    private static final List<String> COLUMNS = List.of("kind", "ref", "name", "type", "parent", "child", "passPercentage");
+
+    private final ObjectMapper json;
+
+    public HierarchyImportReader(ObjectMapper json) {
+        this.json = json;
+    }
+
+    public Rows read(Reader in, Format format) throws IOException {
+        Rows rows = new Rows(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        BufferedReader reader = in instanceof BufferedReader b ? b : new BufferedReader(in, 1 << 16);
+        Map<String, Integer> header = null;
+        int lineNo = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            try {
+                if (format == Format.NDJSON) {
+                    add(rows, lineNo, fields(json.readTree(line)));
+                } else if (header == null) {
+                    header = header(line);
+                } else {
+                    add(rows, lineNo, fields(header, line));
+                }
+            } catch (JsonProcessingException e) {
+                rows.errors().add(new LineError(lineNo, "Invalid JSON: " + e.getOriginalMessage()));
+            } catch (IllegalArgumentException e) {
+                rows.errors().add(new LineError(lineNo, e.getMessage()));
+            }
+        }
+        if (format == Format.CSV && header == null) {
+            rows.errors().add(new LineError(1, "Missing CSV header"));
+        }
+        return rows;
+    }
+
+    private static void add(Rows rows, int line, Map<String, String> f) {
+        String kind = f.get("kind");
+        if (kind == null) throw new IllegalArgumentException("kind is required");
+        switch (kind.toLowerCase(Locale.ROOT)) {
+            case "participant" -> {
+                String type = required(f, "type");
+                ParticipantType pt;
+                try {
+                    pt = ParticipantType.valueOf(type.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid type. Allowed: OWNER,OPERATOR,AGENT,CUSTOMER");
+                }
+                rows.participants().add(new ParticipantRow(line, required(f, "ref"), required(f, "name"), pt));
+            }
+            case "link" -> rows.links().add(new LinkRow(line, required(f, "parent"), required(f, "child")));
+            case "share" -> {
+                BigDecimal pct;
+                try {
+                    pct = new BigDecimal(required(f, "passPercentage").trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("passPercentage is not a number");
+                }
+                rows.shares().add(new ShareRow(line, required(f, "parent"), required(f, "child"), pct));
+            }
+            default -> throw new IllegalArgumentException("Unknown kind '" + kind + "'. Allowed: participant,link,share");
+        }
+    }
+
+    private static String required(Map<String, String> f, String name) {
+        String v = f.get(name);
+        if (v == null || v.isBlank()) throw new IllegalArgumentException(name + " is required");
+        return v;
+    }
+
+    private static Map<String, String> fields(JsonNode node) {
+        if (!node.isObject()) throw new IllegalArgumentException("Expected a JSON object");
+        Map<String, String> f = new HashMap<>();
+        for (String column : COLUMNS) {
+            JsonNode v = node.get(column);
+            if (v == null || v.isNull()) continue;
+            // a bare number as parent / child is an existing participant id
+            boolean reference = column.equals("parent") || column.equals("child");
+            f.put(column, reference && v.isIntegralNumber() ? "#" + v.asLong() : v.asText());
+        }
+        return f;
+    }
+
+    private static Map<String, Integer> header(String line) {
+        List<String> names = split(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim();
+            String column = COLUMNS.stream().filter(c -> c.equalsIgnoreCase(name)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown column '" + name + "'"));
+            header.put(column, i);
+        }
+        if (!header.containsKey("kind")) throw new IllegalArgumentException("The header has no kind column");
+        return header;
+    }
+
+    private static Map<String, String> fields(Map<String, Integer> header, String line) {
+        List<String> values = split(line);
+        Map<String, String> f = new HashMap<>();
+        header.forEach((column, i) -> {
+            if (i < values.size() && !values.get(i).isEmpty()) f.put(column, values.get(i));
+        });
+        return f;
+    }
+
+    // RFC 4180 fields within one line: "a ""quoted"" value, with commas" unquotes to a "quoted" value, with commas
+    static List<String> split(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field");
+        out.add(field.toString());
+        return out;
+    }
+}
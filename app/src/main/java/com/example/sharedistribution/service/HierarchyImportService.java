@@ -0,0 +1,467 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.service.HierarchyImportReader.LineError;
+import com.example.sharedistribution.service.HierarchyImportReader.LinkRow;
+import com.example.sharedistribution.service.HierarchyImportReader.ParticipantRow;
+import com.example.sharedistribution.service.HierarchyImportReader.Rows;
+import com.example.sharedistribution.service.HierarchyImportReader.ShareRow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Bulk import of participants, links and share configs (see HierarchyImportReader for the file format).
+ *
+ * The whole file is checked in memory before anything is written, in passes that are linear in the number
+ * of rows: unique refs, resolvable references, a single parent per child (existing children must be roots),
+ * no cycles, percentages between 0 and 100 and share configs only on linked edges without a config.
+ * Any error rejects the whole file. A valid file is written with JDBC batches in one transaction, together
+ * with its hierarchy_closure rows, and then published to the in-memory graph and share snapshot.
+ *
+ * Validation and writing hold the locks of HierarchyGraphService and ShareConfigSnapshotService, so no
+ * single link or share config write can invalidate the checks in between.
+ */
+@Service
+public class HierarchyImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(HierarchyImportService.class);
+
+    // at most this many errors are reported; the file is rejected either way
+    static final int MAX_ERRORS = 1000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private static final String INSERT_PARTICIPANT = "insert into participant (name, type, created_at) values (?, ?, ?)";
+    private static final String INSERT_LINK = "insert into hierarchy_link (parent_id, child_id, created_at) values (?, ?, ?)";
+    private static final String INSERT_SHARE = "insert into share_config "
+            + "(parent_id, child_id, pass_percentage, updated_at, effective_from, snapshot_version) values (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CLOSURE = "insert into hierarchy_closure (ancestor_id, descendant_id, depth) values (?, ?, ?)";
+    private static final String MERGE_CLOSURE_SELF = "merge into hierarchy_closure (ancestor_id, descendant_id, depth) "
+            + "key (ancestor_id, descendant_id) values (?, ?, 0)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final HierarchyGraphService hierarchyGraph;
+    private final ShareConfigSnapshotService shareSnapshots;
+    private final HierarchyImportReader reader;
+
+    public HierarchyImportService(JdbcTemplate jdbc, PlatformTransactionManager txManager,
+                                  HierarchyGraphService hierarchyGraph, ShareConfigSnapshotService shareSnapshots,
+                                  ObjectMapper objectMapper) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.hierarchyGraph = hierarchyGraph;
+        this.shareSnapshots = shareSnapshots;
+        this.reader = new HierarchyImportReader(objectMapper);
+    }
+
+    /**
+     * Outcome of an import. When errors is not empty nothing was written; errorCount may exceed the
+     * number of reported errors. ids maps every ref of the file to the id of the new participant.
+     */
+    public record Result(int participants, int links, int shares, Map<String, Long> ids,
+                         List<LineError> errors, int errorCount, long elapsedMs) {}
+
+    public Result importFile(Reader in, HierarchyImportReader.Format format) throws IOException {
+        long start = System.nanoTime();
+        Rows rows = reader.read(in, format);
+        Result result = hierarchyGraph.exclusive(() -> shareSnapshots.exclusive(() -> {
+            Batch batch = new Batch(rows);
+            batch.validate();
+            if (batch.errorCount > 0) {
+                batch.errors.sort(Comparator.comparingInt(LineError::line));
+                return new Result(0, 0, 0, Map.of(), batch.errors, batch.errorCount, 0);
+            }
+            return write(batch);
+        }));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        if (result.errorCount() == 0) {
+            log.info("Imported {} participants, {} links and {} share configs in {} ms",
+                    result.participants(), result.links(), result.shares(), elapsedMs);
+        }
+        return new Result(result.participants(), result.links(), result.shares(), result.ids(),
+                result.errors(), result.errorCount(), elapsedMs);
+    }
+
+    /**
+     * Resolved rows of one file. Participants of the file are nodes -1, -2, ... in file order until they
+     * have ids; existing participants are their (positive) ids.
+     */
+    private final class Batch {
+        final List<ParticipantRow> participants;
+        final List<LinkRow> links;
+        final List<ShareRow> shares;
+        final List<LineError> errors = new ArrayList<>();
+        int errorCount;
+
+        final Map<String, Integer> refs = new HashMap<>();
+        // child node -> index into linkParents / linkChildren
+        final Map<Long, Integer> linkOfChild = new HashMap<>();
+        final long[] linkParents;
+        final long[] linkChildren;
+        int linkCount;
+        final long[] shareParents;
+        final long[] shareChildren;
+        final long[] shareBasisPoints;
+        final BigDecimal[] sharePercentages;
+        int shareCount;
+        // chain [node, parent, ..., root] of every node reached, with the new links applied
+        final Map<Long, long[]> chains = new HashMap<>();
+
+        Batch(Rows rows) {
+            participants = rows.participants();
+            links = rows.links();
+            shares = rows.shares();
+            rows.errors().forEach(e -> error(e.line(), e.error()));
+            linkParents = new long[links.size()];
+            linkChildren = new long[links.size()];
+            shareParents = new long[shares.size()];
+            shareChildren = new long[shares.size()];
+            shareBasisPoints = new long[shares.size()];
+            sharePercentages = new BigDecimal[shares.size()];
+        }
+
+        void error(int line, String message) {
+            if (errorCount++ < MAX_ERRORS) errors.add(new LineError(line, message));
+        }
+
+        void validate() {
+            for (int i = 0; i < participants.size(); i++) {
+                ParticipantRow p = participants.get(i);
+                if (p.ref().startsWith("#")) {
+                    error(p.line(), "ref must not start with #, which names existing participants");
+                } else if (p.name().length() > MAX_NAME_LENGTH) {
+                    error(p.line(), "name is longer than " + MAX_NAME_LENGTH + " characters");
+                }
+                Integer first = refs.putIfAbsent(p.ref(), i);
+                if (first != null) {
+                    error(p.line(), "Duplicate ref '" + p.ref() + "', first defined on line " + participants.get(first).line());
+                }
+            }
+            validateLinks();
+            if (errorCount == 0) validateDepths();
+            validateShares();
+        }
+
+        private void validateLinks() {
+            for (LinkRow l : links) {
+                long parent = resolve(l.parent(), l.line());
+                long child = resolve(l.child(), l.line());
+                if (parent == 0 || child == 0) continue;
+                if (parent == child) {
+                    error(l.line(), "A participant cannot be its own parent");
+                    continue;
+                }
+                Integer first = linkOfChild.get(child);
+                if (first != null) {
+                    error(l.line(), "Child " + l.child() + " already has a parent on line " + links.get(first).line());
+                    continue;
+                }
+                if (parent > 0 && existingChain(parent, l.line()) == null) continue;
+                if (child > 0) {
+                    long[] chain = existingChain(child, l.line());
+                    if (chain == null) continue;
+                    if (chain.length > 1) {
+                        error(l.line(), "Participant id=" + child + " already has parent id=" + chain[1]);
+                        continue;
+                    }
+                    String unresolved = hierarchyGraph.unresolvedBelow(child);
+                    if (unresolved != null) {
+                        error(l.line(), "Cannot link participant id=" + child + ": " + unresolved);
+                        continue;
+                    }
+                }
+                linkParents[linkCount] = parent;
+                linkChildren[linkCount] = child;
+                linkOfChild.put(child, linkCount++);
+            }
+            // with one parent per node a cycle is a loop of parent pointers; every node is walked once
+            Set<Long> done = new HashSet<>();
+            Set<Long> onPath = new LinkedHashSet<>();
+            for (int i = 0; i < linkCount; i++) {
+                long node = linkChildren[i];
+                while (node != 0 && !done.contains(node)) {
+                    if (!onPath.add(node)) {
+                        error(links.get(linkOfChild.get(node)).line(), "Link creates a cycle");
+                        break;
+                    }
+                    node = parentOf(node);
+                }
+                done.addAll(onPath);
+                onPath.clear();
+            }
+        }
+
+        // parent with the new links applied, or 0 for a root; existing participants jump to the root of
+        // their chain, the only node of it a new link can attach
+        private long parentOf(long node) {
+            Integer link = linkOfChild.get(node);
+            if (link != null) return linkParents[link];
+            if (node < 0) return 0;
+            long[] chain = hierarchyGraph.chainOf(node);
+            long root = chain[chain.length - 1];
+            return root == node ? 0 : root;
+        }
+
+        private void validateDepths() {
+            for (int i = 0; i < linkCount; i++) {
+                long[] chain = chain(linkChildren[i]);
+                if (chain.length - 1 > HierarchyClosureService.MAX_DEPTH) {
+                    error(links.get(i).line(), "Hierarchy is deeper than " + HierarchyClosureService.MAX_DEPTH + " levels");
+                    return;
+                }
+            }
+        }
+
+        // chain with the new links applied; iterative, so a long chain in the file cannot overflow the stack
+        long[] chain(long node) {
+            long[] c = chains.get(node);
+            if (c != null) return c;
+            Deque<Long> path = new ArrayDeque<>();
+            long current = node;
+            while ((c = chains.get(current)) == null && linkOfChild.containsKey(current)) {
+                path.push(current);
+                current = linkParents[linkOfChild.get(current)];
+            }
+            if (c == null) {
+                c = current < 0 ? new long[]{current} : hierarchyGraph.chainOf(current);
+                chains.put(current, c);
+            }
+            while (!path.isEmpty()) {
+                long n = path.pop();
+                long[] next = new long[c.length + 1];
+                next[0] = n;
+                System.arraycopy(c, 0, next, 1, c.length);
+                chains.put(n, next);
+                c = next;
+            }
+            return c;
+        }
+
+        private void validateShares() {
+            ShareConfigSnapshot snapshot = shareSnapshots.current();
+            Map<List<Long>, Integer> edges = new HashMap<>();
+            for (ShareRow s : shares) {
+                long parent = resolve(s.parent(), s.line());
+                long child = resolve(s.child(), s.line());
+                BigDecimal pct = s.passPercentage();
+                if (pct.compareTo(BigDecimal.ZERO) < 0 || pct.compareTo(HUNDRED) > 0) {
+                    error(s.line(), "passPercentage must be between 0 and 100");
+                    continue;
+                }
+                if (pct.stripTrailingZeros().scale() > 2) {
+                    error(s.line(), "passPercentage has more than 2 decimals");
+                    continue;
+                }
+                if (parent == 0 || child == 0) continue;
+                if (!linked(parent, child, s.line())) {
+                    error(s.line(), "No link from " + s.parent() + " to " + s.child());
+                    continue;
+                }
+                Integer first = edges.putIfAbsent(List.of(parent, child), s.line());
+                if (first != null) {
+                    error(s.line(), "Duplicate share config for this edge, first on line " + first);
+                    continue;
+                }
+                if (parent > 0 && child > 0 && snapshot.passBasisPoints(parent, child) != ShareConfigSnapshot.MISSING) {
+                    error(s.line(), "A share config exists for this edge; change it with POST /api/shares");
+                    continue;
+                }
+                shareParents[shareCount] = parent;
+                shareChildren[shareCount] = child;
+                sharePercentages[shareCount] = pct.setScale(2);
+                shareBasisPoints[shareCount++] = ShareConfigSnapshot.toBasisPoints(pct);
+            }
+        }
+
+        private boolean linked(long parent, long child, int line) {
+            Integer link = linkOfChild.get(child);
+            if (link != null) return linkParents[link] == parent;
+            if (child < 0) return false;
+            long[] chain = existingChain(child, line);
+            return chain != null && chain.length > 1 && chain[1] == parent;
+        }
+
+        // node for a reference, or 0 after reporting why it does not resolve
+        private long resolve(String reference, int line) {
+            if (reference.startsWith("#")) {
+                long id;
+                try {
+                    id = Long.parseLong(reference.substring(1).trim());
+                } catch (NumberFormatException e) {
+                    error(line, "Invalid participant id '" + reference + "'");
+                    return 0;
+                }
+                if (id <= 0 || !hierarchyGraph.contains(id)) {
+                    error(line, "Participant id=" + reference.substring(1) + " not found");
+                    return 0;
+                }
+                return id;
+            }
+            Integer index = refs.get(reference);
+            if (index == null) {
+                error(line, "Unknown ref '" + reference + "'");
+                return 0;
+            }
+            return -(index + 1L);
+        }
+
+        private long[] existingChain(long id, int line) {
+            try {
+                return hierarchyGraph.chainOf(id);
+            } catch (IllegalStateException e) {
+                error(line, e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private Result write(Batch b) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        OffsetDateTime ts = OffsetDateTime.ofInstant(now, ZoneOffset.UTC);
+        long snapshotVersion = shareSnapshots.current().getVersion() + 1;
+        int n = b.participants.size();
+        long[] ids = new long[n];
+        long[] shareIds = new long[b.shareCount];
+
+        tx.executeWithoutResult(status -> {
+            insertReturningIds(INSERT_PARTICIPANT, n, ids, (ps, i) -> {
+                ParticipantRow p = b.participants.get(i);
+                ps.setString(1, p.name());
+                ps.setString(2, p.type().name());
+                ps.setObject(3, ts);
+            });
+
+            List<Object[]> links = new ArrayList<>(b.linkCount);
+            Set<Long> existing = new HashSet<>();
+            for (int i = 0; i < b.linkCount; i++) {
+                links.add(new Object[]{id(ids, b.linkParents[i]), id(ids, b.linkChildren[i]), ts});
+                if (b.linkParents[i] > 0) existing.add(b.linkParents[i]);
+                if (b.linkChildren[i] > 0) existing.add(b.linkChildren[i]);
+            }
+            jdbc.batchUpdate(INSERT_LINK, links, BATCH_SIZE, HierarchyImportService::setRow);
+
+            // existing participants get their self row if they never had one (never linked, not rebuilt)
+            List<Object[]> self = existing.stream().map(id -> new Object[]{id, id}).toList();
+            jdbc.batchUpdate(MERGE_CLOSURE_SELF, self, BATCH_SIZE, HierarchyImportService::setRow);
+            jdbc.batchUpdate(INSERT_CLOSURE, closureRows(b, ids), BATCH_SIZE, HierarchyImportService::setRow);
+
+            insertReturningIds(INSERT_SHARE, b.shareCount, shareIds, (ps, i) -> {
+                ps.setLong(1, id(ids, b.shareParents[i]));
+                ps.setLong(2, id(ids, b.shareChildren[i]));
+                ps.setBigDecimal(3, b.sharePercentages[i]);
+                ps.setObject(4, ts);
+                ps.setObject(5, ts);
+                ps.setLong(6, snapshotVersion);
+            });
+        });
+
+        long[] shareParents = new long[b.shareCount];
+        long[] shareChildren = new long[b.shareCount];
+        for (int i = 0; i < b.shareCount; i++) {
+            shareParents[i] = id(ids, b.shareParents[i]);
+            shareChildren[i] = id(ids, b.shareChildren[i]);
+        }
+        shareSnapshots.addImported(now, shareIds, shareParents, shareChildren,
+                Arrays.copyOf(b.shareBasisPoints, b.shareCount));
+
+        Map<Long, String> names = new HashMap<>();
+        Map<String, Long> refIds = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            names.put(ids[i], b.participants.get(i).name());
+            refIds.put(b.participants.get(i).ref(), ids[i]);
+        }
+        long[] linkParents = new long[b.linkCount];
+        long[] linkChildren = new long[b.linkCount];
+        for (int i = 0; i < b.linkCount; i++) {
+            linkParents[i] = id(ids, b.linkParents[i]);
+            linkChildren[i] = id(ids, b.linkChildren[i]);
+        }
+        hierarchyGraph.addImported(names, linkParents, linkChildren);
+        return new Result(n, b.linkCount, b.shareCount, refIds, List.of(), 0, 0);
+    }
+
+    // every (ancestor, descendant) pair the new links create
+    private List<Object[]> closureRows(Batch b, long[] ids) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            long[] chain = b.chain(-(i + 1L));
+            for (int depth = 0; depth < chain.length; depth++) {
+                rows.add(new Object[]{id(ids, chain[depth]), ids[i], depth});
+            }
+        }
+        // an existing root that got a parent brings its whole subtree under the new ancestors
+        for (int i = 0; i < b.linkCount; i++) {
+            long root = b.linkChildren[i];
+            if (root < 0) continue;
+            long[] chain = b.chain(root);
+            for (Long descendant : hierarchyGraph.subtreeOf(root)) {
+                // its chain still ends at the root
+                int below = hierarchyGraph.chainOf(descendant).length - 1;
+                for (int depth = 1; depth < chain.length; depth++) {
+                    rows.add(new Object[]{id(ids, chain[depth]), descendant, below + depth});
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static long id(long[] ids, long node) {
+        return node < 0 ? ids[(int) (-node - 1)] : node;
+    }
+
+    private interface RowSetter {
+        void set(PreparedStatement ps, int row) throws SQLException;
+    }
+
+    // batches of BATCH_SIZE rows; ids[i] receives the generated id of row i
+    private void insertReturningIds(String sql, int rows, long[] ids, RowSetter setter) {
+        for (int from = 0; from < rows; from += BATCH_SIZE) {
+            int base = from;
+            int size = Math.min(BATCH_SIZE, rows - from);
+            GeneratedKeyHolder keys = new GeneratedKeyHolder();
+            jdbc.batchUpdate(con -> con.prepareStatement(sql, new String[]{"id"}), new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setter.set(ps, base + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            }, keys);
+            List<Map<String, Object>> generated = keys.getKeyList();
+            if (generated.size() != size) {
+                throw new IllegalStateException("Expected " + size + " generated ids, got " + generated.size());
+            }
+            for (int i = 0; i < size; i++) {
+                ids[base + i] = ((Number) generated.get(i).values().iterator().next()).longValue();
+            }
+        }
+    }
+
+    private static void setRow(PreparedStatement ps, Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            ps.setObject(i + 1, row[i]);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.SequenceAligner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rebuilds database state from the trade journal without going through TradeService:
+ * records are decoded straight into JDBC batches or in-memory totals.
+ * Both replays need the whole journal and refuse to run once trade.journal.retention has released its first
+ * segments, rather than rebuilding from part of the log.
+ */
+@Service
+public class JournalReplayService {
+
+    private final TradeJournal journal;
+    private final JdbcTemplate jdbc;
+    private final WriteBehindTradeWriter writer;
+    private final DailyRollupService dailyRollups;
+    private final SequenceAligner sequenceAligner;
+    private final TradeArchive archive;
+    private final TransactionTemplate tx;
+
+    public JournalReplayService(TradeJournal journal,
+                                JdbcTemplate jdbc,
+                                WriteBehindTradeWriter writer,
+                                DailyRollupService dailyRollups,
+                                SequenceAligner sequenceAligner,
+                                TradeArchive archive,
+                                PlatformTransactionManager txManager) {
+        this.journal = journal;
+        this.jdbc = jdbc;
+        this.writer = writer;
+        this.dailyRollups = dailyRollups;
+        this.sequenceAligner = sequenceAligner;
+        this.archive = archive;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    /**
+     * Insert every journaled trade missing from trade / trade_distribution (with its rollups).
+     * Participants must already exist. Returns the number of trades inserted.
+     */
+    public int replayTables() {
+        requireWholeJournal();
+        int inserted = writer.replay(0);
+        // replayed rows carry explicit ids
+        sequenceAligner.align();
+        return inserted;
+    }
+
+    /**
+     * Recompute the daily rollups from the journal for every IST day after the first journaled one.
+     * That first day (and anything before it) may contain trades from before journaling and is left alone,
+     * as are archived days, whose trades are only in their archive files. Returns the number of days replaced.
+     */
+    public int replayRollups() {
+        requireWholeJournal();
+        Map<LocalDate, Map<Long, long[]>> totals = new TreeMap<>();
+        LocalDate[] firstDay = {null};
+        journal.read(0, (r, end) -> {
+            LocalDate date = DailyRollupService.istDate(r.createdAt());
+            if (firstDay[0] == null || date.isBefore(firstDay[0])) firstDay[0] = date;
+            Map<Long, long[]> day = totals.computeIfAbsent(date, d -> new HashMap<>());
+            long[] subtreeKept = DailyRollupService.subtreeSums(r.type(), r.keptMinor());
+            long[] subtreePassed = DailyRollupService.subtreeSums(r.type(), r.passedMinor());
+            for (int i = 0; i < r.lineCount(); i++) {
+                long[] t = day.computeIfAbsent(r.participantIds()[i], p -> new long[5]);
+                t[0] += r.keptMinor()[i];
+                t[1] += r.passedMinor()[i];
+                t[2]++;
+                t[3] += subtreeKept[i];
+                t[4] += subtreePassed[i];
+            }
+        });
+        if (firstDay[0] == null) return 0;
+        LocalDate archivedThrough = archive.archivedThrough();
+        LocalDate keep = archivedThrough != null && archivedThrough.isAfter(firstDay[0]) ? archivedThrough : firstDay[0];
+        totals.keySet().removeIf(d -> !d.isAfter(keep));
+        // redistribution adjustments are only in the database
+        addAdjustmentsAfter(keep, totals);
+        tx.executeWithoutResult(status -> dailyRollups.replaceAfter(keep, totals));
+        return totals.size();
+    }
+
+    private void requireWholeJournal() {
+        long start = journal.start();
+        if (start > 0) {
+            throw new IllegalStateException("The trade journal starts at position " + start
+                    + ": its earlier segments were released (trade.journal.retention), so a replay would miss their"
+                    + " trades. Move the archived segments back next to trade.journal.path to replay.");
+        }
+    }
+
+    private void addAdjustmentsAfter(LocalDate day, Map<LocalDate, Map<Long, long[]>> totals) {
+        OffsetDateTime from = day.plusDays(1).atStartOfDay(DailyRollupService.IST).toOffsetDateTime().withOffsetSameInstant(ZoneOffset.UTC);
+        // every adjustment row e counts for the participants d at or above it on the same trade
+        jdbc.query("select t.created_at, d.participant_id, e.amount_kept, e.amount_passed, "
+                        + "e.participant_id = d.participant_id "
+                        + "from trade_distribution e join trade t on t.id = e.trade_id "
+                        + "join trade_distribution d on d.trade_id = e.trade_id and d.adjustment_job_id is null "
+                        + "join hierarchy_closure c on c.ancestor_id = d.participant_id and c.descendant_id = e.participant_id "
+                        + "where e.adjustment_job_id is not null and t.created_at >= ?",
+                rs -> {
+                    LocalDate date = DailyRollupService.istDate(rs.getObject(1, OffsetDateTime.class).toInstant());
+                    long[] t = totals.computeIfAbsent(date, d -> new HashMap<>()).computeIfAbsent(rs.getLong(2), p -> new long[5]);
+                    long kept = rs.getBigDecimal(3).movePointRight(2).longValueExact();
+                    long passed = rs.getBigDecimal(4).movePointRight(2).longValueExact();
+                    if (rs.getBoolean(5)) {
+                        t[0] += kept;
+                        t[1] += passed;
+                    }
+                    t[3] += kept;
+                    t[4] += passed;
+                }, from);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeDistribution;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live kept/passed totals per participant.
+ * Amounts are summed in paise with LongAdders, so many trades crediting the same agent or owner at once
+ * don't contend on one counter. Updates are applied after the trade commits, rebuilt from
+ * trade_distribution (plus archived_balance, the totals of archived trades) at startup and flushed to
+ * participant_balance on a fixed delay and at shutdown.
+ */
+@Service
+public class ParticipantBalanceLedger {
+
+    private static final String UPSERT_SQL =
+            "merge into participant_balance (participant_id, total_kept, total_passed, updated_at) "
+            + "key (participant_id) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    // the EntityManagerFactory dependency makes sure the tables exist before the startup rebuild
+    public ParticipantBalanceLedger(JdbcTemplate jdbc, EntityManagerFactory emf) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        accounts.clear();
+        jdbc.query("select participant_id, sum(amount_kept), sum(amount_passed) "
+                        + "from trade_distribution group by participant_id "
+                        + "union all select participant_id, total_kept, total_passed from archived_balance",
+                rs -> {
+                    Account a = account(rs.getLong(1));
+                    a.add(rs.getBigDecimal(2), rs.getBigDecimal(3));
+                });
+        flush();
+    }
+
+    /**
+     * Credit the rows once the surrounding transaction commits (immediately if there is none).
+     */
+    public void recordAfterCommit(Collection<TradeDistribution> rows) {
+        List<Object[]> credits = new ArrayList<>(rows.size());
+        for (TradeDistribution d : rows) {
+            credits.add(new Object[]{d.getParticipant().getId(), d.getAmountKept(), d.getAmountPassed()});
+        }
+        applyAfterCommit(credits);
+    }
+
+    /**
+     * Same as recordAfterCommit() for trades persisted outside JPA (write-behind, journal replay).
+     */
+    public void recordTradesAfterCommit(Collection<TradeRecord> trades) {
+        List<Object[]> credits = new ArrayList<>();
+        for (TradeRecord t : trades) {
+            for (int i = 0; i < t.lineCount(); i++) {
+                credits.add(new Object[]{t.participantIds()[i],
+                        BigDecimal.valueOf(t.keptMinor()[i], 2), BigDecimal.valueOf(t.passedMinor()[i], 2)});
+            }
+        }
+        applyAfterCommit(credits);
+    }
+
+    /**
+     * Same as recordAfterCommit() for compensating rows of a redistribution job.
+     */
+    public void recordAdjustmentsAfterCommit(Collection<DistributionAdjustment> adjustments) {
+        List<Object[]> credits = new ArrayList<>(adjustments.size());
+        for (DistributionAdjustment a : adjustments) {
+            credits.add(new Object[]{a.participantId(), a.kept(), a.passed()});
+        }
+        applyAfterCommit(credits);
+    }
+
+    private void applyAfterCommit(List<Object[]> credits) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(credits);
+                }
+            });
+        } else {
+            apply(credits);
+        }
+    }
+
+    /**
+     * Current totals as [kept, passed], or null if the participant never received a distribution.
+     */
+    public BigDecimal[] balanceOf(Long participantId) {
+        Account a = accounts.get(participantId);
+        return a == null ? null : new BigDecimal[]{a.kept(), a.passed()};
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.flush-interval-ms:5000}")
+    public void flush() {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> batch = new ArrayList<>();
+        accounts.forEach((id, a) -> {
+            // clear before reading: a credit landing after this re-marks the account for the next flush
+            if (a.dirty.getAndSet(false)) {
+                batch.add(new Object[]{id, a.kept(), a.passed(), now});
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(UPSERT_SQL, batch);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void apply(List<Object[]> credits) {
+        for (Object[] c : credits) {
+            account((Long) c[0]).add((BigDecimal) c[1], (BigDecimal) c[2]);
+        }
+    }
+
+    private Account account(long participantId) {
+        Account a = accounts.get(participantId);
+        return a != null ? a : accounts.computeIfAbsent(participantId, k -> new Account());
+    }
+
+    private static final class Account {
+        final LongAdder keptMinor = new LongAdder();
+        final LongAdder passedMinor = new LongAdder();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        // amounts that don't fit in a long of paise (rare); guarded by this
+        BigDecimal keptOverflow = BigDecimal.ZERO;
+        BigDecimal passedOverflow = BigDecimal.ZERO;
+
+        void add(BigDecimal kept, BigDecimal passed) {
+            if (!addMinor(keptMinor, kept)) {
+                synchronized (this) { keptOverflow = keptOverflow.add(kept); }
+            }
+            if (!addMinor(passedMinor, passed)) {
+                synchronized (this) { passedOverflow = passedOverflow.add(passed); }
+            }
+            dirty.set(true);
+        }
+
+        BigDecimal kept() {
+            synchronized (this) { return BigDecimal.valueOf(keptMinor.sum(), 2).add(keptOverflow); }
+        }
+
+        BigDecimal passed() {
+            synchronized (this) { return BigDecimal.valueOf(passedMinor.sum(), 2).add(passedOverflow); }
+        }
+
+        private static boolean addMinor(LongAdder adder, BigDecimal amount) {
+            if (amount.scale() > 2 || amount.precision() - amount.scale() > 15) return false;
+            adder.add(amount.movePointRight(2).longValueExact());
+            return true;
+        }
+    }
+}
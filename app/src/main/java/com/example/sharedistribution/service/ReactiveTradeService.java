@@ -0,0 +1,291 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.dto.TradeRequest;
+import com.example.sharedistribution.dto.TradeResponse;
+import com.example.sharedistribution.exception.TradeBackpressureException;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.connection.SingleConnectionFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * executeTrade for the reactive trade API (ReactiveTradeServer): same distribution, rows, rollups, ledger
+ * credits and journal entries as the synchronous path, without blocking the caller's thread.
+ *
+ * Trades go into a bounded buffer; a full buffer fails the Mono with TradeBackpressureException right away.
+ * One writer thread takes up to max-batch trades at a time, plans them, assigns ids and inserts them with
+ * their rollups in one R2DBC transaction, then completes their Monos. H2 runs R2DBC statements in-process
+ * on the subscribing thread, so all database work (and lock waits) stays on the writer, never on an event loop.
+ *
+ * Requests with an Idempotency-Key go through
+ * TradeService.executeTrade on the bounded elastic scheduler instead.
+ */
+@Service
+public class ReactiveTradeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveTradeService.class);
+
+    // r2dbc-h2 binds strings in a way H2 will not convert to an ENUM column, hence the cast;
+    // trades with an Idempotency-Key never take this path, so the column is left null
+    private static final String INSERT_TRADE =
+            "insert into trade (id, customer_id, amount, type, created_at, share_config_version) "
+            + "values (?, ?, ?, cast(? as varchar), ?, ?)";
+    private static final String INSERT_DISTRIBUTION =
+            "insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at) "
+            + "values (?, ?, ?, ?, ?, ?)";
+
+    private final TradeService tradeService;
+    private final DistributionPlanService plans;
+    private final TradeIdAllocator idAllocator;
+    private final DailyRollupService dailyRollups;
+    private final ParticipantBalanceLedger balanceLedger;
+    private final TradeJournal journal;
+    private final TradeMetrics metrics;
+
+    private final SingleConnectionFactory connectionFactory;
+    private final DatabaseClient db;
+    private final TransactionalOperator tx;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> buffer;
+    private final Scheduler writer = Schedulers.newSingle("trade-reactive-writer");
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private volatile boolean running = true;
+
+    public ReactiveTradeService(TradeService tradeService,
+                                DistributionPlanService plans,
+                                TradeIdAllocator idAllocator,
+                                DailyRollupService dailyRollups,
+                                ParticipantBalanceLedger balanceLedger,
+                                TradeJournal journal,
+                                TradeMetrics metrics,
+                                @Value("${spring.datasource.url}") String url,
+                                @Value("${spring.datasource.username:sa}") String username,
+                                @Value("${spring.datasource.password:}") String password,
+                                @Value("${trade.reactive.buffer-size:65536}") int bufferSize,
+                                @Value("${trade.reactive.max-batch:1000}") int maxBatch) {
+        this.tradeService = tradeService;
+        this.plans = plans;
+        this.idAllocator = idAllocator;
+        this.dailyRollups = dailyRollups;
+        this.balanceLedger = balanceLedger;
+        this.journal = journal;
+        this.metrics = metrics;
+        if (!url.startsWith("jdbc:h2:")) {
+            throw new IllegalStateException("The reactive trade API needs an H2 database, spring.datasource.url is " + url);
+        }
+        // same database as the JDBC pool, opened in-process; one session is enough for a single writer
+        H2ConnectionFactory h2 = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url(url.substring("jdbc:h2:".length()))
+                .username(username)
+                .password(password)
+                .build());
+        this.connectionFactory = new SingleConnectionFactory(h2);
+        connectionFactory.setSuppressClose(true);
+        this.db = DatabaseClient.create(connectionFactory);
+        this.tx = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        this.maxBatch = maxBatch;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    /**
+     * Execute one trade; emits its TradeResponse once the trade is committed.
+     * Fails with IllegalArgumentException / IllegalStateException for invalid trades, like executeTrade,
+     * and with TradeBackpressureException when the buffer is full.
+     */
+    public Mono<TradeResponse> executeTrade(TradeRequest req, String idempotencyKey) {
+        BigDecimal amount;
+        try {
+            amount = TradeService.validatedAmount(req);
+        } catch (IllegalArgumentException e) {
+            metrics.rejected(e);
+            return Mono.error(e);
+        }
+        if (idempotencyKey != null) {
+            return Mono.fromCallable(() -> tradeService.executeTrade(req, idempotencyKey))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        if (!running) return Mono.error(new IllegalStateException("Reactive trade writer is not running"));
+        Pending p = new Pending(req, amount, metrics.startTrade(TradeMetrics.Mode.REACTIVE));
+        if (!buffer.offer(p)) {
+            TradeBackpressureException e = new TradeBackpressureException("Trade buffer is full, retry later");
+            p.trace.failed(e);
+            return Mono.error(e);
+        }
+        drain();
+        // responses are serialized on the caller's side, not on the writer
+        return p.result.asMono().publishOn(Schedulers.parallel());
+    }
+
+    private void drain() {
+        if (draining.compareAndSet(false, true)) writer.schedule(this::writeNext);
+    }
+
+    // on the writer thread: one batch per transaction, the next batch starts once this one has committed
+    private void writeNext() {
+        List<Pending> batch = new ArrayList<>(Math.min(maxBatch, buffer.size()));
+        buffer.drainTo(batch, maxBatch);
+        if (batch.isEmpty()) {
+            draining.set(false);
+            // a trade offered after drainTo found the flag still set
+            if (!buffer.isEmpty()) drain();
+            return;
+        }
+        Mono.defer(() -> write(batch))
+                .onErrorResume(e -> {
+                    log.error("Reactive batch of {} trades failed", batch.size(), e);
+                    for (Pending p : batch) p.fail(e);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> writer.schedule(this::writeNext))
+                .subscribe();
+    }
+
+    private Mono<Void> write(List<Pending> batch) {
+        List<Pending> planned = new ArrayList<>(batch.size());
+        List<TradeRecord> records = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            p.trace.phase(TradeMetrics.Phase.ENQUEUE);
+            try {
+                p.record = plan(p);
+                planned.add(p);
+                records.add(p.record);
+            } catch (RuntimeException e) {
+                p.fail(e);
+            }
+        }
+        if (records.isEmpty()) return Mono.empty();
+
+        List<Object[]> trades = new ArrayList<>(records.size());
+        List<Object[]> lines = new ArrayList<>(records.size() * 4);
+        for (TradeRecord r : records) {
+            OffsetDateTime createdAt = OffsetDateTime.ofInstant(r.createdAt(), ZoneOffset.UTC);
+            trades.add(new Object[]{r.tradeId(), r.customerId(), BigDecimal.valueOf(r.amountMinor(), 2),
+                    r.type().name(), createdAt, r.shareConfigVersion()});
+            for (int i = 0; i < r.lineCount(); i++) {
+                lines.add(new Object[]{r.distributionIds()[i], r.tradeId(), r.participantIds()[i],
+                        BigDecimal.valueOf(r.keptMinor()[i], 2), BigDecimal.valueOf(r.passedMinor()[i], 2), createdAt});
+            }
+        }
+        Mono<Void> inserts = execute(INSERT_TRADE, trades)
+                .then(execute(INSERT_DISTRIBUTION, lines))
+                .thenMany(Flux.fromIterable(dailyRollups.mergeArgs(records)).concatMap(this::mergeRollup))
+                .then();
+        return tx.transactional(inserts).then(Mono.fromRunnable(() -> committed(planned, records)));
+    }
+
+    // the same TradeRecord executeTrade builds in write-behind mode
+    private TradeRecord plan(Pending p) {
+        TradeRequest req = p.request;
+        DistributionPlan plan = plans.planFor(req.getCustomerId());
+        p.trace.phase(TradeMetrics.Phase.PLAN);
+        long[] flow = plan.flow(req.getType());
+        int n = flow.length;
+        long amountMinor = p.amount.unscaledValue().longValueExact();
+        long[] keptMinor = new long[n];
+        long[] passedMinor = new long[n];
+        TradeService.distributeMinor(plan, req.getType(), amountMinor, keptMinor, passedMinor);
+        long[] distributionIds = new long[n];
+        for (int i = 0; i < n; i++) {
+            distributionIds[i] = idAllocator.nextDistributionId();
+        }
+        TradeRecord record = new TradeRecord(idAllocator.nextTradeId(), req.getCustomerId(), req.getType(), amountMinor,
+                Instant.now(), plan.getShareConfigVersion(), null, distributionIds, flow, keptMinor, passedMinor);
+        p.trace.phase(TradeMetrics.Phase.COMPUTE);
+        return record;
+    }
+
+    private void committed(List<Pending> planned, List<TradeRecord> records) {
+        balanceLedger.recordTradesAfterCommit(records);
+        for (Pending p : planned) p.trace.phase(TradeMetrics.Phase.COMMIT);
+        // as for synchronous trades, the database is the source of truth and a journal failure is only logged
+        try {
+            for (TradeRecord r : records) journal.append(r);
+        } catch (RuntimeException e) {
+            log.error("Could not journal {} committed trades", records.size(), e);
+        }
+        for (Pending p : planned) {
+            p.trace.phase(TradeMetrics.Phase.JOURNAL);
+            p.trace.succeeded(p.record.lineCount());
+            p.result.tryEmitValue(tradeService.toResponse(p.record));
+        }
+    }
+
+    // one statement with a binding set per row
+    private Mono<Void> execute(String sql, List<Object[]> rows) {
+        return db.inConnectionMany(c -> {
+            Statement s = c.createStatement(sql);
+            for (int r = 0; r < rows.size(); r++) {
+                if (r > 0) s.add();
+                Object[] row = rows.get(r);
+                for (int i = 0; i < row.length; i++) {
+                    s.bind(i, row[i]);
+                }
+            }
+            return Flux.from(s.execute()).flatMap(Result::getRowsUpdated);
+        }).then();
+    }
+
+    private Mono<Void> mergeRollup(Object[] args) {
+        return execute(DailyRollupService.MERGE_SQL, List.<Object[]>of(args))
+                // another transaction inserted the same new row first; it exists now, so merging again updates it
+                .onErrorResume(R2dbcDataIntegrityViolationException.class,
+                        e -> execute(DailyRollupService.MERGE_SQL, List.<Object[]>of(args)));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        // let the batches already accepted commit
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((draining.get() || !buffer.isEmpty()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        writer.dispose();
+        connectionFactory.destroy();
+    }
+
+    private static final class Pending {
+        final TradeRequest request;
+        final BigDecimal amount;
+        final TradeMetrics.TradeTrace trace;
+        final Sinks.One<TradeResponse> result = Sinks.one();
+        TradeRecord record;
+
+        Pending(TradeRequest request, BigDecimal amount, TradeMetrics.TradeTrace trace) {
+            this.request = request;
+            this.amount = amount;
+            this.trace = trace;
+        }
+
+        // no-op for a trade that already has its outcome
+        void fail(Throwable e) {
+            if (result.tryEmitError(e).isSuccess() && e instanceof RuntimeException re) trace.failed(re);
+        }
+    }
+}
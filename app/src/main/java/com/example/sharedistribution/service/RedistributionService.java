@@ -0,0 +1,459 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.RedistributionEdge;
+import com.example.sharedistribution.entity.RedistributionJob;
+import com.example.sharedistribution.entity.RedistributionStatus;
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.repository.RedistributionJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recomputes the distributions of past trades after share config corrections and writes the differences as
+ * compensating trade_distribution rows (adjustment_job_id = job id). The original lines stay untouched;
+ * reports, rollups and balances sum to the corrected amounts.
+ *
+ * A job covers the trades created in [from, to) whose chain contains one of its edges. Every hop uses the
+ * corrected percentage of its edge if the job has one, else the correction of the latest earlier job whose
+ * window covers the trade, else the percentage in effect at the trade's time (ShareConfigHistory); so a
+ * job never undoes the corrections of the jobs before it. The participants are those of the trade's
+ * original lines, so later hierarchy changes do not leak into old trades.
+ *
+ * The window's trade id range is processed in waves. A ForkJoinPool splits each wave into id segments and
+ * every segment writes its rows in JDBC batches, one transaction per chunk of trades. After a wave the
+ * checkpoint moves to its last id. An adjustment is the corrected amount minus the current sum of the
+ * trade's rows, so redoing part of a wave after a restart writes nothing twice. Jobs run one at a time.
+ */
+@Service
+public class RedistributionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RedistributionService.class);
+
+    private static final String INSERT_ADJUSTMENT =
+            "insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at, adjustment_job_id) "
+            + "values (?, ?, ?, ?, ?, ?, ?)";
+
+    // segments per worker in one wave: enough to keep every worker busy while bounding the redone work
+    private static final int SEGMENTS_PER_WORKER = 4;
+
+    /**
+     * Edge to correct; a null passPercentage keeps the recorded history and only recomputes.
+     */
+    public record EdgeCorrection(Long parentId, Long childId, BigDecimal passPercentage) {}
+
+    private final RedistributionJobRepository jobRepo;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ShareConfigSnapshotService shareSnapshots;
+    private final DailyRollupService dailyRollups;
+    private final ParticipantBalanceLedger balanceLedger;
+    private final TradeIdAllocator idAllocator;
+    private final TradeArchive archive;
+    private final int segmentSize;
+    private final int batchSize;
+
+    private final ExecutorService runner;
+    private final ForkJoinPool workers;
+    private volatile boolean stopping;
+
+    private final Counter tradesScanned;
+    private final Counter tradesAdjusted;
+    private final Counter tradesSkipped;
+    private final Counter linesWritten;
+    private final Timer segmentTimer;
+
+    // id range and checkpoint of the running job, for the progress gauge
+    private volatile long runningFirst;
+    private volatile long runningLast = -1;
+    private volatile long runningDone;
+
+    public RedistributionService(RedistributionJobRepository jobRepo,
+                                 JdbcTemplate jdbc,
+                                 PlatformTransactionManager txManager,
+                                 ShareConfigSnapshotService shareSnapshots,
+                                 DailyRollupService dailyRollups,
+                                 ParticipantBalanceLedger balanceLedger,
+                                 TradeIdAllocator idAllocator,
+                                 TradeArchive archive,
+                                 MeterRegistry registry,
+                                 @Value("${redistribution.parallelism:4}") int parallelism,
+                                 @Value("${redistribution.segment-size:10000}") int segmentSize,
+                                 @Value("${redistribution.batch-size:500}") int batchSize) {
+        this.jobRepo = jobRepo;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.shareSnapshots = shareSnapshots;
+        this.dailyRollups = dailyRollups;
+        this.balanceLedger = balanceLedger;
+        this.idAllocator = idAllocator;
+        this.archive = archive;
+        this.segmentSize = segmentSize;
+        this.batchSize = batchSize;
+        this.runner = Executors.newSingleThreadExecutor(r -> new Thread(r, "redistribution"));
+        this.workers = new ForkJoinPool(parallelism);
+
+        this.tradesScanned = Counter.builder("redistribution.trades").tag("result", "scanned")
+                .description("Trades below a corrected edge read by redistribution jobs").register(registry);
+        this.tradesAdjusted = Counter.builder("redistribution.trades").tag("result", "adjusted")
+                .description("Trades that received compensating rows").register(registry);
+        this.tradesSkipped = Counter.builder("redistribution.trades").tag("result", "skipped")
+                .description("Trades on a changed edge without a share config at their time").register(registry);
+        this.linesWritten = Counter.builder("redistribution.lines")
+                .description("Compensating trade_distribution rows written").register(registry);
+        this.segmentTimer = Timer.builder("redistribution.segment")
+                .description("Time to recompute one trade id segment").register(registry);
+        Gauge.builder("redistribution.job.progress", this, RedistributionService::progress)
+                .description("Fraction of the running job's trade id range done, 0 when idle").register(registry);
+    }
+
+    /**
+     * Record a job and start it in the background. Throws IllegalArgumentException for an invalid window or edge,
+     * or a window reaching into archived days.
+     */
+    public RedistributionJob submit(Instant from, Instant to, List<EdgeCorrection> corrections) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (corrections == null || corrections.isEmpty()) {
+            throw new IllegalArgumentException("At least one edge is required");
+        }
+        Set<ShareConfigSnapshot.EdgeKey> seen = new HashSet<>();
+        List<RedistributionEdge> edges = new ArrayList<>(corrections.size());
+        for (EdgeCorrection c : corrections) {
+            if (c == null || c.parentId() == null || c.childId() == null) {
+                throw new IllegalArgumentException("Every edge needs parentId and childId");
+            }
+            if (!seen.add(ShareConfigSnapshot.edgeKey(c.parentId(), c.childId()))) {
+                throw new IllegalArgumentException("Edge parent=" + c.parentId() + " child=" + c.childId() + " is listed twice");
+            }
+            Long bp = null;
+            if (c.passPercentage() != null) {
+                if (c.passPercentage().signum() < 0 || c.passPercentage().compareTo(BigDecimal.valueOf(100)) > 0) {
+                    throw new IllegalArgumentException("passPercentage must be between 0 and 100");
+                }
+                bp = ShareConfigSnapshot.toBasisPoints(c.passPercentage());
+            }
+            edges.add(new RedistributionEdge(c.parentId(), c.childId(), bp));
+        }
+        // archived trades are read-only; recording the job under the archive's lock keeps its days live until it finishes
+        RedistributionJob job = archive.beforeArchiving(from, () -> jobRepo.save(new RedistributionJob(from, to, edges)));
+        Long id = job.getId();
+        runner.execute(() -> run(id));
+        return job;
+    }
+
+    public Optional<RedistributionJob> find(Long id) {
+        return jobRepo.findById(id);
+    }
+
+    // jobs interrupted by a shutdown or crash continue after their checkpoint
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (RedistributionJob job : jobRepo.findByStatusInOrderByIdAsc(
+                List.of(RedistributionStatus.PENDING, RedistributionStatus.RUNNING))) {
+            log.info("Resuming redistribution job {} after trade id {}", job.getId(), job.getCheckpointTradeId());
+            Long id = job.getId();
+            runner.execute(() -> run(id));
+        }
+    }
+
+    private void run(Long jobId) {
+        RedistributionJob job = jobRepo.findById(jobId).orElse(null);
+        if (job == null || stopping) return;
+        try {
+            Long first = job.getFirstTradeId();
+            Long last = job.getLastTradeId();
+            if (job.getStartedAt() == null) {
+                Map<String, Object> range = jdbc.queryForMap(
+                        "select min(id) lo, max(id) hi from trade where created_at >= ? and created_at < ?",
+                        utc(job.getWindowFrom()), utc(job.getWindowTo()));
+                first = range.get("lo") == null ? null : ((Number) range.get("lo")).longValue();
+                last = range.get("hi") == null ? null : ((Number) range.get("hi")).longValue();
+            }
+            job.start(first, last);
+            job = jobRepo.save(job);
+            if (first == null) {
+                job.complete();
+                jobRepo.save(job);
+                return;
+            }
+            Scope scope = new Scope(job);
+            long next = job.getCheckpointTradeId() != null ? job.getCheckpointTradeId() + 1 : first;
+            runningFirst = first;
+            runningDone = next - 1;
+            runningLast = last;
+            long waveSize = (long) segmentSize * workers.getParallelism() * SEGMENTS_PER_WORKER;
+            while (next <= last && !stopping) {
+                long waveEnd = Math.min(last, next + waveSize - 1);
+                Totals totals = new Totals();
+                workers.invoke(new Partition(scope, next, waveEnd, totals));
+                // a wave cut short by a shutdown is redone from the previous checkpoint
+                if (stopping) break;
+                job.checkpoint(waveEnd, totals.scanned.sum(), totals.adjusted.sum(), totals.lines.sum());
+                job = jobRepo.save(job);
+                runningDone = waveEnd;
+                next = waveEnd + 1;
+            }
+            if (!stopping) {
+                job.complete();
+                jobRepo.save(job);
+                log.info("Redistribution job {} finished: {} trades scanned, {} adjusted, {} rows written",
+                        jobId, job.getTradesScanned(), job.getTradesAdjusted(), job.getLinesWritten());
+            }
+        } catch (RuntimeException e) {
+            log.error("Redistribution job {} failed", jobId, e);
+            job.fail(e.getMessage());
+            jobRepo.save(job);
+        } finally {
+            runningLast = -1;
+        }
+    }
+
+    private double progress() {
+        long last = runningLast;
+        if (last < 0) return 0;
+        long total = last - runningFirst + 1;
+        return total <= 0 ? 1 : (double) (runningDone - runningFirst + 1) / total;
+    }
+
+    /**
+     * Recompute the trades with ids in [lo, hi] and write their adjustments.
+     */
+    private void processSegment(Scope scope, long lo, long hi, Totals totals) {
+        Timer.Sample sample = Timer.start();
+        List<TradeRow> trades = new ArrayList<>();
+        List<Object> args = new ArrayList<>(List.of(lo, hi, utc(scope.from), utc(scope.to)));
+        args.addAll(scope.children);
+        // the chains through parent -> child are those of the customers in the child's subtree
+        jdbc.query("select id, amount, type, created_at from trade "
+                        + "where id between ? and ? and created_at >= ? and created_at < ? "
+                        + "and customer_id in (select descendant_id from hierarchy_closure where ancestor_id in ("
+                        + String.join(",", Collections.nCopies(scope.children.size(), "?")) + ")) order by id",
+                rs -> {
+                    trades.add(new TradeRow(rs.getLong(1), rs.getBigDecimal(2), TradeType.valueOf(rs.getString(3)),
+                            rs.getObject(4, OffsetDateTime.class).toInstant()));
+                }, args.toArray());
+        totals.scanned.add(trades.size());
+        tradesScanned.increment(trades.size());
+
+        for (int from = 0; from < trades.size() && !stopping; from += batchSize) {
+            List<TradeRow> chunk = trades.subList(from, Math.min(from + batchSize, trades.size()));
+            tx.executeWithoutResult(status -> adjustChunk(scope, chunk, totals));
+        }
+        sample.stop(segmentTimer);
+    }
+
+    // reads the current rows of the chunk's trades and writes the differences in the same transaction
+    private void adjustChunk(Scope scope, List<TradeRow> chunk, Totals totals) {
+        Map<Long, TradeLines> linesByTrade = new HashMap<>();
+        Object[] ids = chunk.stream().map(TradeRow::id).toArray();
+        jdbc.query("select trade_id, participant_id, amount_kept, amount_passed, adjustment_job_id from trade_distribution "
+                        + "where trade_id in (" + String.join(",", Collections.nCopies(ids.length, "?")) + ") order by id",
+                rs -> {
+                    TradeLines l = linesByTrade.computeIfAbsent(rs.getLong(1), k -> new TradeLines());
+                    long participantId = rs.getLong(2);
+                    rs.getLong(5);
+                    if (rs.wasNull()) l.flow.add(participantId);
+                    BigDecimal[] net = l.net.computeIfAbsent(participantId, k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+                    net[0] = net[0].add(rs.getBigDecimal(3));
+                    net[1] = net[1].add(rs.getBigDecimal(4));
+                }, ids);
+
+        ShareConfigHistory history = shareSnapshots.history();
+        List<DistributionAdjustment> adjustments = new ArrayList<>();
+        Map<Long, TradeFlow> flows = new HashMap<>();
+        int adjustedTrades = 0;
+        for (TradeRow t : chunk) {
+            TradeLines l = linesByTrade.get(t.id);
+            if (l == null || l.flow.size() < 2) continue;
+            long[] flow = l.flow.stream().mapToLong(Long::longValue).toArray();
+            long[] passBps = scope.passBasisPoints(history, t, flow);
+            if (passBps == null) continue;
+            if (passBps.length == 0) {
+                totals.skipped.increment();
+                tradesSkipped.increment();
+                continue;
+            }
+            BigDecimal[] kept = new BigDecimal[flow.length];
+            BigDecimal[] passed = new BigDecimal[flow.length];
+            DistributionCalculator.distribute(t.amount, passBps, kept, passed);
+            int before = adjustments.size();
+            for (int i = 0; i < flow.length; i++) {
+                BigDecimal[] net = l.net.get(flow[i]);
+                BigDecimal dk = kept[i].subtract(net[0]);
+                BigDecimal dp = passed[i].subtract(net[1]);
+                if (dk.signum() != 0 || dp.signum() != 0) {
+                    adjustments.add(new DistributionAdjustment(idAllocator.nextDistributionId(), t.id, t.createdAt,
+                            flow[i], dk.setScale(DistributionCalculator.SCALE), dp.setScale(DistributionCalculator.SCALE)));
+                }
+            }
+            if (adjustments.size() > before) {
+                adjustedTrades++;
+                flows.put(t.id, new TradeFlow(t.type, flow));
+            }
+        }
+        if (adjustments.isEmpty()) return;
+
+        OffsetDateTime createdAt = utc(Instant.now());
+        List<Object[]> rows = new ArrayList<>(adjustments.size());
+        for (DistributionAdjustment a : adjustments) {
+            rows.add(new Object[]{a.distributionId(), a.tradeId(), a.participantId(), a.kept(), a.passed(), createdAt, scope.jobId});
+        }
+        jdbc.batchUpdate(INSERT_ADJUSTMENT, rows);
+        dailyRollups.recordAdjustments(adjustments, flows);
+        balanceLedger.recordAdjustmentsAfterCommit(adjustments);
+        totals.adjusted.add(adjustedTrades);
+        totals.lines.add(adjustments.size());
+        tradesAdjusted.increment(adjustedTrades);
+        linesWritten.increment(adjustments.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        runner.shutdown();
+        if (!runner.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Redistribution job still running at shutdown; it resumes from its checkpoint on the next start");
+        }
+        workers.shutdown();
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    // splits [lo, hi] in halves down to one segment
+    private final class Partition extends RecursiveAction {
+        private final Scope scope;
+        private final long lo;
+        private final long hi;
+        private final Totals totals;
+
+        Partition(Scope scope, long lo, long hi, Totals totals) {
+            this.scope = scope;
+            this.lo = lo;
+            this.hi = hi;
+            this.totals = totals;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopping) return;
+            if (hi - lo < segmentSize) {
+                processSegment(scope, lo, hi, totals);
+                return;
+            }
+            long mid = lo + (hi - lo) / 2;
+            invokeAll(new Partition(scope, lo, mid, totals), new Partition(scope, mid + 1, hi, totals));
+        }
+    }
+
+    /**
+     * What a job touches: its edges (edge key -> corrected basis points, or MISSING to use the history),
+     * the children of those edges, and the corrections of earlier jobs that are still in force.
+     */
+    private final class Scope {
+        final long jobId;
+        final Instant from;
+        final Instant to;
+        final Map<ShareConfigSnapshot.EdgeKey, Long> edges = new HashMap<>();
+        final List<Long> children = new ArrayList<>();
+        // corrections of earlier jobs whose window overlaps this one, per edge in job order
+        final Map<ShareConfigSnapshot.EdgeKey, List<Correction>> earlier = new HashMap<>();
+
+        Scope(RedistributionJob job) {
+            this.jobId = job.getId();
+            this.from = job.getWindowFrom();
+            this.to = job.getWindowTo();
+            for (RedistributionEdge e : job.getEdges()) {
+                edges.put(ShareConfigSnapshot.edgeKey(e.getParentId(), e.getChildId()),
+                        e.getPassBasisPoints() != null ? e.getPassBasisPoints() : ShareConfigHistory.MISSING);
+                if (!children.contains(e.getChildId())) children.add(e.getChildId());
+            }
+            for (RedistributionJob before : jobRepo.findByIdLessThanOrderByIdAsc(jobId)) {
+                if (!before.getWindowFrom().isBefore(to) || !before.getWindowTo().isAfter(from)) continue;
+                for (RedistributionEdge e : before.getEdges()) {
+                    if (e.getPassBasisPoints() == null) continue;
+                    earlier.computeIfAbsent(ShareConfigSnapshot.edgeKey(e.getParentId(), e.getChildId()), k -> new ArrayList<>())
+                            .add(new Correction(before.getWindowFrom(), before.getWindowTo(), e.getPassBasisPoints()));
+                }
+            }
+        }
+
+        // the latest earlier correction of the edge covering the instant, or MISSING
+        long earlierCorrection(ShareConfigSnapshot.EdgeKey edge, Instant at) {
+            List<Correction> corrections = earlier.get(edge);
+            if (corrections == null) return ShareConfigHistory.MISSING;
+            for (int i = corrections.size() - 1; i >= 0; i--) {
+                Correction c = corrections.get(i);
+                if (!at.isBefore(c.from()) && at.isBefore(c.to())) return c.basisPoints();
+            }
+            return ShareConfigHistory.MISSING;
+        }
+
+        /**
+         * Pass percentages of the trade's hops; null if no hop is one of the job's edges, an empty array if
+         * a hop has no share config at the trade's time.
+         */
+        long[] passBasisPoints(ShareConfigHistory history, TradeRow t, long[] flow) {
+            long[] bps = new long[flow.length - 1];
+            boolean touched = false;
+            boolean missing = false;
+            for (int i = 0; i < bps.length; i++) {
+                // LOSS flows child -> parent, PROFIT parent -> child
+                long parent = t.type == TradeType.LOSS ? flow[i + 1] : flow[i];
+                long child = t.type == TradeType.LOSS ? flow[i] : flow[i + 1];
+                ShareConfigSnapshot.EdgeKey edge = ShareConfigSnapshot.edgeKey(parent, child);
+                Long corrected = edges.get(edge);
+                touched |= corrected != null;
+                bps[i] = corrected != null ? corrected : ShareConfigHistory.MISSING;
+                if (bps[i] == ShareConfigHistory.MISSING) bps[i] = earlierCorrection(edge, t.createdAt);
+                if (bps[i] == ShareConfigHistory.MISSING) bps[i] = history.passBasisPointsAt(parent, child, t.createdAt);
+                missing |= bps[i] == ShareConfigHistory.MISSING;
+            }
+            if (!touched) return null;
+            return missing ? new long[0] : bps;
+        }
+    }
+
+    private record TradeRow(long id, BigDecimal amount, TradeType type, Instant createdAt) {}
+
+    private record Correction(Instant from, Instant to, long basisPoints) {}
+
+    // participants of the original lines in flow order, and the current sum of every participant's rows
+    private static final class TradeLines {
+        final List<Long> flow = new ArrayList<>(4);
+        final Map<Long, BigDecimal[]> net = new HashMap<>();
+    }
+
+    private static final class Totals {
+        final LongAdder scanned = new LongAdder();
+        final LongAdder adjusted = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder lines = new LongAdder();
+    }
+}
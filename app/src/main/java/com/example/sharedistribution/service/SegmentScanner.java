@@ -0,0 +1,202 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Line count and kept/passed sums over distribution segments, in total or per participant, optionally only
+ * for trades of one type. Only the kept, passed and (when grouping or filtering) participant, type and
+ * lines-per-trade columns are decoded, into primitive arrays reused from segment to segment; the sums are
+ * plain loops over those arrays. The type filter is a 0 / -1 mask per line that is ANDed into the amounts
+ * instead of a branch, so the ungrouped loop is a straight reduction the JIT can vectorize.
+ *
+ * Amounts are summed as long hundredths, with the few amounts the segment stores as decimals added on the
+ * side. Not thread-safe; use one scanner per query.
+ */
+public final class SegmentScanner {
+
+    public record Totals(long lines, BigDecimal kept, BigDecimal passed) {}
+
+    private final TradeType type;
+    private final boolean byParticipant;
+
+    private long lines;
+    private long kept;
+    private long passed;
+    private BigDecimal extraKept = BigDecimal.ZERO;
+    private BigDecimal extraPassed = BigDecimal.ZERO;
+    // participant id -> {lines, kept, passed}, plus the decimal amounts outside those longs
+    private final Map<Long, long[]> participants = new HashMap<>();
+    private final Map<Long, BigDecimal[]> participantExtras = new HashMap<>();
+
+    // decode buffers
+    private long[] types;
+    private long[] tradeLines;
+    private long[] mask;
+    private long[] keptColumn;
+    private long[] passedColumn;
+    private long[] indexes;
+    private long[] acc = new long[0];
+
+    /**
+     * type null counts every trade; byParticipant keeps the sums per participant as well.
+     */
+    public SegmentScanner(TradeType type, boolean byParticipant) {
+        this.type = type;
+        this.byParticipant = byParticipant;
+    }
+
+    public void scan(DistributionSegment segment) {
+        int n = segment.lines();
+        keptColumn = segment.kept(keptColumn);
+        passedColumn = segment.passed(passedColumn);
+        long[] m = type == null ? null : mask(segment);
+        if (byParticipant) {
+            group(segment, n, m);
+        } else if (m == null) {
+            sum(n);
+        } else {
+            sum(n, m);
+        }
+        for (DistributionSegment.Decimal d : segment.decimals()) {
+            boolean isKept = DistributionSegment.isKept(d);
+            if (!isKept && !DistributionSegment.isPassed(d) || m != null && m[d.index()] == 0) continue;
+            if (isKept) extraKept = extraKept.add(d.value());
+            else extraPassed = extraPassed.add(d.value());
+        }
+    }
+
+    /**
+     * Add one line of an archive file in the first, row-based format.
+     */
+    void add(TradeArchive.Line l) {
+        if (type != null && l.tradeType() != type) return;
+        lines++;
+        extraKept = extraKept.add(l.amountKept());
+        extraPassed = extraPassed.add(l.amountPassed());
+        if (byParticipant) {
+            participants.computeIfAbsent(l.participantId(), id -> new long[3])[0]++;
+            BigDecimal[] extra = extras(l.participantId());
+            extra[0] = extra[0].add(l.amountKept());
+            extra[1] = extra[1].add(l.amountPassed());
+        }
+    }
+
+    public Totals totals() {
+        return new Totals(lines, BigDecimal.valueOf(kept, 2).add(extraKept), BigDecimal.valueOf(passed, 2).add(extraPassed));
+    }
+
+    /**
+     * Sums per participant id, for participants with at least one matching line. Needs byParticipant.
+     */
+    public Map<Long, Totals> byParticipant() {
+        if (!byParticipant) throw new IllegalStateException("Scanner does not group by participant");
+        Map<Long, Totals> out = new HashMap<>(participants.size() * 2);
+        participants.forEach((id, s) -> {
+            BigDecimal[] extra = participantExtras.get(id);
+            BigDecimal k = BigDecimal.valueOf(s[1], 2);
+            BigDecimal p = BigDecimal.valueOf(s[2], 2);
+            out.put(id, extra == null ? new Totals(s[0], k, p) : new Totals(s[0], k.add(extra[0]), p.add(extra[1])));
+        });
+        return out;
+    }
+
+    // -1 for the lines of trades of the wanted type, 0 for the others
+    private long[] mask(DistributionSegment segment) {
+        types = segment.tradeTypes(types);
+        tradeLines = segment.tradeLines(tradeLines);
+        if (mask == null || mask.length < segment.lines()) mask = new long[segment.lines()];
+        long wanted = type.ordinal();
+        int line = 0;
+        for (int t = 0, trades = segment.trades(); t < trades; t++) {
+            long m = -(types[t] == wanted ? 1L : 0L);
+            for (long end = line + tradeLines[t]; line < end; line++) mask[line] = m;
+        }
+        return mask;
+    }
+
+    private void sum(int n) {
+        long[] k = keptColumn;
+        long[] p = passedColumn;
+        long sk = 0;
+        long sp = 0;
+        for (int i = 0; i < n; i++) {
+            sk += k[i];
+            sp += p[i];
+        }
+        lines += n;
+        kept = Math.addExact(kept, sk);
+        passed = Math.addExact(passed, sp);
+    }
+
+    private void sum(int n, long[] m) {
+        long[] k = keptColumn;
+        long[] p = passedColumn;
+        long sk = 0;
+        long sp = 0;
+        long count = 0;
+        for (int i = 0; i < n; i++) {
+            long mi = m[i];
+            sk += k[i] & mi;
+            sp += p[i] & mi;
+            count -= mi;
+        }
+        lines += count;
+        kept = Math.addExact(kept, sk);
+        passed = Math.addExact(passed, sp);
+    }
+
+    // sums by dictionary index into acc ({lines, kept, passed} per index), then merged by participant id
+    private void group(DistributionSegment segment, int n, long[] m) {
+        long[] ids = segment.participants();
+        indexes = segment.participantIndexes(indexes);
+        if (acc.length < ids.length * 3) acc = new long[ids.length * 3];
+        Arrays.fill(acc, 0, ids.length * 3, 0);
+        long[] k = keptColumn;
+        long[] p = passedColumn;
+        long[] idx = indexes;
+        long[] a = acc;
+        if (m == null) {
+            for (int i = 0; i < n; i++) {
+                int j = (int) idx[i] * 3;
+                a[j]++;
+                a[j + 1] += k[i];
+                a[j + 2] += p[i];
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                long mi = m[i];
+                int j = (int) idx[i] * 3;
+                a[j] -= mi;
+                a[j + 1] += k[i] & mi;
+                a[j + 2] += p[i] & mi;
+            }
+        }
+        for (int d = 0; d < ids.length; d++) {
+            int j = d * 3;
+            if (a[j] == 0) continue;
+            long[] s = participants.computeIfAbsent(ids[d], id -> new long[3]);
+            s[0] += a[j];
+            s[1] = Math.addExact(s[1], a[j + 1]);
+            s[2] = Math.addExact(s[2], a[j + 2]);
+            lines += a[j];
+            kept = Math.addExact(kept, a[j + 1]);
+            passed = Math.addExact(passed, a[j + 2]);
+        }
+        for (DistributionSegment.Decimal dec : segment.decimals()) {
+            boolean isKept = DistributionSegment.isKept(dec);
+            if (!isKept && !DistributionSegment.isPassed(dec) || m != null && m[dec.index()] == 0) continue;
+            BigDecimal[] extra = extras(ids[(int) idx[dec.index()]]);
+            if (isKept) extra[0] = extra[0].add(dec.value());
+            else extra[1] = extra[1].add(dec.value());
+        }
+    }
+
+    private BigDecimal[] extras(long participantId) {
+        return participantExtras.computeIfAbsent(participantId, id -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.sharedistribution.service;
+
+/**
+ * Published after a new share config snapshot was made current; parentId/childId identify the changed
+ * edge, or are both null when the snapshot was rebuilt from the database or many edges changed at once.
+ */
+public record ShareConfigChangedEvent(Long parentId, Long childId) {
+}
@@ -0,0 +1,113 @@
+package com.example.sharedistribution.service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every version of every parent -> child share config as sorted, non-overlapping validity intervals,
+ * so "pass percentage for an edge at instant T" is a binary search instead of a query.
+ * Per edge the versions are parallel primitive arrays ordered by effectiveFrom; an interval is
+ * [effectiveFrom, effectiveTo) and the open (current) version has effectiveTo = Long.MAX_VALUE.
+ * Times are epoch microseconds, the precision the database stores.
+ *
+ * The arrays of an edge are never modified: a new version replaces them with a copy, so readers never lock.
+ */
+public final class ShareConfigHistory {
+
+    public static final long MISSING = ShareConfigSnapshot.MISSING;
+    static final long OPEN = Long.MAX_VALUE;
+
+    private final Map<ShareConfigSnapshot.EdgeKey, Versions> edges = new ConcurrentHashMap<>();
+
+    /**
+     * One version of an edge as returned by lookups; effectiveTo is null for the current version.
+     */
+    public record Version(long id, long basisPoints, Instant effectiveFrom, Instant effectiveTo, long snapshotVersion) {}
+
+    private record Versions(long[] ids, long[] fromMicros, long[] toMicros, long[] basisPoints, long[] snapshotVersions) {
+
+        int size() { return ids.length; }
+
+        // index of the version in effect at the instant, or -1
+        int indexAt(long micros) {
+            int i = Arrays.binarySearch(fromMicros, micros);
+            if (i < 0) i = -i - 2;
+            // equal effectiveFrom (zero-length versions from legacy rows): the last one wins
+            while (i >= 0 && i + 1 < fromMicros.length && fromMicros[i + 1] == micros) i++;
+            return i >= 0 && micros < toMicros[i] ? i : -1;
+        }
+
+        Versions append(long id, long from, long basisPoints, long snapshotVersion) {
+            int n = size();
+            long[] to = Arrays.copyOf(toMicros, n + 1);
+            if (n > 0 && to[n - 1] == OPEN) to[n - 1] = from;
+            to[n] = OPEN;
+            return new Versions(push(ids, id), push(fromMicros, from), to,
+                    push(this.basisPoints, basisPoints), push(snapshotVersions, snapshotVersion));
+        }
+
+        private static long[] push(long[] a, long v) {
+            long[] copy = Arrays.copyOf(a, a.length + 1);
+            copy[a.length] = v;
+            return copy;
+        }
+    }
+
+    private static final Versions EMPTY = new Versions(new long[0], new long[0], new long[0], new long[0], new long[0]);
+
+    /**
+     * Pass percentage for parent -> child in basis points at the instant, or MISSING when no version covers it.
+     */
+    public long passBasisPointsAt(long parentId, long childId, Instant at) {
+        Versions v = edges.get(ShareConfigSnapshot.edgeKey(parentId, childId));
+        if (v == null) return MISSING;
+        int i = v.indexAt(toMicros(at));
+        return i < 0 ? MISSING : v.basisPoints()[i];
+    }
+
+    /**
+     * Version of parent -> child in effect at the instant, or null.
+     */
+    public Version versionAt(long parentId, long childId, Instant at) {
+        Versions v = edges.get(ShareConfigSnapshot.edgeKey(parentId, childId));
+        if (v == null) return null;
+        int i = v.indexAt(toMicros(at));
+        return i < 0 ? null : version(v, i);
+    }
+
+    public int edgeCount() {
+        return edges.size();
+    }
+
+    /**
+     * Add a version of the edge; it closes the open version at effectiveFrom. Versions of an edge must be
+     * appended in effectiveFrom order and writers must be serialized.
+     */
+    void append(long parentId, long childId, long id, Instant effectiveFrom, long basisPoints, Long snapshotVersion) {
+        long from = toMicros(effectiveFrom);
+        edges.compute(ShareConfigSnapshot.edgeKey(parentId, childId), (k, v) -> {
+            Versions base = v != null ? v : EMPTY;
+            if (base.size() > 0 && from < base.fromMicros()[base.size() - 1]) {
+                throw new IllegalStateException("Share config version for parent=" + parentId + " child=" + childId
+                        + " is older than the current one");
+            }
+            return base.append(id, from, basisPoints, snapshotVersion != null ? snapshotVersion : 0L);
+        });
+    }
+
+    private static Version version(Versions v, int i) {
+        long to = v.toMicros()[i];
+        return new Version(v.ids()[i], v.basisPoints()[i], fromMicros(v.fromMicros()[i]),
+                to == OPEN ? null : fromMicros(to), v.snapshotVersions()[i]);
+    }
+
+    static long toMicros(Instant t) {
+        return Math.addExact(Math.multiplyExact(t.getEpochSecond(), 1_000_000L), t.getNano() / 1_000);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.util.LongPairLongHashMap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable view of the effective pass percentage for every parent -> child edge.
+ * Percentages are kept as basis points (90.00% -> 9000) in a primitive map keyed by (parentId, childId).
+ * A trade reads one snapshot at the start and uses it for every hop, so it never mixes versions.
+ */
+public final class ShareConfigSnapshot {
+
+    public static final long MISSING = -1L;
+
+    private final long version;
+    private final LongPairLongHashMap passBasisPoints;
+
+    ShareConfigSnapshot(long version, LongPairLongHashMap passBasisPoints) {
+        this.version = version;
+        this.passBasisPoints = passBasisPoints;
+    }
+
+    public long getVersion() { return version; }
+
+    public int size() { return passBasisPoints.size(); }
+
+    /**
+     * Pass percentage for parent -> child in basis points, or MISSING when no config exists.
+     */
+    public long passBasisPoints(long parentId, long childId) {
+        return passBasisPoints.get(parentId, childId, MISSING);
+    }
+
+    /**
+     * Pass percentage for parent -> child as a scale-2 decimal, or null when no config exists.
+     */
+    public BigDecimal passPercentage(long parentId, long childId) {
+        long bp = passBasisPoints(parentId, childId);
+        return bp == MISSING ? null : BigDecimal.valueOf(bp, 2);
+    }
+
+    // copy-on-write: the current snapshot is never modified
+    ShareConfigSnapshot with(long newVersion, long parentId, long childId, long basisPoints) {
+        LongPairLongHashMap copy = passBasisPoints.copy();
+        copy.put(parentId, childId, basisPoints);
+        return new ShareConfigSnapshot(newVersion, copy);
+    }
+
+    ShareConfigSnapshot withAll(long newVersion, long[] parentIds, long[] childIds, long[] basisPoints) {
+        LongPairLongHashMap copy = passBasisPoints.copy();
+        for (int i = 0; i < parentIds.length; i++) {
+            copy.put(parentIds[i], childIds[i], basisPoints[i]);
+        }
+        return new ShareConfigSnapshot(newVersion, copy);
+    }
+
+    /**
+     * Key of a parent -> child edge for boxed maps and sets; holds both ids in full.
+     */
+    record EdgeKey(long parentId, long childId) {}
+
+    static EdgeKey edgeKey(long parentId, long childId) {
+        return new EdgeKey(parentId, childId);
+    }
+
+    static long toBasisPoints(BigDecimal percentage) {
+        return percentage.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ShareConfig;
+import com.example.sharedistribution.repository.ShareConfigRepository;
+import com.example.sharedistribution.util.LongPairLongHashMap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Holds the current ShareConfigSnapshot and publishes a new one on every share config write.
+ * Versions are stamped on the share_config rows, so the counter survives restarts and the
+ * version recorded on a trade can be traced back to the rows that were in effect.
+ *
+ * share_config is append-only: a write closes the open row of the edge and inserts the next version,
+ * and every version is also kept in a ShareConfigHistory for point-in-time lookups.
+ */
+@Service
+public class ShareConfigSnapshotService {
+
+    private final ShareConfigRepository shareRepo;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final AtomicReference<ShareConfigSnapshot> current = new AtomicReference<>();
+    private volatile ShareConfigHistory history = new ShareConfigHistory();
+
+    public ShareConfigSnapshotService(ShareConfigRepository shareRepo, ApplicationEventPublisher events,
+                                      PlatformTransactionManager txManager) {
+        this.shareRepo = shareRepo;
+        this.events = events;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        reload();
+    }
+
+    /**
+     * Snapshot to use for one trade; read it once and keep using the same instance.
+     */
+    public ShareConfigSnapshot current() {
+        ShareConfigSnapshot s = current.get();
+        if (s != null) return s;
+        synchronized (this) {
+            s = current.get();
+            return s != null ? s : load();
+        }
+    }
+
+    /**
+     * Every share config version, for lookups at a past instant.
+     */
+    public ShareConfigHistory history() {
+        current();
+        return history;
+    }
+
+    /**
+     * Rebuild the snapshot and the history from the database, taking the latest row per edge as current.
+     */
+    public synchronized ShareConfigSnapshot reload() {
+        ShareConfigSnapshot snapshot = load();
+        events.publishEvent(new ShareConfigChangedEvent(null, null));
+        return snapshot;
+    }
+
+    private ShareConfigSnapshot load() {
+        Map<ShareConfigSnapshot.EdgeKey, List<ShareConfig>> byEdge = new HashMap<>();
+        for (ShareConfig sc : shareRepo.findAll()) {
+            ShareConfigSnapshot.EdgeKey key = ShareConfigSnapshot.edgeKey(sc.getParent().getId(), sc.getChild().getId());
+            byEdge.computeIfAbsent(key, k -> new ArrayList<>()).add(sc);
+        }
+        // built aside and swapped in, so readers never see a half-loaded history
+        ShareConfigHistory loaded = new ShareConfigHistory();
+        List<ShareConfig> backfilled = new ArrayList<>();
+        LongPairLongHashMap map = new LongPairLongHashMap(byEdge.size());
+        long version = 0;
+        for (Map.Entry<ShareConfigSnapshot.EdgeKey, List<ShareConfig>> e : byEdge.entrySet()) {
+            List<ShareConfig> versions = e.getValue();
+            versions.sort(Comparator.comparing(ShareConfigSnapshotService::effectiveFrom).thenComparing(ShareConfig::getId));
+            for (int i = 0; i < versions.size(); i++) {
+                ShareConfig sc = versions.get(i);
+                Instant from = effectiveFrom(sc);
+                Instant to = i + 1 < versions.size() ? effectiveFrom(versions.get(i + 1)) : null;
+                // rows from before versioning have no period yet; also repairs overlapping periods
+                if (!from.equals(sc.getEffectiveFrom()) || !Objects.equals(to, sc.getEffectiveTo())) {
+                    sc.setEffectivePeriod(from, to);
+                    backfilled.add(sc);
+                }
+                long bp = ShareConfigSnapshot.toBasisPoints(sc.getPassPercentage());
+                loaded.append(sc.getParent().getId(), sc.getChild().getId(), sc.getId(), from, bp, sc.getSnapshotVersion());
+                if (sc.getSnapshotVersion() != null) version = Math.max(version, sc.getSnapshotVersion());
+            }
+            ShareConfig latest = versions.get(versions.size() - 1);
+            map.put(e.getKey().parentId(), e.getKey().childId(), ShareConfigSnapshot.toBasisPoints(latest.getPassPercentage()));
+        }
+        if (!backfilled.isEmpty()) {
+            tx.executeWithoutResult(status -> shareRepo.saveAll(backfilled));
+        }
+        history = loaded;
+        ShareConfigSnapshot snapshot = new ShareConfigSnapshot(version, map);
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Record a new version of the config for parent -> child, effective now, and atomically publish the
+     * next snapshot. The previous version is closed at the same instant, so the periods of an edge never
+     * overlap. Writers are serialized so versions are strictly increasing.
+     */
+    public synchronized ShareConfig upsert(Participant parent, Participant child, BigDecimal passPercentage) {
+        ShareConfigSnapshot base = current();
+        long nextVersion = base.getVersion() + 1;
+
+        ShareConfig saved = tx.execute(status -> {
+            Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+            ShareConfig previous = shareRepo.findTopByParentAndChildOrderByEffectiveFromDescIdDesc(parent, child)
+                    .orElse(null);
+            if (previous != null) {
+                // keep the periods ordered even if the clock stepped back
+                if (!now.isAfter(previous.getEffectiveFrom())) now = previous.getEffectiveFrom().plus(1, ChronoUnit.MICROS);
+                previous.close(now);
+                shareRepo.save(previous);
+            }
+            ShareConfig next = new ShareConfig(parent, child, passPercentage, now);
+            next.setSnapshotVersion(nextVersion);
+            return shareRepo.save(next);
+        });
+
+        long bp = ShareConfigSnapshot.toBasisPoints(passPercentage);
+        history.append(parent.getId(), child.getId(), saved.getId(), saved.getEffectiveFrom(), bp, nextVersion);
+        current.set(base.with(nextVersion, parent.getId(), child.getId(), bp));
+        events.publishEvent(new ShareConfigChangedEvent(parent.getId(), child.getId()));
+        return saved;
+    }
+
+    /**
+     * Run action while no share config is written or reloaded: upsert, reload and addImported take the same lock.
+     */
+    public synchronized <T> T exclusive(Supplier<T> action) {
+        current();
+        return action.get();
+    }
+
+    /**
+     * Publish configs of new edges written in bulk (see HierarchyImportService) as one snapshot version.
+     * The caller holds this instance's lock from reading current() until here, so no upsert runs in between,
+     * and stamped its rows with current().getVersion() + 1.
+     */
+    public synchronized void addImported(Instant effectiveFrom, long[] ids, long[] parentIds, long[] childIds,
+                                         long[] basisPoints) {
+        ShareConfigSnapshot base = current();
+        long nextVersion = base.getVersion() + 1;
+        for (int i = 0; i < ids.length; i++) {
+            history.append(parentIds[i], childIds[i], ids[i], effectiveFrom, basisPoints[i], nextVersion);
+        }
+        current.set(base.withAll(nextVersion, parentIds, childIds, basisPoints));
+        events.publishEvent(new ShareConfigChangedEvent(null, null));
+    }
+
+    // legacy rows without a period start when they were last written
+    private static Instant effectiveFrom(ShareConfig sc) {
+        if (sc.getEffectiveFrom() != null) return sc.getEffectiveFrom();
+        return sc.getUpdatedAt() != null ? sc.getUpdatedAt().truncatedTo(ChronoUnit.MICROS) : Instant.EPOCH;
+    }
+}
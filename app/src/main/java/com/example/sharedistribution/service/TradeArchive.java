@@ -0,0 +1,300 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeArchiveFile;
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.repository.TradeArchiveFileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Cold storage for trades: one file per IST day under trade.archive.dir, listed in trade_archive_file.
+ * Archived days always form a prefix of the history: every day up to archivedThrough() is read from its file
+ * (if it had trades) and every later day from the trade / trade_distribution tables. Readers split their
+ * ranges at that day, so a report or export only opens the files of the archived days it covers, and a
+ * trade lookup only the files whose trade id range contains the trade.
+ *
+ * Days are written as columnar DistributionSegment files (trades-YYYY-MM-DD.seg), which scan() sums without
+ * rebuilding lines. Files of the first format, which are still read, are gzip'd rows:
+ *   big-endian (DataOutputStream) int magic "TARC", byte format version, long epochDay,
+ *   then one record per distribution line, in the order of the trade's created_at:
+ *     byte 1, byte flags, long distributionId, long tradeId, long customerId, amount tradeAmount, byte tradeType,
+ *     [long tradeCreatedAt (epoch micros)], [long shareConfigVersion], [UTF idempotencyKey],
+ *     long participantId, amount kept, amount passed, [long createdAt (epoch micros)], [long adjustmentJobId]
+ *     where each [optional] field is present when its bit of flags is set,
+ *   then byte 0, long record count.
+ * An amount is byte 0 + long (hundredths) or, for values that do not fit, byte 1 + UTF plain string.
+ * gzip's CRC catches corrupted files; the trailing count catches truncated ones.
+ */
+@Component
+public class TradeArchive {
+
+    static final int MAGIC = 0x54415243; // "TARC"
+    static final byte FORMAT_VERSION = 1;
+    private static final byte ROW = 1;
+
+    private static final int TRADE_CREATED_AT = 1;
+    private static final int SHARE_CONFIG_VERSION = 1 << 1;
+    private static final int IDEMPOTENCY_KEY = 1 << 2;
+    private static final int CREATED_AT = 1 << 3;
+    private static final int ADJUSTMENT_JOB = 1 << 4;
+
+    /**
+     * One archived trade_distribution row together with its trade.
+     */
+    public record Line(long id, long tradeId, long customerId, BigDecimal tradeAmount, TradeType tradeType,
+                       Instant tradeCreatedAt, Long shareConfigVersion, String idempotencyKey,
+                       long participantId, BigDecimal amountKept, BigDecimal amountPassed,
+                       Instant createdAt, Long adjustmentJobId) {}
+
+    private final Path dir;
+    private final TradeArchiveFileRepository files;
+
+    // last day moved to a file; later days are in the live tables
+    private volatile LocalDate archivedThrough;
+    // last day an archive run has started on; no new rows may be written up to it
+    private LocalDate reservedThrough;
+
+    // the EntityManagerFactory dependency makes sure trade_archive_file exists before it is read
+    public TradeArchive(@Value("${trade.archive.dir:./data/archive}") String dir,
+                        TradeArchiveFileRepository files,
+                        EntityManagerFactory emf) {
+        this.dir = Path.of(dir);
+        this.files = files;
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        archivedThrough = files.findTopByOrderByReportDateDesc().map(TradeArchiveFile::getReportDate).orElse(null);
+        reservedThrough = archivedThrough;
+    }
+
+    /**
+     * Last archived IST day, or null when nothing is archived.
+     */
+    public LocalDate archivedThrough() {
+        return archivedThrough;
+    }
+
+    public boolean isArchived(LocalDate day) {
+        LocalDate through = archivedThrough;
+        return through != null && !day.isAfter(through);
+    }
+
+    /**
+     * Start of the first day served from the live tables.
+     */
+    public Instant liveFrom() {
+        LocalDate through = archivedThrough;
+        return through == null ? Instant.EPOCH : through.plusDays(1).atStartOfDay(DailyRollupService.IST).toInstant();
+    }
+
+    /**
+     * Run action, which writes rows for trades created at or after from, while no archive run can start on
+     * those days. Throws IllegalArgumentException if from falls on a day that is archived or being archived.
+     */
+    public synchronized <T> T beforeArchiving(Instant from, Supplier<T> action) {
+        if (reservedThrough != null && !DailyRollupService.istDate(from).isAfter(reservedThrough)) {
+            throw new IllegalArgumentException("Trades up to " + reservedThrough + " are archived and cannot be changed");
+        }
+        return action.get();
+    }
+
+    /**
+     * Mark day as being archived if allowed returns true; allowed runs under the same lock as beforeArchiving().
+     */
+    synchronized boolean reserve(LocalDate day, BooleanSupplier allowed) {
+        if (!allowed.getAsBoolean()) return false;
+        if (reservedThrough == null || day.isAfter(reservedThrough)) reservedThrough = day;
+        return true;
+    }
+
+    // called inside the transaction that adds the trade_archive_file row of day: from then on the complete
+    // file serves the day, while its live rows are deleted
+    synchronized void archived(LocalDate day) {
+        if (archivedThrough == null || day.isAfter(archivedThrough)) archivedThrough = day;
+    }
+
+    public List<TradeArchiveFile> list() {
+        return files.findAllByOrderByReportDateAsc();
+    }
+
+    /**
+     * Every archived line of the IST days from..to, day by day in file order.
+     */
+    public void forEachLine(LocalDate from, LocalDate to, Consumer<Line> consumer) {
+        for (TradeArchiveFile f : files.findByReportDateBetweenOrderByReportDateAsc(from, to)) {
+            read(dir.resolve(f.getFileName()), consumer);
+        }
+    }
+
+    /**
+     * Line count and kept/passed sums of the archived IST days from..to, of trades of type (null for all).
+     */
+    public SegmentScanner scan(LocalDate from, LocalDate to, TradeType type, boolean byParticipant) {
+        SegmentScanner scanner = new SegmentScanner(type, byParticipant);
+        for (TradeArchiveFile f : files.findByReportDateBetweenOrderByReportDateAsc(from, to)) {
+            Path path = dir.resolve(f.getFileName());
+            if (isSegment(path)) {
+                scanner.scan(DistributionSegment.open(path));
+            } else {
+                read(path, scanner::add);
+            }
+        }
+        return scanner;
+    }
+
+    /**
+     * The archived lines of one trade ordered by id (empty for a trade archived without lines), or null if the
+     * trade is not archived.
+     */
+    public List<Line> findTrade(long tradeId) {
+        List<Line> lines = new ArrayList<>();
+        for (TradeArchiveFile f : files.findCovering(tradeId)) {
+            Path path = dir.resolve(f.getFileName());
+            read(path, l -> {
+                if (l.tradeId() == tradeId) lines.add(l);
+            });
+            if (!lines.isEmpty()) break;
+            // only segments hold trades without lines
+            if (isSegment(path) && DistributionSegment.open(path).containsTrade(tradeId)) return lines;
+        }
+        if (lines.isEmpty()) return null;
+        lines.sort(Comparator.comparingLong(Line::id));
+        return lines;
+    }
+
+    static String fileName(LocalDate day) {
+        return "trades-" + day + ".seg";
+    }
+
+    /**
+     * Writer for the file of day. The day is encoded in memory, so it takes about 150 bytes of heap per line;
+     * nothing is visible under the final name until finish().
+     */
+    Writer create(LocalDate day) throws IOException {
+        Files.createDirectories(dir);
+        return new Writer(day);
+    }
+
+    final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final DistributionSegment.Builder segment;
+        private boolean finished;
+
+        private Writer(LocalDate day) {
+            this.target = dir.resolve(fileName(day));
+            this.temp = dir.resolve(fileName(day) + ".tmp");
+            this.segment = new DistributionSegment.Builder(day);
+        }
+
+        void add(Line l) {
+            segment.add(l);
+        }
+
+        // a trade without lines; only the trade fields of header are kept
+        void addTrade(Line header) {
+            segment.addTrade(header);
+        }
+
+        /**
+         * Write the file, force it to disk and move it to its final name. Returns its path.
+         */
+        Path finish() throws IOException {
+            ByteBuffer bytes = segment.encode();
+            try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (bytes.hasRemaining()) ch.write(bytes);
+                ch.force(true);
+            }
+            finished = true;
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read every line of an archive file. Throws IllegalStateException if the file is damaged.
+     */
+    void read(Path path, Consumer<Line> consumer) {
+        if (isSegment(path)) {
+            DistributionSegment.open(path).forEachLine(consumer);
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path), 1 << 16), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IllegalStateException(path + " is not a trade archive file");
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported trade archive format version " + version + " in " + path);
+            }
+            in.readLong();
+            long rows = 0;
+            while (in.readByte() == ROW) {
+                int flags = in.readByte();
+                long id = in.readLong();
+                long tradeId = in.readLong();
+                long customerId = in.readLong();
+                BigDecimal tradeAmount = readAmount(in);
+                TradeType type = TradeType.values()[in.readByte()];
+                Instant tradeCreatedAt = (flags & TRADE_CREATED_AT) != 0 ? fromMicros(in.readLong()) : null;
+                Long configVersion = (flags & SHARE_CONFIG_VERSION) != 0 ? in.readLong() : null;
+                String key = (flags & IDEMPOTENCY_KEY) != 0 ? in.readUTF() : null;
+                long participantId = in.readLong();
+                BigDecimal kept = readAmount(in);
+                BigDecimal passed = readAmount(in);
+                Instant createdAt = (flags & CREATED_AT) != 0 ? fromMicros(in.readLong()) : null;
+                Long jobId = (flags & ADJUSTMENT_JOB) != 0 ? in.readLong() : null;
+                consumer.accept(new Line(id, tradeId, customerId, tradeAmount, type, tradeCreatedAt, configVersion, key,
+                        participantId, kept, passed, createdAt, jobId));
+                rows++;
+            }
+            if (in.readLong() != rows || in.read() != -1) {
+                throw new IllegalStateException("Trade archive file " + path + " is damaged");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read trade archive file " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isSegment(Path path) {
+        try {
+            return DistributionSegment.isSegment(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read trade archive file " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static BigDecimal readAmount(DataInputStream in) throws IOException {
+        return in.readByte() == 0 ? BigDecimal.valueOf(in.readLong(), 2) : new BigDecimal(in.readUTF());
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+}
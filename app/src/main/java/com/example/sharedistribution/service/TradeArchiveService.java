@@ -0,0 +1,357 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.DatabaseCompactor;
+import com.example.sharedistribution.entity.RedistributionJob;
+import com.example.sharedistribution.entity.RedistributionStatus;
+import com.example.sharedistribution.entity.TradeArchiveFile;
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.repository.RedistributionJobRepository;
+import com.example.sharedistribution.repository.TradeArchiveFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the trades of old IST days out of trade / trade_distribution into TradeArchive files, oldest day
+ * first, so the live tables (and the database file) only hold the recent history.
+ *
+ * A day is archived in three steps:
+ *  1. its trades and lines are streamed into a new file, which is read back and checked against the
+ *     counts and sums of the live rows;
+ *  2. one transaction records the file in trade_archive_file, which switches readers of the day to the file,
+ *     and deletes the first chunk of trades;
+ *  3. the remaining trades are deleted a chunk per transaction, so the database never holds a whole day
+ *     of deletes in one undo log.
+ * Every deleting transaction adds the kept/passed of its lines to archived_balance, which keeps the balance
+ * ledger's totals. A run interrupted in step 3 finishes the day's deletes next time; one interrupted earlier
+ * starts the day over. daily_participant_rollup rows are kept, so summaries and subtree reports of archived
+ * days do not change. Compensating rows of redistribution jobs are archived with their trade's day; a day
+ * a pending or running job still covers waits for the job, and so does a day with acknowledged write-behind
+ * trades that are not in the database yet (WriteBehindTradeWriter.flushHorizon()), so no late rows reach a
+ * day after its file is written. A trade without lines is archived as a trade with
+ * none, so its lookup still answers an empty list.
+ *
+ * Deleted rows free pages inside the H2 file but do not shrink it, so a run that deleted anything ends by
+ * compacting the file for up to trade.archive.compact-ms.
+ */
+@Service
+public class TradeArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeArchiveService.class);
+
+    private static final String SELECT_DAY =
+            "select d.id, t.id, t.customer_id, t.amount, t.type, t.created_at, t.share_config_version, t.idempotency_key, "
+            + "d.participant_id, d.amount_kept, d.amount_passed, d.created_at, d.adjustment_job_id "
+            + "from trade t left join trade_distribution d on d.trade_id = t.id "
+            + "where t.created_at >= ? and t.created_at < ? order by t.created_at, t.id, d.id";
+
+    private static final String MERGE_BALANCE =
+            "merge into archived_balance a using ("
+            + "select d.participant_id, sum(d.amount_kept) kept, sum(d.amount_passed) passed "
+            + "from trade_distribution d join trade t on t.id = d.trade_id "
+            + "where d.trade_id between ? and ? and t.created_at >= ? and t.created_at < ? "
+            + "group by d.participant_id) s on a.participant_id = s.participant_id "
+            + "when matched then update set total_kept = a.total_kept + s.kept, total_passed = a.total_passed + s.passed "
+            + "when not matched then insert (participant_id, total_kept, total_passed) "
+            + "values (s.participant_id, s.kept, s.passed)";
+
+    private static final String DELETE_LINES =
+            "delete from trade_distribution where trade_id between ? and ? and trade_id in "
+            + "(select id from trade where id between ? and ? and created_at >= ? and created_at < ?)";
+
+    private static final String DELETE_TRADES =
+            "delete from trade where id between ? and ? and created_at >= ? and created_at < ?";
+
+    /**
+     * Outcome of one run; the database sizes are 0 when nothing was deleted.
+     */
+    public record Result(List<LocalDate> days, long trades, long lines,
+                         long dbBytesBefore, long dbBytesAfter, long elapsedMs) {}
+
+    // live counts and sums of one day
+    private record DayTotals(long trades, long minTradeId, long maxTradeId, long lines, long tradesWithLines,
+                             BigDecimal kept, BigDecimal passed) {}
+
+    private final TradeArchive archive;
+    private final TradeArchiveFileRepository fileRepo;
+    private final RedistributionJobRepository jobRepo;
+    private final DatabaseCompactor compactor;
+    private final WriteBehindTradeWriter writeBehind;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readOnlyTx;
+    private final int retentionDays;
+    private final int chunkSize;
+    private final int compactMs;
+
+    public TradeArchiveService(TradeArchive archive,
+                               TradeArchiveFileRepository fileRepo,
+                               RedistributionJobRepository jobRepo,
+                               DatabaseCompactor compactor,
+                               WriteBehindTradeWriter writeBehind,
+                               JdbcTemplate jdbc,
+                               PlatformTransactionManager txManager,
+                               @Value("${trade.archive.retention-days:90}") int retentionDays,
+                               @Value("${trade.archive.chunk-size:10000}") int chunkSize,
+                               @Value("${trade.archive.compact-ms:10000}") int compactMs) {
+        this.archive = archive;
+        this.fileRepo = fileRepo;
+        this.jobRepo = jobRepo;
+        this.compactor = compactor;
+        this.writeBehind = writeBehind;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.retentionDays = retentionDays;
+        this.chunkSize = chunkSize;
+        this.compactMs = compactMs;
+    }
+
+    // disabled unless trade.archive.cron is set
+    @Scheduled(cron = "${trade.archive.cron:-}", zone = "Asia/Kolkata")
+    public void archiveOnSchedule() {
+        try {
+            run(retentionDays);
+        } catch (RuntimeException e) {
+            log.error("Trade archive run failed", e);
+        }
+    }
+
+    /**
+     * Archive every IST day before today minus olderThanDays (trade.archive.retention-days when null).
+     * Throws IllegalArgumentException unless olderThanDays is at least 1.
+     */
+    public synchronized Result run(Integer olderThanDays) {
+        int keep = olderThanDays != null ? olderThanDays : retentionDays;
+        if (keep < 1) {
+            throw new IllegalArgumentException("olderThanDays must be at least 1");
+        }
+        long started = System.nanoTime();
+        LocalDate before = LocalDate.now(DailyRollupService.IST).minusDays(keep);
+        List<LocalDate> days = new ArrayList<>();
+        long trades = 0;
+        long lines = 0;
+        while (true) {
+            OffsetDateTime oldest = jdbc.queryForObject("select min(created_at) from trade", OffsetDateTime.class);
+            if (oldest == null) break;
+            LocalDate day = DailyRollupService.istDate(oldest.toInstant());
+            long[] moved;
+            if (archive.isArchived(day)) {
+                moved = finishDay(day);
+            } else if (day.isBefore(before)) {
+                moved = archiveDay(day);
+                if (moved == null) break;
+                days.add(day);
+            } else {
+                break;
+            }
+            if (moved[0] == 0) {
+                throw new IllegalStateException("No trades of " + day + " were deleted");
+            }
+            trades += moved[0];
+            lines += moved[1];
+        }
+        DatabaseCompactor.Result sizes = trades > 0 ? compactor.compact(compactMs) : new DatabaseCompactor.Result(0, 0);
+        return new Result(days, trades, lines, sizes.bytesBefore(), sizes.bytesAfter(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // returns {trades, lines} deleted, or null if a redistribution job still needs the day
+    private long[] archiveDay(LocalDate day) {
+        Instant start = day.atStartOfDay(DailyRollupService.IST).toInstant();
+        Instant end = day.plusDays(1).atStartOfDay(DailyRollupService.IST).toInstant();
+        if (!archive.reserve(day, () -> noJobCovers(day, end) && flushed(day, end))) return null;
+
+        long t0 = System.nanoTime();
+        DayTotals live = totals(start, end);
+        Path file = write(day, start, end);
+        try {
+            verify(day, file, live);
+            TradeArchiveFile row = new TradeArchiveFile(day, file.getFileName().toString(), live.trades(), live.lines(),
+                    live.minTradeId(), live.maxTradeId(), Files.size(file), Instant.now());
+            long[] deleted = delete(day, start, end, live.minTradeId(), live.maxTradeId(), row);
+            log.info("Archived {}: {} trades, {} lines, {} bytes in {} ms", day, live.trades(), live.lines(),
+                    row.getSizeBytes(), (System.nanoTime() - t0) / 1_000_000);
+            return deleted;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            // the file is rewritten when the day is tried again; keep it only if readers may already use it
+            if (!archive.isArchived(day)) deleteQuietly(file);
+            throw e;
+        }
+    }
+
+    // deletes the live rows left on an archived day by an interrupted run
+    private long[] finishDay(LocalDate day) {
+        Instant start = day.atStartOfDay(DailyRollupService.IST).toInstant();
+        Instant end = day.plusDays(1).atStartOfDay(DailyRollupService.IST).toInstant();
+        TradeArchiveFile file = fileRepo.findById(day).orElse(null);
+        DayTotals live = totals(start, end);
+        if (file == null || live.minTradeId() < file.getMinTradeId() || live.maxTradeId() > file.getMaxTradeId()) {
+            throw new IllegalStateException("Live trades on archived day " + day + " are not in its archive file");
+        }
+        log.info("Finishing archive of {}: {} trades left", day, live.trades());
+        return delete(day, start, end, live.minTradeId(), live.maxTradeId(), null);
+    }
+
+    private boolean noJobCovers(LocalDate day, Instant end) {
+        for (RedistributionJob job : jobRepo.findByStatusInOrderByIdAsc(
+                List.of(RedistributionStatus.PENDING, RedistributionStatus.RUNNING))) {
+            if (job.getWindowFrom().isBefore(end)) {
+                log.info("Not archiving {} before redistribution job {} finishes", day, job.getId());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean flushed(LocalDate day, Instant end) {
+        Instant horizon = writeBehind.flushHorizon();
+        if (horizon != null && horizon.isBefore(end)) {
+            log.info("Not archiving {} before the write-behind trades from {} on are in the database", day, horizon);
+            return false;
+        }
+        return true;
+    }
+
+    private DayTotals totals(Instant start, Instant end) {
+        Map<String, Object> t = jdbc.queryForMap(
+                "select count(*) n, min(id) lo, max(id) hi from trade where created_at >= ? and created_at < ?",
+                utc(start), utc(end));
+        Map<String, Object> d = jdbc.queryForMap(
+                "select count(*) n, count(distinct d.trade_id) trades, coalesce(sum(d.amount_kept), 0) kept, "
+                        + "coalesce(sum(d.amount_passed), 0) passed "
+                        + "from trade_distribution d join trade t on t.id = d.trade_id "
+                        + "where t.created_at >= ? and t.created_at < ?",
+                utc(start), utc(end));
+        return new DayTotals(((Number) t.get("n")).longValue(),
+                t.get("lo") == null ? 0 : ((Number) t.get("lo")).longValue(),
+                t.get("hi") == null ? -1 : ((Number) t.get("hi")).longValue(),
+                ((Number) d.get("n")).longValue(), ((Number) d.get("trades")).longValue(),
+                (BigDecimal) d.get("kept"), (BigDecimal) d.get("passed"));
+    }
+
+    // streams the day from a lazy cursor into its segment
+    private Path write(LocalDate day, Instant start, Instant end) {
+        return readOnlyTx.execute(status -> {
+            jdbc.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            try (TradeArchive.Writer writer = archive.create(day)) {
+                jdbc.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(SELECT_DAY);
+                    ps.setFetchSize(1000);
+                    ps.setObject(1, utc(start));
+                    ps.setObject(2, utc(end));
+                    return ps;
+                }, rs -> {
+                    TradeArchive.Line l = new TradeArchive.Line(rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                            rs.getBigDecimal(4), TradeType.valueOf(rs.getString(5)), instant(rs.getObject(6, OffsetDateTime.class)),
+                            rs.getObject(7, Long.class), rs.getString(8), rs.getLong(9),
+                            rs.getBigDecimal(10), rs.getBigDecimal(11), instant(rs.getObject(12, OffsetDateTime.class)),
+                            rs.getObject(13, Long.class));
+                    // a trade without lines (the left join's nulls) is archived as a trade with none
+                    if (rs.getObject(1) == null) {
+                        writer.addTrade(l);
+                    } else {
+                        writer.add(l);
+                    }
+                });
+                return writer.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                jdbc.execute("SET LAZY_QUERY_EXECUTION FALSE");
+            }
+        });
+    }
+
+    // the file as read back from disk must hold exactly the live rows
+    private void verify(LocalDate day, Path file, DayTotals live) {
+        int trades = DistributionSegment.open(file).trades();
+        long[] counts = new long[2];
+        long[] lastTrade = {Long.MIN_VALUE};
+        BigDecimal[] sums = {BigDecimal.ZERO, BigDecimal.ZERO};
+        archive.read(file, l -> {
+            counts[0]++;
+            if (l.tradeId() != lastTrade[0]) {
+                counts[1]++;
+                lastTrade[0] = l.tradeId();
+            }
+            sums[0] = sums[0].add(l.amountKept());
+            sums[1] = sums[1].add(l.amountPassed());
+        });
+        if (counts[0] != live.lines() || counts[1] != live.tradesWithLines() || trades != live.trades()
+                || sums[0].compareTo(live.kept()) != 0 || sums[1].compareTo(live.passed()) != 0) {
+            throw new IllegalStateException("Archive file of " + day + " does not match the database: "
+                    + counts[0] + " lines / " + trades + " trades written, " + live.lines() + " / " + live.trades()
+                    + " expected");
+        }
+    }
+
+    // deletes the day's trades between lo and hi a chunk per transaction; the first one also records the file
+    private long[] delete(LocalDate day, Instant start, Instant end, long lo, long hi, TradeArchiveFile file) {
+        long trades = 0;
+        long lines = 0;
+        for (long chunk = lo; chunk <= hi; chunk += chunkSize) {
+            long from = chunk;
+            long to = Math.min(hi, from + chunkSize - 1);
+            boolean first = file != null && from == lo;
+            long[] n;
+            try {
+                n = tx.execute(status -> {
+                    if (first) {
+                        fileRepo.saveAndFlush(file);
+                        archive.archived(day);
+                    }
+                    jdbc.update(MERGE_BALANCE, from, to, utc(start), utc(end));
+                    long l = jdbc.update(DELETE_LINES, from, to, from, to, utc(start), utc(end));
+                    long t = jdbc.update(DELETE_TRADES, from, to, utc(start), utc(end));
+                    return new long[]{t, l};
+                });
+            } catch (RuntimeException e) {
+                // the file row did not commit: the day is still live
+                if (first) archive.load();
+                throw e;
+            }
+            trades += n[0];
+            lines += n[1];
+        }
+        return new long[]{trades, lines};
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static Instant instant(OffsetDateTime t) {
+        return t == null ? null : t.toInstant();
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+
+/**
+ * The participants of one trade in flow order (see DistributionPlan.flow): the customer first for LOSS,
+ * last for PROFIT. It decides who is below whom on that trade.
+ */
+public record TradeFlow(TradeType type, long[] participantIds) {
+}
@@ -0,0 +1,53 @@
+package com.example.sharedistribution.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out trade / trade_distribution ids outside of Hibernate, for rows inserted with JDBC.
+ * Uses the same pooled-lo scheme Hibernate is configured with (one sequence value reserves
+ * [value, value + 49]), so both can draw from the same sequences without overlapping.
+ */
+@Component
+public class TradeIdAllocator {
+
+    // must match allocationSize of the @SequenceGenerator on Trade / TradeDistribution
+    static final int BLOCK_SIZE = 50;
+
+    private final Block trades;
+    private final Block distributions;
+
+    public TradeIdAllocator(JdbcTemplate jdbc) {
+        this.trades = new Block(jdbc, "trade_seq");
+        this.distributions = new Block(jdbc, "trade_distribution_seq");
+    }
+
+    public long nextTradeId() {
+        return trades.next();
+    }
+
+    public long nextDistributionId() {
+        return distributions.next();
+    }
+
+    private static final class Block {
+        private final JdbcTemplate jdbc;
+        private final String sql;
+        private long next;
+        private long limit;
+
+        Block(JdbcTemplate jdbc, String sequence) {
+            this.jdbc = jdbc;
+            this.sql = "select next value for " + sequence;
+        }
+
+        synchronized long next() {
+            if (next == limit) {
+                Long lo = jdbc.queryForObject(sql, Long.class);
+                next = lo;
+                limit = lo + BLOCK_SIZE;
+            }
+            return next++;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.dto.TradeRequest;
+import com.example.sharedistribution.dto.TradeResponse;
+import com.example.sharedistribution.entity.TradeType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Recent Idempotency-Key values of POST /api/trades and the response of the trade each one created,
+ * bounded by trade.idempotency.max-entries and trade.idempotency.ttl-seconds.
+ *
+ * A key is registered before its trade runs, so concurrent requests with the same key wait for the first
+ * one and return its response instead of executing the trade again. A trade that fails releases its key:
+ * the waiting requests get the same error and a later retry runs the trade again.
+ * Keys that are no longer cached (evicted, or from before a restart) are found through the unique
+ * trade.idempotency_key column by TradeService, so the cache saves lookups but is not needed for correctness.
+ */
+@Component
+public class TradeIdempotencyCache {
+
+    // same as the idempotency_key column
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    // insertion order is age order, so eviction only ever looks at the head
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public TradeIdempotencyCache(@Value("${trade.idempotency.max-entries:10000}") int maxEntries,
+                                 @Value("${trade.idempotency.ttl-seconds:3600}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * Response of the trade created for key: the cached one, the one a concurrent request with the same key
+     * is producing, or else the result of trade, which runs at most once per key at a time.
+     * Throws IllegalArgumentException for an invalid key or request, or when key was used for a different trade.
+     */
+    public TradeResponse execute(String key, TradeRequest req, Supplier<TradeResponse> trade) {
+        checkKey(key);
+        BigDecimal amount = TradeService.validatedAmount(req);
+        Entry entry;
+        boolean first = false;
+        synchronized (entries) {
+            evict(System.nanoTime());
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(req.getCustomerId(), amount, req.getType(), System.nanoTime());
+                entries.put(key, entry);
+                first = true;
+            }
+        }
+        if (!first) {
+            checkSameTrade(key, req, entry.customerId, entry.amount, entry.type);
+            try {
+                return entry.response.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException r ? r : e;
+            }
+        }
+        try {
+            TradeResponse response = trade.get();
+            entry.response.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Throws IllegalArgumentException unless req asks for the same trade as the one stored for key. The
+     * request amount is compared as executeTrade would store it (TradeService.validatedAmount), so cached and
+     * stored keys behave the same.
+     */
+    static void checkSameTrade(String key, TradeRequest req, Long customerId, BigDecimal amount, TradeType type) {
+        boolean same = Objects.equals(req.getCustomerId(), customerId) && req.getType() == type
+                && amount != null && TradeService.validatedAmount(req).compareTo(amount) == 0;
+        if (!same) {
+            throw new IllegalArgumentException("Idempotency-Key " + key + " was already used for a different trade");
+        }
+    }
+
+    private static void checkKey(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    // drops expired entries and the oldest ones until there is room for one more; trades still running
+    // are never dropped
+    private void evict(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            if (now - e.createdAt <= ttlNanos && entries.size() < maxEntries) return;
+            if (e.response.isDone()) it.remove();
+        }
+    }
+
+    private static final class Entry {
+        final Long customerId;
+        final BigDecimal amount;
+        final TradeType type;
+        final long createdAt;
+        final CompletableFuture<TradeResponse> response = new CompletableFuture<>();
+
+        Entry(Long customerId, BigDecimal amount, TradeType type, long createdAt) {
+            this.customerId = customerId;
+            this.amount = amount;
+            this.type = type;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of executed trades, written through memory-mapped chunks of the file.
+ * It is the audit log of every trade and the recovery source for write-behind persistence.
+ *
+ * The journal is a sequence of segment files. Positions are global: a segment starting at position B (a chunk
+ * boundary) is trade.journal.path for B = 0 and path.B (zero-padded) otherwise, and holds positions from B on.
+ * Appends move to a new segment at the first chunk boundary past segment-bytes, after the current one is forced,
+ * so only the last segment can end in a torn write. Every segment is kept by default, so the journal stays the
+ * whole audit log and replay can start at position 0. With trade.journal.retention=archive or delete,
+ * releaseBefore() moves to trade.journal.archive-dir or deletes the segments that only hold records before the
+ * write-behind checkpoint (every record before it is in the database); start() then tells where the log begins.
+ *
+ * Segment layout: 16-byte header (magic "TJNL", format version byte, reserved), then records.
+ * Record layout, all fields fixed-width and big-endian:
+ *   int bodyLength, int crc32c(body),
+ *   body: long tradeId, long customerId, long amount (paise), long createdAt (epoch micros),
+ *         long shareConfigVersion, byte type, byte reserved, short lineCount, int keyLength,
+ *         then lineCount x (long distributionId, long participantId, long kept, long passed),
+ *         then keyLength bytes of UTF-8 idempotency key (keyLength 0: no key; journals written before
+ *         keys were added have 0 there).
+ * A record never spans two chunks; a bodyLength of -1 means "continue at the next chunk", 0 means end.
+ * A record that does not check out at the end of the last segment is a torn write and is dropped on open.
+ * Anywhere else (a sealed segment, or with records after it) it is damage: opening or reading the journal
+ * fails with IllegalStateException rather than silently dropping the records behind it.
+ *
+ * Appends are serialized; durability is batched: awaitDurable(position) forces everything appended so far,
+ * so concurrent callers share a single msync (group commit).
+ */
+@Component
+public class TradeJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeJournal.class);
+
+    static final int MAGIC = 0x544A4E4C; // "TJNL"
+    static final byte FORMAT_VERSION = 1;
+    static final int FILE_HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 8;
+    static final int TRADE_BYTES = 5 * 8 + 1 + 1 + 2 + 4;
+    static final int LINE_BYTES = 4 * 8;
+    private static final int NEXT_CHUNK = -1;
+
+    // what releaseBefore() does with segments behind the checkpoint
+    enum Retention { KEEP, ARCHIVE, DELETE }
+
+    private final Path path;
+    private final int chunkBytes;
+    private final long segmentBytes;
+    private final Retention retention;
+    private final Path archiveDir;
+    private final Object forceLock = new Object();
+    // readers hold the read lock so releaseBefore() never removes a segment under them
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    // first position -> file of every segment; the last one is appended to
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private volatile Segment active;
+    private volatile long appended;
+    private volatile long forced;
+
+    // the segment being appended to, with its mapped chunks
+    private record Segment(long base, FileChannel channel, List<MappedByteBuffer> chunks) {}
+
+    // header of the record at a position: bodyLength, and the record if it checks out
+    private record Slot(int length, TradeRecord record) {}
+
+    public TradeJournal(@Value("${trade.journal.path:./data/trade-journal.bin}") String path,
+                        @Value("${trade.journal.chunk-bytes:16777216}") int chunkBytes,
+                        @Value("${trade.journal.segment-bytes:268435456}") long segmentBytes,
+                        @Value("${trade.journal.retention:keep}") String retention,
+                        @Value("${trade.journal.archive-dir:./data/journal-archive}") String archiveDir) {
+        this.path = Path.of(path);
+        this.chunkBytes = chunkBytes;
+        // whole chunks, so every segment starts on a chunk boundary
+        this.segmentBytes = Math.max(1, (segmentBytes + chunkBytes - 1) / chunkBytes) * chunkBytes;
+        this.retention = switch (retention.trim().toLowerCase()) {
+            case "keep" -> Retention.KEEP;
+            case "archive" -> Retention.ARCHIVE;
+            case "delete" -> Retention.DELETE;
+            default -> throw new IllegalArgumentException("trade.journal.retention must be 'keep', 'archive' or 'delete'");
+        };
+        this.archiveDir = Path.of(archiveDir);
+    }
+
+    private synchronized Segment open() throws IOException {
+        if (active == null) {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            segments.clear();
+            segments.putAll(listSegments());
+            if (segments.isEmpty()) segments.put(0L, path);
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            FileChannel ch = FileChannel.open(last.getValue(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long base = last.getKey();
+            long end;
+            try {
+                if (ch.size() == 0) {
+                    writeHeader(ch);
+                } else {
+                    checkHeader(ch, last.getValue());
+                }
+                // only the last segment is scanned: drop a torn last record (and the zero padding of the last
+                // chunk) before anything is mapped
+                end = scan(base, ch, last.getValue(), base + FILE_HEADER_BYTES, base + ch.size(), null, true);
+                ch.truncate(end - base);
+            } catch (IOException | RuntimeException e) {
+                ch.close();
+                throw e;
+            }
+            appended = end;
+            forced = end;
+            active = new Segment(base, ch, new CopyOnWriteArrayList<>());
+        }
+        return active;
+    }
+
+    private TreeMap<Long, Path> listSegments() throws IOException {
+        TreeMap<Long, Path> found = new TreeMap<>();
+        if (Files.exists(path)) found.put(0L, path);
+        Path dir = path.toAbsolutePath().getParent();
+        String name = path.getFileName().toString();
+        if (!Files.isDirectory(dir)) return found;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, name + ".*")) {
+            for (Path f : files) {
+                String suffix = f.getFileName().toString().substring(name.length() + 1);
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) found.put(Long.parseLong(suffix), f);
+            }
+        }
+        return found;
+    }
+
+    private Path segmentPath(long base) {
+        return base == 0 ? path : path.resolveSibling(path.getFileName() + "." + String.format("%019d", base));
+    }
+
+    private static void writeHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).put(FORMAT_VERSION);
+        header.clear();
+        ch.write(header, 0);
+        ch.force(true);
+    }
+
+    private static void checkHeader(FileChannel ch, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        ch.read(header, 0);
+        header.flip();
+        if (header.remaining() < 5 || header.getInt() != MAGIC) {
+            throw new IllegalStateException(file + " is not a trade journal");
+        }
+        byte version = header.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported trade journal format version " + version + " in " + file);
+        }
+    }
+
+    public boolean exists() {
+        try {
+            return !listSegments().isEmpty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Trade journal open failed", e);
+        }
+    }
+
+    /**
+     * Append a record and return the journal position right after it. Not durable until awaitDurable.
+     */
+    public synchronized long append(TradeRecord r) {
+        byte[] key = r.idempotencyKey() == null ? new byte[0] : r.idempotencyKey().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = TRADE_BYTES + r.lineCount() * LINE_BYTES + key.length;
+        int size = RECORD_HEADER_BYTES + bodyLength;
+        if (size > chunkBytes - FILE_HEADER_BYTES) {
+            throw new IllegalArgumentException("Trade " + r.tradeId() + " has too many lines for the journal");
+        }
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        body.putLong(r.tradeId());
+        body.putLong(r.customerId());
+        body.putLong(r.amountMinor());
+        body.putLong(toMicros(r.createdAt()));
+        body.putLong(r.shareConfigVersion());
+        body.put((byte) r.type().ordinal());
+        body.put((byte) 0);
+        body.putShort((short) r.lineCount());
+        body.putInt(key.length);
+        for (int i = 0; i < r.lineCount(); i++) {
+            body.putLong(r.distributionIds()[i]);
+            body.putLong(r.participantIds()[i]);
+            body.putLong(r.keptMinor()[i]);
+            body.putLong(r.passedMinor()[i]);
+        }
+        body.put(key);
+        CRC32C crc = new CRC32C();
+        crc.update(body.array());
+
+        try {
+            Segment segment = open();
+            long pos = appended;
+            int room = chunkBytes - offset(pos);
+            if (room < size) {
+                if (room >= 4) chunk(segment, pos).putInt(offset(pos), NEXT_CHUNK);
+                pos += room;
+            }
+            if (offset(pos) == 0 && pos - segment.base() >= segmentBytes) {
+                segment = rotate(pos);
+                pos += FILE_HEADER_BYTES;
+            }
+            MappedByteBuffer m = chunk(segment, pos);
+            int off = offset(pos);
+            m.putInt(off + 4, (int) crc.getValue());
+            m.put(off + RECORD_HEADER_BYTES, body.array());
+            m.putInt(off, bodyLength);
+            appended = pos + size;
+            return appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Trade journal append failed", e);
+        }
+    }
+
+    // seals the current segment (forced to disk up to base) and starts a new one at base
+    private Segment rotate(long base) throws IOException {
+        synchronized (forceLock) {
+            Segment old = active;
+            force(old, forced, base);
+            Path file = segmentPath(base);
+            FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            writeHeader(ch);
+            Segment segment = new Segment(base, ch, new CopyOnWriteArrayList<>());
+            segments.put(base, file);
+            active = segment;
+            appended = base + FILE_HEADER_BYTES;
+            forced = appended;
+            old.channel().close();
+            return segment;
+        }
+    }
+
+    /**
+     * Block until everything up to position is on disk.
+     */
+    public void awaitDurable(long position) {
+        if (forced >= position) return;
+        synchronized (forceLock) {
+            if (forced >= position) return;
+            long target = appended;
+            force(active, forced, target);
+            forced = target;
+        }
+    }
+
+    // forces the chunks of segment between two positions; only those touched since the last force
+    private void force(Segment segment, long from, long to) {
+        long base = segment.base();
+        from = Math.max(from, base);
+        for (long c = (from - base) / chunkBytes; base + c * chunkBytes < to; c++) {
+            long chunkStart = base + c * chunkBytes;
+            int start = (int) Math.max(0, from - chunkStart);
+            int end = (int) Math.min(chunkBytes, to - chunkStart);
+            if (end > start && c < segment.chunks().size()) segment.chunks().get((int) c).force(start, end - start);
+        }
+    }
+
+    // a periodic force bounds how much of the synchronously persisted trades can be missing after a power loss
+    @Scheduled(fixedDelayString = "${trade.journal.force-interval-ms:1000}")
+    public void forceAppended() {
+        if (forced < appended) awaitDurable(appended);
+    }
+
+    /**
+     * Read every complete record starting at position; the consumer also gets the position after the record.
+     * Returns the position after the last complete record. Positions before the first kept segment start
+     * at that segment. Throws IllegalStateException if a segment is damaged.
+     */
+    public long read(long position, ObjLongConsumer<TradeRecord> consumer) {
+        segmentLock.readLock().lock();
+        try {
+            open();
+            // records appended after this are not read: their bytes may still be changing
+            long limit = appended;
+            long end = Math.max(position, segments.firstKey() + FILE_HEADER_BYTES);
+            for (Map.Entry<Long, Path> e : segments.headMap(limit, true).entrySet()) {
+                long base = e.getKey();
+                Long next = segments.higherKey(base);
+                boolean last = next == null || next > limit;
+                if (!last && next <= position) continue;
+                // a channel of its own: positional reads see the same page cache as the mapped chunks
+                try (FileChannel ch = FileChannel.open(e.getValue(), StandardOpenOption.READ)) {
+                    checkHeader(ch, e.getValue());
+                    long size = last ? Math.min(base + ch.size(), limit) : base + ch.size();
+                    end = scan(base, ch, e.getValue(), Math.max(position, base + FILE_HEADER_BYTES), size, consumer, last);
+                }
+            }
+            return end;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Trade journal read failed", e);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Position after the last record.
+     */
+    public long end() {
+        try {
+            open();
+            return appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Trade journal open failed", e);
+        }
+    }
+
+    /**
+     * Position where the journal begins: 0 unless segments were archived or deleted by releaseBefore().
+     */
+    public long start() {
+        try {
+            open();
+            return segments.firstKey();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Trade journal open failed", e);
+        }
+    }
+
+    /**
+     * Apply trade.journal.retention to the segments that only hold records before position; with the default
+     * (keep) this does nothing. The segment being appended to is always kept. Callers pass the write-behind
+     * checkpoint, up to which every record is in the database. Skipped while a read is in progress; the next
+     * call catches up.
+     */
+    public void releaseBefore(long position) {
+        if (retention == Retention.KEEP || !segmentLock.writeLock().tryLock()) return;
+        try {
+            Map.Entry<Long, Path> first;
+            while ((first = segments.firstEntry()) != null) {
+                Long next = segments.higherKey(first.getKey());
+                if (next == null || next > position) break;
+                if (retention == Retention.ARCHIVE) {
+                    Files.createDirectories(archiveDir);
+                    Path to = archiveDir.resolve(segmentPath(first.getKey()).getFileName());
+                    Files.move(first.getValue(), to, StandardCopyOption.REPLACE_EXISTING);
+                    log.info("Archived trade journal segment {} to {}: every record in it is in the database", first.getValue(), to);
+                } else {
+                    Files.deleteIfExists(first.getValue());
+                    log.info("Deleted trade journal segment {}: every record in it is in the database", first.getValue());
+                }
+                segments.remove(first.getKey());
+            }
+        } catch (IOException e) {
+            log.warn("Could not release a trade journal segment: {}", e.getMessage());
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    // reads records of one segment from position up to size (both global positions)
+    private long scan(long base, FileChannel ch, Path file, long position, long size,
+                      ObjLongConsumer<TradeRecord> consumer, boolean last) throws IOException {
+        while (position < size) {
+            int room = chunkBytes - offset(position);
+            if (room < RECORD_HEADER_BYTES) {
+                position += room;
+                continue;
+            }
+            Slot slot = slot(ch, base, position, size);
+            if (slot.length() == NEXT_CHUNK) {
+                position += room;
+                continue;
+            }
+            if (slot.record() == null) {
+                // zeros are the end of the segment; a record that does not check out can only be the torn last
+                // write of the last segment
+                boolean torn = slot.length() != 0;
+                if ((torn && !last) || recordFollows(base, ch, position, slot.length(), size)) {
+                    throw new IllegalStateException("Trade journal " + file + " is damaged at position " + position
+                            + "; the records after it would be lost, move the file aside to start without them");
+                }
+                break;
+            }
+            position += RECORD_HEADER_BYTES + slot.length();
+            if (consumer != null) consumer.accept(slot.record(), position);
+        }
+        return position;
+    }
+
+    // whether a valid record follows a bad one at position: right after it, or at a later chunk start
+    private boolean recordFollows(long base, FileChannel ch, long position, int length, long size) throws IOException {
+        int room = chunkBytes - offset(position);
+        if (length >= TRADE_BYTES && length <= room - RECORD_HEADER_BYTES) {
+            long after = position + RECORD_HEADER_BYTES + length;
+            if (chunkBytes - offset(after) >= RECORD_HEADER_BYTES && slot(ch, base, after, size).record() != null) {
+                return true;
+            }
+        }
+        for (long c = position + room; c < size; c += chunkBytes) {
+            if (slot(ch, base, c, size).record() != null) return true;
+        }
+        return false;
+    }
+
+    private Slot slot(FileChannel ch, long base, long position, long size) throws IOException {
+        int room = chunkBytes - offset(position);
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        if (position + RECORD_HEADER_BYTES > size || !readFully(ch, head, position - base)) return new Slot(0, null);
+        head.flip();
+        int length = head.getInt();
+        int checksum = head.getInt();
+        if (length == NEXT_CHUNK || length < TRADE_BYTES || length > room - RECORD_HEADER_BYTES
+                || position + RECORD_HEADER_BYTES + length > size) {
+            return new Slot(length, null);
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (!readFully(ch, body, position - base + RECORD_HEADER_BYTES)) return new Slot(length, null);
+        CRC32C crc = new CRC32C();
+        crc.update(body.array());
+        if ((int) crc.getValue() != checksum) return new Slot(length, null);
+        body.flip();
+        return new Slot(length, decode(body));
+    }
+
+    private static boolean readFully(FileChannel ch, ByteBuffer buf, long offset) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, offset + buf.position()) < 0) return false;
+        }
+        return true;
+    }
+
+    private static TradeRecord decode(ByteBuffer b) {
+        long tradeId = b.getLong();
+        long customerId = b.getLong();
+        long amount = b.getLong();
+        Instant createdAt = fromMicros(b.getLong());
+        long version = b.getLong();
+        TradeType type = TradeType.values()[b.get()];
+        b.get();
+        int n = Short.toUnsignedInt(b.getShort());
+        int keyLength = b.getInt();
+        if (keyLength < 0 || b.remaining() != n * LINE_BYTES + keyLength) return null;
+        long[] distIds = new long[n], pids = new long[n], kept = new long[n], passed = new long[n];
+        for (int i = 0; i < n; i++) {
+            distIds[i] = b.getLong();
+            pids[i] = b.getLong();
+            kept[i] = b.getLong();
+            passed[i] = b.getLong();
+        }
+        String key = null;
+        if (keyLength > 0) {
+            byte[] bytes = new byte[keyLength];
+            b.get(bytes);
+            key = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new TradeRecord(tradeId, customerId, type, amount, createdAt, version, key, distIds, pids, kept, passed);
+    }
+
+    private int offset(long position) {
+        return (int) (position % chunkBytes);
+    }
+
+    // maps the segment's chunks up to the one holding position; mapping past the end grows the file with zeros
+    private MappedByteBuffer chunk(Segment segment, long position) throws IOException {
+        int index = (int) ((position - segment.base()) / chunkBytes);
+        List<MappedByteBuffer> chunks = segment.chunks();
+        while (chunks.size() <= index) {
+            chunks.add(segment.channel().map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * chunkBytes, chunkBytes));
+        }
+        return chunks.get(index);
+    }
+
+    private static long toMicros(Instant t) {
+        return t.getEpochSecond() * 1_000_000L + t.getNano() / 1_000;
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            awaitDurable(appended);
+            active.channel().close();
+            active = null;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.SqlStatementCounter;
+import com.example.sharedistribution.exception.TradeBackpressureException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the trade and report hot paths, exported through /actuator/prometheus:
+ *   trade.execute{mode,outcome}          whole executeTrade call; outcome is success, rejected or error
+ *   trade.execute.phase{mode,phase}      plan, compute, insert, commit, journal (sync) / enqueue (write-behind)
+ *                                        enqueue, plan, compute, commit, journal (reactive)
+ *   trade.chain.depth                    participants per executed trade
+ *   trade.sql.statements{mode}           JDBC statements the request thread prepared per trade (not reactive)
+ *   trade.rejected{reason}               trades refused before anything was persisted
+ *   trade.write_behind.retries           failed write-behind batch attempts that were retried
+ *   trade.write_behind.dead_letters      write-behind trades moved to trade_dead_letter
+ *   report.daily_summary{source}         whole dailySummary call; source is rollup or scan
+ *   report.daily_summary.phase{phase}    lookup, query, assemble
+ * Meters are created up front and reused, so recording is a clock read and an atomic add.
+ * Connection pool wait time is hikaricp.connections.acquire, registered by Spring Boot.
+ */
+@Component
+public class TradeMetrics {
+
+    public enum Mode { SYNC, WRITE_BEHIND, REACTIVE }
+
+    public enum Phase { PLAN, COMPUTE, INSERT, COMMIT, JOURNAL, ENQUEUE }
+
+    public enum ReportPhase { LOOKUP, QUERY, ASSEMBLE }
+
+    private final MeterRegistry registry;
+    private final Map<Mode, Map<Phase, Timer>> phaseTimers = new EnumMap<>(Mode.class);
+    private final Map<Mode, Timer> succeeded = new EnumMap<>(Mode.class);
+    private final Map<Mode, Timer> refused = new EnumMap<>(Mode.class);
+    private final Map<Mode, Timer> failed = new EnumMap<>(Mode.class);
+    private final Map<Mode, DistributionSummary> statements = new EnumMap<>(Mode.class);
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+    private final Map<ReportPhase, Timer> reportPhases = new EnumMap<>(ReportPhase.class);
+    private final Timer reportFromRollups;
+    private final Timer reportFromScan;
+    private final DistributionSummary chainDepth;
+    private final Counter writeBehindRetries;
+    private final Counter deadLetters;
+
+    public TradeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Mode mode : Mode.values()) {
+            String m = tag(mode);
+            Map<Phase, Timer> timers = new EnumMap<>(Phase.class);
+            for (Phase phase : Phase.values()) {
+                timers.put(phase, Timer.builder("trade.execute.phase")
+                        .description("Time spent in one phase of executeTrade")
+                        .tags("mode", m, "phase", tag(phase))
+                        .register(registry));
+            }
+            phaseTimers.put(mode, timers);
+            succeeded.put(mode, executeTimer(m, "success"));
+            refused.put(mode, executeTimer(m, "rejected"));
+            failed.put(mode, executeTimer(m, "error"));
+            statements.put(mode, DistributionSummary.builder("trade.sql.statements")
+                    .description("JDBC statements prepared by the request thread per executed trade")
+                    .tags("mode", m)
+                    .serviceLevelObjectives(1, 2, 3, 4, 6, 8, 12, 16, 24, 32)
+                    .register(registry));
+        }
+        for (ReportPhase phase : ReportPhase.values()) {
+            reportPhases.put(phase, Timer.builder("report.daily_summary.phase")
+                    .description("Time spent in one phase of dailySummary")
+                    .tags("phase", phase.name().toLowerCase())
+                    .register(registry));
+        }
+        this.reportFromRollups = reportTimer("rollup");
+        this.reportFromScan = reportTimer("scan");
+        this.chainDepth = DistributionSummary.builder("trade.chain.depth")
+                .description("Participants in the distribution chain of an executed trade")
+                .serviceLevelObjectives(1, 2, 3, 4, 5, 6, 8, 12, 16)
+                .register(registry);
+        this.writeBehindRetries = Counter.builder("trade.write_behind.retries")
+                .description("Failed write-behind batch attempts that were retried")
+                .register(registry);
+        this.deadLetters = Counter.builder("trade.write_behind.dead_letters")
+                .description("Write-behind trades the database refused, moved to trade_dead_letter")
+                .register(registry);
+    }
+
+    private Timer executeTimer(String mode, String outcome) {
+        return Timer.builder("trade.execute")
+                .description("executeTrade calls")
+                .tags("mode", mode, "outcome", outcome)
+                .register(registry);
+    }
+
+    private Timer reportTimer(String source) {
+        return Timer.builder("report.daily_summary")
+                .description("dailySummary calls")
+                .tags("source", source)
+                .register(registry);
+    }
+
+    private static String tag(Enum<?> e) {
+        return e.name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * Start timing one executeTrade call on the current thread.
+     */
+    public TradeTrace startTrade(Mode mode) {
+        return new TradeTrace(mode);
+    }
+
+    /**
+     * Count a trade refused before anything was persisted, by the reason in its exception.
+     */
+    public void rejected(RuntimeException e) {
+        rejected.computeIfAbsent(rejectionReason(e), reason -> Counter.builder("trade.rejected")
+                .description("Trades refused before anything was persisted")
+                .tag("reason", reason)
+                .register(registry)).increment();
+    }
+
+    // the trade path reports these as IllegalArgumentException / IllegalStateException with fixed messages
+    // (HierarchyGraphService.chainOf, DistributionPlanService); anything else is a bad request
+    static String rejectionReason(RuntimeException e) {
+        if (e instanceof TradeBackpressureException) return "backpressure";
+        String message = e.getMessage() == null ? "" : e.getMessage();
+        if (message.startsWith("Customer not found")) return "customer-not-found";
+        if (message.startsWith("ShareConfig missing")) return "missing-share-config";
+        if (message.startsWith("Multiple parents")) return "multiple-parents";
+        if (message.startsWith("Cycle in hierarchy")) return "cycle";
+        return e instanceof IllegalArgumentException ? "invalid-request" : "other";
+    }
+
+    public void writeBehindRetried() {
+        writeBehindRetries.increment();
+    }
+
+    public void deadLettered() {
+        deadLetters.increment();
+    }
+
+    public ReportTrace startReport() {
+        return new ReportTrace();
+    }
+
+    /**
+     * Phase timings of one executeTrade call: each phase() call records the time since the previous mark.
+     */
+    public class TradeTrace {
+        private final Mode mode;
+        private final long start;
+        private final long statementsAtStart;
+        private final Thread thread;
+        private long mark;
+
+        private TradeTrace(Mode mode) {
+            this.mode = mode;
+            this.start = System.nanoTime();
+            this.mark = start;
+            this.statementsAtStart = SqlStatementCounter.current();
+            this.thread = Thread.currentThread();
+        }
+
+        public void phase(Phase phase) {
+            long now = System.nanoTime();
+            phaseTimers.get(mode).get(phase).record(now - mark, TimeUnit.NANOSECONDS);
+            mark = now;
+        }
+
+        public void succeeded(int depth) {
+            succeeded.get(mode).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            chainDepth.record(depth);
+            // the counter is per thread; a reactive trade finishes on the writer thread
+            if (Thread.currentThread() == thread) {
+                statements.get(mode).record(SqlStatementCounter.current() - statementsAtStart);
+            }
+        }
+
+        // validation, hierarchy and backpressure errors are rejections; anything else (database errors) is an error
+        public void failed(RuntimeException e) {
+            boolean rejection = e instanceof IllegalArgumentException || e instanceof IllegalStateException
+                    || e instanceof TradeBackpressureException;
+            (rejection ? refused : failed).get(mode).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (rejection) rejected(e);
+        }
+    }
+
+    /**
+     * Phase timings of one dailySummary call.
+     */
+    public class ReportTrace {
+        private final long start = System.nanoTime();
+        private long mark = start;
+
+        public void phase(ReportPhase phase) {
+            long now = System.nanoTime();
+            reportPhases.get(phase).record(now - mark, TimeUnit.NANOSECONDS);
+            mark = now;
+        }
+
+        public void finished(boolean fromRollups) {
+            (fromRollups ? reportFromRollups : reportFromScan).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
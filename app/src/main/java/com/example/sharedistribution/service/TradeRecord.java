@@ -0,0 +1,28 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+
+import java.time.Instant;
+
+/**
+ * A fully computed trade with ids already assigned, in fixed-point form (amounts in paise).
+ * Arrays are indexed by flow position, like DistributionPlan.flow().
+ * This is what the write-behind path journals and later inserts.
+ * idempotencyKey is the Idempotency-Key of the request, or null.
+ */
+public record TradeRecord(long tradeId,
+                          long customerId,
+                          TradeType type,
+                          long amountMinor,
+                          Instant createdAt,
+                          long shareConfigVersion,
+                          String idempotencyKey,
+                          long[] distributionIds,
+                          long[] participantIds,
+                          long[] keptMinor,
+                          long[] passedMinor) {
+
+    public int lineCount() {
+        return participantIds.length;
+    }
+}
@@ -0,0 +1,472 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.dto.BatchTradeResult;
+import com.example.sharedistribution.dto.DistributionLine;
+import com.example.sharedistribution.dto.TradeRequest;
+import com.example.sharedistribution.dto.TradeResponse;
+import com.example.sharedistribution.entity.*;
+import com.example.sharedistribution.repository.*;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+
+@Service
+public class TradeService {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeService.class);
+
+    private final ParticipantRepository participantRepo;
+    private final TradeRepository tradeRepo;
+    private final TradeDistributionRepository distributionRepo;
+    private final HierarchyGraphService hierarchyGraph;
+    private final DistributionPlanService plans;
+    private final DailyRollupService dailyRollups;
+    private final DailyParticipantRollupRepository rollupRepo;
+    private final ParticipantBalanceLedger balanceLedger;
+    private final TradeIdAllocator idAllocator;
+    private final TradeJournal journal;
+    private final WriteBehindTradeWriter writeBehind;
+    private final TradeMetrics metrics;
+    private final TradeIdempotencyCache idempotency;
+    private final TradeArchive archive;
+    private final TransactionTemplate txTemplate;
+    private final EntityManager entityManager;
+
+    public TradeService(ParticipantRepository participantRepo,
+                        TradeRepository tradeRepo,
+                        TradeDistributionRepository distributionRepo,
+                        HierarchyGraphService hierarchyGraph,
+                        DistributionPlanService plans,
+                        DailyRollupService dailyRollups,
+                        DailyParticipantRollupRepository rollupRepo,
+                        ParticipantBalanceLedger balanceLedger,
+                        TradeIdAllocator idAllocator,
+                        TradeJournal journal,
+                        WriteBehindTradeWriter writeBehind,
+                        TradeMetrics metrics,
+                        TradeIdempotencyCache idempotency,
+                        TradeArchive archive,
+                        PlatformTransactionManager txManager,
+                        EntityManager entityManager) {
+        this.participantRepo = participantRepo;
+        this.tradeRepo = tradeRepo;
+        this.distributionRepo = distributionRepo;
+        this.hierarchyGraph = hierarchyGraph;
+        this.plans = plans;
+        this.dailyRollups = dailyRollups;
+        this.rollupRepo = rollupRepo;
+        this.balanceLedger = balanceLedger;
+        this.idAllocator = idAllocator;
+        this.journal = journal;
+        this.writeBehind = writeBehind;
+        this.metrics = metrics;
+        this.idempotency = idempotency;
+        this.archive = archive;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.entityManager = entityManager;
+    }
+
+    // scale and rounding used for money calculations
+    private static final int SCALE = 2;
+    private static final RoundingMode RM = RoundingMode.HALF_UP;
+    // every accepted amount fits TradeRecord's long paise (journal, write-behind) and the fixed-point path, and the
+    // rollup's subtree sums of a trade stay within their decimal(19,2) columns
+    static final BigDecimal MAX_AMOUNT = BigDecimal.valueOf(DistributionCalculator.MAX_FIXED_POINT_MINOR, SCALE);
+
+    /**
+     * Execute one trade. With trade.persistence.mode=write-behind the trade is journaled and acknowledged
+     * before it reaches the database (see WriteBehindTradeWriter).
+     */
+    public TradeResponse executeTrade(TradeRequest req) {
+        return execute(req, null);
+    }
+
+    /**
+     * Execute a trade at most once per Idempotency-Key: a retry with the same key returns the response of
+     * the trade the key created, from TradeIdempotencyCache or else from the trade stored with the key.
+     * Reusing a key for a different trade is an IllegalArgumentException.
+     */
+    public TradeResponse executeTrade(TradeRequest req, String idempotencyKey) {
+        if (idempotencyKey == null) return executeTrade(req);
+        try {
+            // the key is matched on the amount as it will be stored
+            validatedAmount(req);
+        } catch (IllegalArgumentException e) {
+            metrics.rejected(e);
+            throw e;
+        }
+        return idempotency.execute(idempotencyKey, req, () -> {
+            TradeResponse stored = storedTrade(idempotencyKey, req);
+            if (stored != null) return stored;
+            try {
+                return execute(req, idempotencyKey);
+            } catch (RuntimeException e) {
+                // ux_trade_idempotency_key: a write-behind trade with this key reached the database after the lookup
+                stored = storedTrade(idempotencyKey, req);
+                if (stored == null) throw e;
+                return stored;
+            }
+        });
+    }
+
+    // response of the trade stored with this Idempotency-Key, or null
+    TradeResponse storedTrade(String idempotencyKey, TradeRequest req) {
+        Trade trade = tradeRepo.findByIdempotencyKey(idempotencyKey).orElse(null);
+        if (trade == null) return null;
+        TradeIdempotencyCache.checkSameTrade(idempotencyKey, req, trade.getCustomer().getId(), trade.getAmount(), trade.getType());
+        return new TradeResponse(trade.getId(), trade.getAmount(), trade.getType(),
+                distributionRepo.findLinesByTradeId(trade.getId()));
+    }
+
+    private TradeResponse execute(TradeRequest req, String idempotencyKey) {
+        BigDecimal amount;
+        try {
+            amount = validatedAmount(req);
+        } catch (IllegalArgumentException e) {
+            metrics.rejected(e);
+            throw e;
+        }
+        TradeMetrics.Mode mode = writeBehind.isEnabled() ? TradeMetrics.Mode.WRITE_BEHIND : TradeMetrics.Mode.SYNC;
+        TradeMetrics.TradeTrace trace = metrics.startTrade(mode);
+        try {
+            TradeResponse response = mode == TradeMetrics.Mode.WRITE_BEHIND
+                    ? executeWriteBehind(req, amount, idempotencyKey, trace)
+                    : executeSync(req, amount, idempotencyKey, trace);
+            trace.succeeded(response.getDistributions().size());
+            return response;
+        } catch (RuntimeException e) {
+            trace.failed(e);
+            throw e;
+        }
+    }
+
+    // insert phase: transaction begin (connection checkout) through the flush; commit phase: the commit itself
+    private TradeResponse executeSync(TradeRequest req, BigDecimal amount, String idempotencyKey,
+                                      TradeMetrics.TradeTrace trace) {
+        DistributionPlan plan = plans.planFor(req.getCustomerId());
+        trace.phase(TradeMetrics.Phase.PLAN);
+        PreparedTrade prepared = prepareTrade(req, amount, plan);
+        prepared.trade.setIdempotencyKey(idempotencyKey);
+        trace.phase(TradeMetrics.Phase.COMPUTE);
+        TradeResponse response = txTemplate.execute(status -> {
+            tradeRepo.save(prepared.trade);
+            distributionRepo.saveAll(prepared.distributions);
+            dailyRollups.record(prepared.distributions);
+            balanceLedger.recordAfterCommit(prepared.distributions);
+            entityManager.flush();
+            trace.phase(TradeMetrics.Phase.INSERT);
+            return prepared.toResponse();
+        });
+        trace.phase(TradeMetrics.Phase.COMMIT);
+        journalCommitted(List.of(prepared));
+        trace.phase(TradeMetrics.Phase.JOURNAL);
+        return response;
+    }
+
+    // committed trades go to the audit journal too; the database is their source of truth, so a journal
+    // failure is logged rather than reported as a failed trade
+    private void journalCommitted(List<PreparedTrade> committed) {
+        try {
+            for (PreparedTrade p : committed) {
+                journal.append(p.toRecord());
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not journal {} committed trades", committed.size(), e);
+        }
+    }
+
+    // builds the TradeRecord straight from the cached plan: no entities, so the request never holds a pooled connection
+    private TradeResponse executeWriteBehind(TradeRequest req, BigDecimal amount, String idempotencyKey,
+                                             TradeMetrics.TradeTrace trace) {
+        DistributionPlan plan = plans.planFor(req.getCustomerId());
+        trace.phase(TradeMetrics.Phase.PLAN);
+        long[] flow = plan.flow(req.getType());
+        int n = flow.length;
+        long amountMinor = amount.unscaledValue().longValueExact();
+        long[] keptMinor = new long[n];
+        long[] passedMinor = new long[n];
+        distributeMinor(plan, req.getType(), amountMinor, keptMinor, passedMinor);
+
+        long[] distributionIds = new long[n];
+        for (int i = 0; i < n; i++) {
+            distributionIds[i] = idAllocator.nextDistributionId();
+        }
+        TradeRecord record = new TradeRecord(idAllocator.nextTradeId(), req.getCustomerId(), req.getType(), amountMinor,
+                Instant.now(), plan.getShareConfigVersion(), idempotencyKey, distributionIds, flow, keptMinor, passedMinor);
+        trace.phase(TradeMetrics.Phase.COMPUTE);
+        writeBehind.submit(record);
+        trace.phase(TradeMetrics.Phase.ENQUEUE);
+        return toResponse(record);
+    }
+
+    /**
+     * Kept/passed paise of every flow position of a fixed-point trade; the last participant passes nothing.
+     */
+    static void distributeMinor(DistributionPlan plan, TradeType type, long amountMinor, long[] keptMinor, long[] passedMinor) {
+        DistributionCalculator.distribute(amountMinor, plan.passBasisPoints(type), keptMinor, passedMinor);
+        passedMinor[passedMinor.length - 1] = 0;
+    }
+
+    /**
+     * The response executeTrade returns for a trade persisted from its TradeRecord.
+     */
+    TradeResponse toResponse(TradeRecord record) {
+        int n = record.lineCount();
+        List<DistributionLine> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long participantId = record.participantIds()[i];
+            lines.add(new DistributionLine(participantId, hierarchyGraph.nameOf(participantId),
+                    BigDecimal.valueOf(record.keptMinor()[i], SCALE),
+                    i == n - 1 ? BigDecimal.ZERO : BigDecimal.valueOf(record.passedMinor()[i], SCALE)));
+        }
+        return new TradeResponse(record.tradeId(), BigDecimal.valueOf(record.amountMinor(), SCALE), record.type(), lines);
+    }
+
+    /**
+     * Execute many trades, committing every chunkSize trades in their own transaction.
+     * A trade that fails validation is reported and skipped; a database error fails the trades of that chunk only.
+     */
+    public List<BatchTradeResult> executeBatch(List<TradeRequest> requests, int chunkSize) {
+        List<BatchTradeResult> results = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, requests.size());
+            results.addAll(executeChunk(requests, from, to));
+        }
+        return results;
+    }
+
+    private List<BatchTradeResult> executeChunk(List<TradeRequest> requests, int from, int to) {
+        List<BatchTradeResult> results = new ArrayList<>(to - from);
+        List<PreparedTrade> prepared = new ArrayList<>(to - from);
+        List<Integer> preparedIndexes = new ArrayList<>(to - from);
+
+        for (int i = from; i < to; i++) {
+            try {
+                prepared.add(prepareTrade(requests.get(i)));
+                preparedIndexes.add(i);
+                results.add(null); // filled in after commit
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                metrics.rejected(e);
+                results.add(BatchTradeResult.failed(i, e.getMessage()));
+            }
+        }
+        if (prepared.isEmpty()) return results;
+
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                List<TradeDistribution> distributions = new ArrayList<>();
+                List<Trade> trades = new ArrayList<>(prepared.size());
+                for (PreparedTrade p : prepared) {
+                    trades.add(p.trade);
+                    distributions.addAll(p.distributions);
+                }
+                // sequence ids + hibernate.jdbc.batch_size turn these into batched inserts
+                tradeRepo.saveAll(trades);
+                distributionRepo.saveAll(distributions);
+                dailyRollups.record(distributions);
+                balanceLedger.recordAfterCommit(distributions);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            journalCommitted(prepared);
+            for (int k = 0; k < prepared.size(); k++) {
+                int i = preparedIndexes.get(k);
+                results.set(i - from, BatchTradeResult.succeeded(i, prepared.get(k).trade.getId()));
+            }
+        } catch (RuntimeException e) {
+            for (int i : preparedIndexes) {
+                results.set(i - from, BatchTradeResult.failed(i, "Chunk rolled back: " + e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Preview a trade: the same lines executeTrade would produce, without persisting anything.
+     * Served from the customer's cached distribution plan, so it does not touch the database.
+     */
+    public TradeResponse quoteTrade(TradeRequest req) {
+        BigDecimal amount = validatedAmount(req);
+        DistributionPlan plan = plans.planFor(req.getCustomerId());
+        long[] flow = plan.flow(req.getType());
+        BigDecimal[] kept = new BigDecimal[flow.length];
+        BigDecimal[] passed = new BigDecimal[flow.length];
+        distribute(plan, req.getType(), amount, kept, passed);
+
+        List<DistributionLine> lines = new ArrayList<>(flow.length);
+        for (int i = 0; i < flow.length; i++) {
+            lines.add(new DistributionLine(flow[i], hierarchyGraph.nameOf(flow[i]), kept[i], passed[i]));
+        }
+        return new TradeResponse(null, amount, req.getType(), lines);
+    }
+
+    /**
+     * Validate the request and compute its distribution in memory. Nothing is persisted here.
+     */
+    private PreparedTrade prepareTrade(TradeRequest req) {
+        BigDecimal amount = validatedAmount(req);
+        // chain and percentages come from the cached plan (no queries)
+        return prepareTrade(req, amount, plans.planFor(req.getCustomerId()));
+    }
+
+    private PreparedTrade prepareTrade(TradeRequest req, BigDecimal amount, DistributionPlan plan) {
+        long[] flow = plan.flow(req.getType());
+        BigDecimal[] kept = new BigDecimal[flow.length];
+        BigDecimal[] passed = new BigDecimal[flow.length];
+        distribute(plan, req.getType(), amount, kept, passed);
+
+        // create trade record; participants are lazy references, nothing is loaded
+        Trade trade = new Trade(participantRepo.getReferenceById(req.getCustomerId()), amount, req.getType());
+        trade.setShareConfigVersion(plan.getShareConfigVersion());
+        PreparedTrade prepared = new PreparedTrade(trade, flow.length);
+        for (int i = 0; i < flow.length; i++) {
+            prepared.add(participantRepo.getReferenceById(flow[i]), kept[i], passed[i]);
+        }
+        return prepared;
+    }
+
+    static BigDecimal validatedAmount(TradeRequest req) {
+        if (req == null || req.getCustomerId() == null || req.getAmount() == null || req.getType() == null) {
+            throw new IllegalArgumentException("Invalid trade request");
+        }
+        BigDecimal amount = req.getAmount().setScale(SCALE, RM);
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be > 0");
+        }
+        if (amount.compareTo(MAX_AMOUNT) > 0) {
+            throw new IllegalArgumentException("Amount must be at most " + MAX_AMOUNT.toPlainString());
+        }
+        return amount;
+    }
+
+    /**
+     * Kept/passed amount of every participant in flow order (LOSS: customer first, PROFIT: owner first).
+     */
+    private static void distribute(DistributionPlan plan, TradeType type, BigDecimal amount,
+                                   BigDecimal[] kept, BigDecimal[] passed) {
+        DistributionCalculator.distribute(amount, plan.passBasisPoints(type), kept, passed);
+    }
+
+    // -- Reporting helpers
+
+    // one select for the lines; the existence check only runs when there are none (every saved trade has lines),
+    // and archived trades are read from their day's file after that
+    public List<DistributionLine> getTradeDistributions(Long tradeId) {
+        List<DistributionLine> lines = distributionRepo.findLinesByTradeId(tradeId);
+        if (lines.isEmpty() && !tradeRepo.existsById(tradeId)) {
+            List<TradeArchive.Line> archived = archive.findTrade(tradeId);
+            if (archived == null) throw new IllegalArgumentException("Trade not found");
+            lines = new ArrayList<>();
+            for (TradeArchive.Line l : archived) {
+                lines.add(new DistributionLine(l.participantId(), hierarchyGraph.nameOf(l.participantId()),
+                        l.amountKept(), l.amountPassed()));
+            }
+        }
+        return lines;
+    }
+    /**
+     * Per-participant totals for one IST day. Reads the incrementally maintained rollup rows, so the cost
+     * depends on the participants active that day and not on the size of the trade history. Days without
+     * rollup rows fall back to a grouped query over the indexed trade.created_at range, or to the day's
+     * archive file once it is archived.
+     */
+    public Map<Long, ParticipantSummary> dailySummary(LocalDate date) {
+        TradeMetrics.ReportTrace trace = metrics.startReport();
+        boolean fromRollups = rollupRepo.existsByReportDate(date);
+        trace.phase(TradeMetrics.ReportPhase.LOOKUP);
+        if (!fromRollups && archive.isArchived(date)) {
+            Map<Long, ParticipantSummary> map = archivedSummary(date);
+            trace.phase(TradeMetrics.ReportPhase.QUERY);
+            trace.phase(TradeMetrics.ReportPhase.ASSEMBLE);
+            trace.finished(false);
+            return map;
+        }
+        List<ParticipantTotals> rows = fromRollups
+                ? rollupRepo.findTotalsByDate(date)
+                : distributionRepo.sumByParticipantBetween(
+                        date.atStartOfDay(DailyRollupService.IST).toInstant(),
+                        date.plusDays(1).atStartOfDay(DailyRollupService.IST).toInstant());
+        trace.phase(TradeMetrics.ReportPhase.QUERY);
+
+        Map<Long, ParticipantSummary> map = new HashMap<>();
+        for (ParticipantTotals row : rows) {
+            ParticipantSummary s = new ParticipantSummary(row.getName());
+            s.totalKept = row.getTotalKept().setScale(SCALE, RM);
+            s.totalPassed = row.getTotalPassed().setScale(SCALE, RM);
+            map.put(row.getParticipantId(), s);
+        }
+        trace.phase(TradeMetrics.ReportPhase.ASSEMBLE);
+        trace.finished(fromRollups);
+        return map;
+    }
+
+    private Map<Long, ParticipantSummary> archivedSummary(LocalDate date) {
+        Map<Long, ParticipantSummary> map = new HashMap<>();
+        archive.scan(date, date, null, true).byParticipant().forEach((id, t) -> {
+            ParticipantSummary s = new ParticipantSummary(hierarchyGraph.nameOf(id));
+            s.totalKept = t.kept().setScale(SCALE, RM);
+            s.totalPassed = t.passed().setScale(SCALE, RM);
+            map.put(id, s);
+        });
+        return map;
+    }
+
+
+    // trade plus its distribution rows and response lines, computed before anything is saved
+    private class PreparedTrade {
+        final Trade trade;
+        final List<TradeDistribution> distributions;
+        final List<DistributionLine> lines;
+
+        PreparedTrade(Trade trade, int chainSize) {
+            this.trade = trade;
+            this.distributions = new ArrayList<>(chainSize);
+            this.lines = new ArrayList<>(chainSize);
+        }
+
+        void add(Participant p, BigDecimal kept, BigDecimal passed) {
+            distributions.add(new TradeDistribution(trade, p, kept, passed));
+            lines.add(new DistributionLine(p.getId(), hierarchyGraph.nameOf(p.getId()), kept, passed));
+        }
+
+        TradeResponse toResponse() {
+            return new TradeResponse(trade.getId(), trade.getAmount(), trade.getType(), lines);
+        }
+
+        // journal form of the trade; only valid after the ids have been assigned
+        TradeRecord toRecord() {
+            int n = distributions.size();
+            long[] ids = new long[n];
+            long[] participantIds = new long[n];
+            long[] keptMinor = new long[n];
+            long[] passedMinor = new long[n];
+            for (int i = 0; i < n; i++) {
+                TradeDistribution d = distributions.get(i);
+                ids[i] = d.getId();
+                participantIds[i] = d.getParticipant().getId();
+                keptMinor[i] = d.getAmountKept().movePointRight(SCALE).longValueExact();
+                passedMinor[i] = d.getAmountPassed().movePointRight(SCALE).longValueExact();
+            }
+            return new TradeRecord(trade.getId(), trade.getCustomer().getId(), trade.getType(),
+                    trade.getAmount().movePointRight(SCALE).longValueExact(), trade.getCreatedAt(),
+                    trade.getShareConfigVersion(), trade.getIdempotencyKey(), ids, participantIds, keptMinor, passedMinor);
+        }
+    }
+
+    public static class ParticipantSummary {
+        public final String name;
+        public BigDecimal totalKept = BigDecimal.ZERO.setScale(SCALE, RM);
+        public BigDecimal totalPassed = BigDecimal.ZERO.setScale(SCALE, RM);
+        public ParticipantSummary(String name) { this.name = name; }
+    }
+}
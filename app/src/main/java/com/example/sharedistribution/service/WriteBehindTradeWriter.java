@@ -0,0 +1,386 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.exception.TradeBackpressureException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional write-behind persistence for executeTrade (trade.persistence.mode=write-behind).
+ *
+ * The request thread computes the trade, appends it to the TradeJournal and returns once the journal is
+ * forced to disk. A single writer thread drains the bounded buffer and inserts up to max-batch trades per
+ * transaction (group commit), together with their rollups and the journal checkpoint.
+ * A full buffer makes submit() wait up to offer-timeout-ms and then reject the trade.
+ * A batch that fails is retried up to max-attempts times with exponential backoff; if it still fails it is
+ * split in halves until the records the database refuses are alone, and each of those is moved to
+ * trade_dead_letter (counted by trade.write_behind.dead_letters) so the trades behind it are not held up.
+ * On shutdown the buffer is drained; after a crash, records past the checkpoint are replayed at startup.
+ * The checkpoint is only this recovery cursor: the journal keeps the segments behind it (trade.journal.retention).
+ * Trades persisted synchronously are journaled too (after commit), so replay skips trades that already exist.
+ */
+@Component
+public class WriteBehindTradeWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindTradeWriter.class);
+
+    private static final String INSERT_TRADE =
+            "insert into trade (id, customer_id, amount, type, created_at, share_config_version, idempotency_key) "
+            + "values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_DISTRIBUTION =
+            "insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at) "
+            + "values (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_CHECKPOINT =
+            "merge into trade_journal_checkpoint (id, position, updated_at) key (id) values (1, ?, ?)";
+    private static final String INSERT_DEAD_LETTER =
+            "merge into trade_dead_letter (trade_id, record, error, failed_at) key (trade_id) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final TradeJournal journal;
+    private final DailyRollupService dailyRollups;
+    private final ParticipantBalanceLedger balanceLedger;
+    private final TradeArchive archive;
+    private final TradeMetrics metrics;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final int maxBatch;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long offerTimeoutMs;
+    private final Semaphore slots;
+    private final BlockingQueue<Pending> buffer;
+    private final Object appendLock = new Object();
+    // acknowledged trades not committed yet, oldest created_at first: the archive's flush horizon
+    private final NavigableSet<TradeRecord> unflushed = new ConcurrentSkipListSet<>(
+            Comparator.comparing(TradeRecord::createdAt).thenComparingLong(TradeRecord::tradeId));
+
+    private volatile boolean running;
+    private Thread writer;
+
+    // the EntityManagerFactory dependency makes sure the tables exist before recovery
+    public WriteBehindTradeWriter(JdbcTemplate jdbc,
+                                  PlatformTransactionManager txManager,
+                                  TradeJournal journal,
+                                  DailyRollupService dailyRollups,
+                                  ParticipantBalanceLedger balanceLedger,
+                                  TradeArchive archive,
+                                  TradeMetrics metrics,
+                                  ObjectMapper objectMapper,
+                                  EntityManagerFactory emf,
+                                  @Value("${trade.persistence.mode:sync}") String mode,
+                                  @Value("${trade.write-behind.buffer-size:65536}") int bufferSize,
+                                  @Value("${trade.write-behind.max-batch:1000}") int maxBatch,
+                                  @Value("${trade.write-behind.offer-timeout-ms:1000}") long offerTimeoutMs,
+                                  @Value("${trade.write-behind.max-attempts:5}") int maxAttempts,
+                                  @Value("${trade.write-behind.backoff-ms:200}") long backoffMs) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.journal = journal;
+        this.dailyRollups = dailyRollups;
+        this.balanceLedger = balanceLedger;
+        this.archive = archive;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.enabled = "write-behind".equalsIgnoreCase(mode.trim());
+        this.maxBatch = maxBatch;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+        this.slots = new Semaphore(bufferSize);
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        // a previous write-behind run may have left acknowledged trades that never reached the database
+        if (journal.exists()) recover();
+        if (enabled) {
+            running = true;
+            writer = new Thread(this::drainLoop, "trade-write-behind");
+            writer.start();
+        }
+    }
+
+    /**
+     * Journal the trade and return once it is durable; the database insert happens later on the writer thread.
+     */
+    public void submit(TradeRecord record) {
+        if (!running) throw new IllegalStateException("Write-behind writer is not running");
+        try {
+            if (!slots.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new TradeBackpressureException("Trade buffer is full, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TradeBackpressureException("Interrupted while waiting for buffer space");
+        }
+        long end;
+        try {
+            // under the archive's lock, so a day is either reserved for archiving before this trade counts
+            // towards the flush horizon, or the trade is refused
+            end = archive.beforeArchiving(record.createdAt(), () -> {
+                // journal order == buffer order, so the checkpoint only ever moves forward over committed records
+                synchronized (appendLock) {
+                    long e = journal.append(record);
+                    unflushed.add(record);
+                    buffer.add(new Pending(record, e));
+                    return e;
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        journal.awaitDurable(end);
+    }
+
+    /**
+     * created_at of the oldest acknowledged trade that is not in the database yet, or null if there is none.
+     * Rows can still arrive for any day that ends after it, so TradeArchiveService waits before archiving it.
+     */
+    public Instant flushHorizon() {
+        Iterator<TradeRecord> oldest = unflushed.iterator();
+        return oldest.hasNext() ? oldest.next().createdAt() : null;
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !buffer.isEmpty()) {
+            try {
+                Pending first = buffer.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                buffer.drainTo(batch, maxBatch - 1);
+                writeWithRetry(batch);
+                for (Pending p : batch) unflushed.remove(p.record);
+                slots.release(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeWithRetry(List<Pending> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(records(batch), journalEnd(batch));
+                return;
+            } catch (RuntimeException e) {
+                log.error("Write-behind batch of {} trades failed (attempt {} of {})", batch.size(), attempt, maxAttempts, e);
+                // the records are in the journal; if we are shutting down they are replayed on the next start
+                if (!running && attempt >= 3) return;
+                if (attempt >= maxAttempts) {
+                    isolate(batch, e);
+                    return;
+                }
+                metrics.writeBehindRetried();
+                Thread.sleep(backoff(attempt));
+            }
+        }
+    }
+
+    // splits a failing batch in halves, in journal order so the checkpoint only moves forward, until each
+    // record that still fails is alone
+    private void isolate(List<Pending> batch, RuntimeException failure) throws InterruptedException {
+        if (batch.size() == 1) {
+            deadLetter(batch.get(0), failure);
+            return;
+        }
+        int half = batch.size() / 2;
+        for (List<Pending> part : List.of(batch.subList(0, half), batch.subList(half, batch.size()))) {
+            try {
+                write(records(part), journalEnd(part));
+            } catch (RuntimeException e) {
+                isolate(part, e);
+            }
+        }
+    }
+
+    // records the trade in trade_dead_letter and moves the checkpoint past it; while the database cannot take
+    // even that, nothing behind it can be written either, so this retries until it can or the writer stops
+    private void deadLetter(Pending p, RuntimeException failure) throws InterruptedException {
+        TradeRecord r = p.record;
+        String record;
+        try {
+            record = objectMapper.writeValueAsString(r);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode trade " + r.tradeId(), e);
+        }
+        String error = String.valueOf(NestedExceptionUtils.getMostSpecificCause(failure).getMessage());
+        if (error.length() > 1000) error = error.substring(0, 1000);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                OffsetDateTime now = OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+                String reason = error;
+                tx.executeWithoutResult(status -> {
+                    jdbc.update(INSERT_DEAD_LETTER, r.tradeId(), record, reason, now);
+                    jdbc.update(UPDATE_CHECKPOINT, p.journalEnd, now);
+                });
+                journal.releaseBefore(p.journalEnd);
+                metrics.deadLettered();
+                log.error("Moved write-behind trade {} to trade_dead_letter: {}", r.tradeId(), error);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Could not dead-letter write-behind trade {} (attempt {})", r.tradeId(), attempt, e);
+                if (!running) return;
+                Thread.sleep(backoff(attempt));
+            }
+        }
+    }
+
+    private long backoff(int attempt) {
+        return Math.min(backoffMs << Math.min(attempt - 1, 20), 10_000L);
+    }
+
+    private static List<TradeRecord> records(List<Pending> batch) {
+        List<TradeRecord> records = new ArrayList<>(batch.size());
+        for (Pending p : batch) records.add(p.record);
+        return records;
+    }
+
+    private static long journalEnd(List<Pending> batch) {
+        return batch.get(batch.size() - 1).journalEnd;
+    }
+
+    /**
+     * Insert the records and move the checkpoint to journalEnd in one transaction, then hand the checkpoint to
+     * the journal's retention (which keeps every segment unless configured otherwise).
+     */
+    void write(List<TradeRecord> all, long journalEnd) {
+        tx.executeWithoutResult(status -> {
+            List<TradeRecord> records = withoutStoredKeys(all);
+            List<Object[]> trades = new ArrayList<>(records.size());
+            List<Object[]> lines = new ArrayList<>(records.size() * 4);
+            for (TradeRecord r : records) {
+                OffsetDateTime createdAt = OffsetDateTime.ofInstant(r.createdAt(), ZoneOffset.UTC);
+                trades.add(new Object[]{r.tradeId(), r.customerId(), BigDecimal.valueOf(r.amountMinor(), 2),
+                        r.type().name(), createdAt, r.shareConfigVersion(), r.idempotencyKey()});
+                for (int i = 0; i < r.lineCount(); i++) {
+                    lines.add(new Object[]{r.distributionIds()[i], r.tradeId(), r.participantIds()[i],
+                            BigDecimal.valueOf(r.keptMinor()[i], 2), BigDecimal.valueOf(r.passedMinor()[i], 2), createdAt});
+                }
+            }
+            jdbc.batchUpdate(INSERT_TRADE, trades);
+            jdbc.batchUpdate(INSERT_DISTRIBUTION, lines);
+            dailyRollups.recordTrades(records);
+            balanceLedger.recordTradesAfterCommit(records);
+            jdbc.update(UPDATE_CHECKPOINT, journalEnd, OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC));
+        });
+        journal.releaseBefore(journalEnd);
+    }
+
+    // a record whose Idempotency-Key is already stored is a second trade for the same request: it can only
+    // happen when the key left TradeIdempotencyCache before this record reached the database, and inserting
+    // it would fail the batch on ux_trade_idempotency_key forever, so it is dropped
+    private List<TradeRecord> withoutStoredKeys(List<TradeRecord> records) {
+        List<String> keys = new ArrayList<>();
+        for (TradeRecord r : records) {
+            if (r.idempotencyKey() != null) keys.add(r.idempotencyKey());
+        }
+        if (keys.isEmpty()) return records;
+        Set<String> seen = new HashSet<>(jdbc.queryForList(
+                "select idempotency_key from trade where idempotency_key in (" + String.join(",", Collections.nCopies(keys.size(), "?")) + ")",
+                String.class, keys.toArray()));
+        List<TradeRecord> kept = new ArrayList<>(records.size());
+        for (TradeRecord r : records) {
+            if (r.idempotencyKey() != null && !seen.add(r.idempotencyKey())) {
+                log.warn("Dropping trade {}: a trade with Idempotency-Key {} is already stored", r.tradeId(), r.idempotencyKey());
+            } else {
+                kept.add(r);
+            }
+        }
+        return kept;
+    }
+
+    private void recover() {
+        List<Long> rows = jdbc.queryForList("select position from trade_journal_checkpoint where id = 1", Long.class);
+        long checkpoint = rows.isEmpty() ? 0 : rows.get(0);
+        if (checkpoint > journal.end()) {
+            // the checkpoint belongs to a journal file that was replaced; replaying all of it is safe
+            log.warn("Trade journal checkpoint {} is past the end of the journal, replaying it from the start", checkpoint);
+            checkpoint = 0;
+        }
+        int recovered = replay(checkpoint);
+        if (recovered > 0) {
+            log.info("Recovered {} trades from the trade journal", recovered);
+        }
+    }
+
+    /**
+     * Insert every journaled trade from the given position on that is not in the database yet, with its
+     * rollups and ledger credits, and move the checkpoint to the end of the journal.
+     * Returns the number of trades inserted.
+     */
+    public int replay(long fromPosition) {
+        List<TradeRecord> pending = new ArrayList<>();
+        long[] lastEnd = {fromPosition};
+        int[] inserted = {0};
+        journal.read(fromPosition, (record, end) -> {
+            pending.add(record);
+            lastEnd[0] = end;
+            if (pending.size() == maxBatch) {
+                inserted[0] += writeMissing(pending, end);
+                pending.clear();
+            }
+        });
+        if (!pending.isEmpty() || lastEnd[0] != fromPosition) {
+            inserted[0] += writeMissing(pending, lastEnd[0]);
+        }
+        return inserted[0];
+    }
+
+    // skips records whose trade already exists or was archived, so replaying is safe
+    private int writeMissing(List<TradeRecord> records, long journalEnd) {
+        List<TradeRecord> missing = new ArrayList<>(records.size());
+        if (!records.isEmpty()) {
+            Set<Long> existing = new HashSet<>(jdbc.queryForList(
+                    "select id from trade where id in (" + String.join(",", Collections.nCopies(records.size(), "?")) + ")",
+                    Long.class, records.stream().map(TradeRecord::tradeId).toArray()));
+            for (TradeRecord r : records) {
+                if (!existing.contains(r.tradeId())
+                        && !archive.isArchived(DailyRollupService.istDate(r.createdAt()))) missing.add(r);
+            }
+        }
+        write(missing, journalEnd);
+        return missing.size();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) return;
+        running = false;
+        writer.join();
+    }
+
+    private record Pending(TradeRecord record, long journalEnd) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.sharedistribution.util;
+
+/**
+ * Minimal open-addressing map from a pair of longs to long without boxing.
+ * The pair (0, 0) is not a valid key (it marks a free slot). Not thread-safe: build it on one thread,
+ * then publish it and only read from it (or copy it before changing it).
+ */
+public final class LongPairLongHashMap {
+
+    private long[] firstKeys;
+    private long[] secondKeys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    public LongPairLongHashMap() {
+        this(16);
+    }
+
+    public LongPairLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        firstKeys = new long[capacity];
+        secondKeys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private LongPairLongHashMap(LongPairLongHashMap other) {
+        firstKeys = other.firstKeys.clone();
+        secondKeys = other.secondKeys.clone();
+        values = other.values.clone();
+        size = other.size;
+        mask = other.mask;
+    }
+
+    public long get(long first, long second, long missing) {
+        int i = slot(first, second);
+        while (!free(i)) {
+            if (firstKeys[i] == first && secondKeys[i] == second) return values[i];
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    public void put(long first, long second, long value) {
+        if (first == 0 && second == 0) throw new IllegalArgumentException("key must not be (0, 0)");
+        int i = slot(first, second);
+        while (!free(i)) {
+            if (firstKeys[i] == first && secondKeys[i] == second) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        firstKeys[i] = first;
+        secondKeys[i] = second;
+        values[i] = value;
+        if (++size * 2 > firstKeys.length) grow();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LongPairLongHashMap copy() {
+        return new LongPairLongHashMap(this);
+    }
+
+    private boolean free(int i) {
+        return firstKeys[i] == 0 && secondKeys[i] == 0;
+    }
+
+    private int slot(long first, long second) {
+        long h = (first * 0x9E3779B97F4A7C15L + second) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldFirst = firstKeys;
+        long[] oldSecond = secondKeys;
+        long[] oldValues = values;
+        firstKeys = new long[oldFirst.length * 2];
+        secondKeys = new long[oldSecond.length * 2];
+        values = new long[oldValues.length * 2];
+        mask = firstKeys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldFirst.length; i++) {
+            if (oldFirst[i] != 0 || oldSecond[i] != 0) put(oldFirst[i], oldSecond[i], oldValues[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LongPairLongHashMap{size=" + size + ", capacity=" + firstKeys.length + "}";
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.sharedistribution.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.example.sharedistribution.service.DistributionCalculator.MAX_FIXED_POINT_MINOR;
+import static com.example.sharedistribution.service.DistributionCalculator.SCALE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The fixed-point distribution against distributeExact, its BigDecimal reference.
+ */
+class DistributionCalculatorTest {
+
+    @Test
+    void fixedPointMatchesExactOnRandomChains() {
+        Random random = new Random(20251110);
+        for (int run = 0; run < 100_000; run++) {
+            // amounts spread over every magnitude up to the fixed-point limit
+            long amountMinor = Math.min(MAX_FIXED_POINT_MINOR, random.nextLong() >>> 1 >>> random.nextInt(63));
+            long[] bps = new long[random.nextInt(17)];
+            for (int i = 0; i < bps.length; i++) {
+                bps[i] = random.nextInt(4) == 0 ? random.nextInt(2) * 10_000L : random.nextInt(10_001);
+            }
+            assertMatchesExact(amountMinor, bps);
+        }
+    }
+
+    @Test
+    void fixedPointMatchesExactAtTheLimit() {
+        assertThat(DistributionCalculator.fitsFixedPoint(BigDecimal.valueOf(MAX_FIXED_POINT_MINOR, SCALE))).isTrue();
+        assertThat(DistributionCalculator.fitsFixedPoint(BigDecimal.valueOf(MAX_FIXED_POINT_MINOR + 1, SCALE))).isFalse();
+        for (long amountMinor : new long[]{MAX_FIXED_POINT_MINOR, MAX_FIXED_POINT_MINOR - 1, MAX_FIXED_POINT_MINOR / 2}) {
+            assertMatchesExact(amountMinor, new long[]{10_000, 10_000, 10_000});
+            assertMatchesExact(amountMinor, new long[]{9_999, 1, 5_000});
+            assertMatchesExact(amountMinor, new long[]{9_000, 8_000, 8_000});
+        }
+
+        // past the limit the decimal path falls back to distributeExact
+        BigDecimal beyond = BigDecimal.valueOf(MAX_FIXED_POINT_MINOR + 1, SCALE);
+        long[] bps = {9_000, 8_000, 8_000};
+        BigDecimal[] kept = new BigDecimal[4];
+        BigDecimal[] passed = new BigDecimal[4];
+        BigDecimal[] exactKept = new BigDecimal[4];
+        BigDecimal[] exactPassed = new BigDecimal[4];
+        DistributionCalculator.distribute(beyond, bps, kept, passed);
+        DistributionCalculator.distributeExact(beyond, bps, exactKept, exactPassed);
+        assertThat(kept).containsExactly(exactKept);
+        assertThat(passed).containsExactly(exactPassed);
+    }
+
+    @Test
+    void halfPaiseRoundUp() {
+        // 0.01 * 50% = 0.005 and 0.03 * 50% = 0.015 are exactly half a paisa: HALF_UP passes the paisa on
+        assertThat(DistributionCalculator.passedMinor(1, 5_000)).isEqualTo(1);
+        assertThat(DistributionCalculator.passedMinor(3, 5_000)).isEqualTo(2);
+        // 0.05 * 90% = 0.045 and 0.15 * 0.5% = 0.00075
+        assertThat(DistributionCalculator.passedMinor(5, 9_000)).isEqualTo(5);
+        assertThat(DistributionCalculator.passedMinor(15, 50)).isEqualTo(0);
+        // just under half a paisa rounds down: 0.01 * 49.99%
+        assertThat(DistributionCalculator.passedMinor(1, 4_999)).isEqualTo(0);
+
+        for (long amountMinor = 0; amountMinor < 2_000; amountMinor++) {
+            for (long bp : new long[]{5_000, 2_500, 1_250, 7_500, 9_950, 50}) {
+                assertMatchesExact(amountMinor, new long[]{bp, bp, bp});
+            }
+        }
+    }
+
+    private static void assertMatchesExact(long amountMinor, long[] bps) {
+        int n = bps.length + 1;
+        long[] keptMinor = new long[n];
+        long[] passedMinor = new long[n];
+        DistributionCalculator.distribute(amountMinor, bps, keptMinor, passedMinor);
+
+        BigDecimal amount = BigDecimal.valueOf(amountMinor, SCALE);
+        BigDecimal[] kept = new BigDecimal[n];
+        BigDecimal[] passed = new BigDecimal[n];
+        BigDecimal[] exactKept = new BigDecimal[n];
+        BigDecimal[] exactPassed = new BigDecimal[n];
+        DistributionCalculator.distribute(amount, bps, kept, passed);
+        DistributionCalculator.distributeExact(amount, bps, exactKept, exactPassed);
+
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            String at = "amount " + amount + ", bps " + Arrays.toString(bps) + ", participant " + i;
+            assertThat(BigDecimal.valueOf(keptMinor[i], SCALE)).as(at).isEqualTo(exactKept[i]);
+            assertThat(kept[i]).as(at).isEqualTo(exactKept[i]);
+            assertThat(passed[i]).as(at).isEqualTo(exactPassed[i]);
+            if (i < n - 1) assertThat(BigDecimal.valueOf(passedMinor[i], SCALE)).as(at).isEqualTo(exactPassed[i]);
+            sum += keptMinor[i];
+        }
+        // nothing is lost or created along the chain
+        assertThat(sum).isEqualTo(amountMinor);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.sharedistribution.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports far more distribution lines than the heap could hold. Runs in its own Surefire execution
+ * (small-heap, see pom.xml) with a small -Xmx and a file database, so the rows are not on the heap either.
+ */
+@Tag("small-heap")
+@SpringBootTest
+@ActiveProfiles("test")
+class DistributionExportSmallHeapTest {
+
+    private static final long TRADES = 400_000;
+    private static final int CHUNK = 50_000;
+
+    @Autowired
+    DistributionExportService exportService;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    void exportStreamsMoreThanTheHeap() throws Exception {
+        seed();
+        long heap = Runtime.getRuntime().maxMemory();
+
+        for (DistributionExportService.Format format : DistributionExportService.Format.values()) {
+            CountingOutputStream out = new CountingOutputStream();
+            exportService.export(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1), format, out);
+
+            long header = format == DistributionExportService.Format.CSV ? 1 : 0;
+            assertThat(out.lines).as(format + " lines").isEqualTo(TRADES * 4 + header);
+            assertThat(out.bytes).as(format + " bytes against a heap of " + heap).isGreaterThan(heap);
+        }
+    }
+
+    // trades on IST 2024-01-01 of the seeded customer 4 -> agent 3 -> operator 2 -> owner 1; skipped if already there
+    private void seed() {
+        Long existing = jdbc.queryForObject("select count(*) from trade where id > 1000000000", Long.class);
+        if (existing != null && existing == TRADES) return;
+        jdbc.update("delete from trade_distribution where trade_id > 1000000000");
+        jdbc.update("delete from trade where id > 1000000000");
+        String createdAt = "dateadd(second, mod(x, 80000), timestamp with time zone '2024-01-01 00:00:00+05:30')";
+        String[] lines = {"4, 200.00, 800.00", "3, 160.00, 640.00", "2, 64.00, 576.00", "1, 576.00, 0.00"};
+        // in chunks, so no single transaction holds a million uncommitted rows
+        for (long first = 1; first <= TRADES; first += CHUNK) {
+            String range = " from system_range(" + first + ", " + Math.min(TRADES, first + CHUNK - 1) + ")";
+            jdbc.update("insert into trade (id, customer_id, amount, type, created_at, share_config_version) "
+                    + "select 1000000000 + x, 4, 1000.00, 'LOSS', " + createdAt + ", 1" + range);
+            for (int k = 0; k < lines.length; k++) {
+                jdbc.update("insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at) "
+                        + "select 4000000000 + x * 4 + " + k + ", 1000000000 + x, " + lines[k] + ", " + createdAt + range);
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long bytes;
+        long lines;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') lines++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') lines++;
+            }
+        }
+    }
+}
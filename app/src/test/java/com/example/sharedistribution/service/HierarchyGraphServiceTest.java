@@ -0,0 +1,119 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ParticipantType;
+import com.example.sharedistribution.repository.ParticipantRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The cached chains of HierarchyGraphService against the same walk over hierarchy_link in SQL.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class HierarchyGraphServiceTest {
+
+    @Autowired
+    HierarchyGraphService graph;
+
+    @Autowired
+    ParticipantRepository participantRepo;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    void chainsMatchHierarchyLink() {
+        for (Participant p : participantRepo.findAll()) {
+            assertChainMatchesSql(p.getId());
+        }
+    }
+
+    @Test
+    void chainsMatchHierarchyLinkAfterLinking() {
+        Participant owner = participant("Owner", ParticipantType.OWNER);
+        Participant operator = participant("Operator", ParticipantType.OPERATOR);
+        Participant agent = participant("Agent", ParticipantType.AGENT);
+        List<Participant> customers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) customers.add(participant("Customer " + i, ParticipantType.CUSTOMER));
+
+        // bottom up, so every link extends the chains of a subtree that already has links of its own
+        for (Participant c : customers) graph.link(agent, c);
+        graph.link(operator, agent);
+        graph.link(owner, operator);
+
+        // and a second branch top down
+        Participant operator2 = participant("Operator 2", ParticipantType.OPERATOR);
+        Participant agent2 = participant("Agent 2", ParticipantType.AGENT);
+        Participant customer2 = participant("Customer 2-0", ParticipantType.CUSTOMER);
+        graph.link(owner, operator2);
+        graph.link(operator2, agent2);
+        graph.link(agent2, customer2);
+
+        assertThat(graph.chainOf(customers.get(0).getId())).containsExactly(
+                customers.get(0).getId(), agent.getId(), operator.getId(), owner.getId());
+        for (Participant p : participantRepo.findAll()) {
+            assertChainMatchesSql(p.getId());
+        }
+
+        // a reload from the database builds the same chains as the links did one by one
+        long[] before = graph.chainOf(customer2.getId());
+        graph.reload();
+        assertThat(graph.chainOf(customer2.getId())).containsExactly(before);
+        for (Participant p : participantRepo.findAll()) {
+            assertChainMatchesSql(p.getId());
+        }
+    }
+
+    @Test
+    void readersSeeWholeChainsDuringReload() throws Exception {
+        long[] expected = graph.chainOf(4L);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        assertThat(graph.chainOf(4L)).containsExactly(expected);
+                        assertThat(graph.nameOf(4L)).isNotNull();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            t.start();
+            readers.add(t);
+        }
+        try {
+            for (int i = 0; i < 50 && failure.get() == null; i++) graph.reload();
+        } finally {
+            running.set(false);
+            for (Thread t : readers) t.join();
+        }
+        assertThat(failure.get()).isNull();
+    }
+
+    private Participant participant(String name, ParticipantType type) {
+        return participantRepo.save(new Participant(name, type));
+    }
+
+    private void assertChainMatchesSql(long id) {
+        List<Long> sql = jdbc.queryForList("with recursive chain(id, depth) as ("
+                + "select cast(? as bigint), 0 "
+                + "union all select l.parent_id, c.depth + 1 from chain c join hierarchy_link l on l.child_id = c.id) "
+                + "select id from chain order by depth", Long.class, id);
+        assertThat(Arrays.stream(graph.chainOf(id)).boxed().toList()).as("chain of participant %d", id).isEqualTo(sql);
+    }
+}
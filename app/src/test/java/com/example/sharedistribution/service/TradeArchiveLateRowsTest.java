@@ -0,0 +1,105 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A write-behind trade acknowledged for a day but not committed yet keeps the day out of the archive until
+ * it is in the database, rather than landing in the live tables of a day that is already archived.
+ * Runs on a database of its own, since archiving moves every old day of it.
+ */
+@SpringBootTest(properties = {
+        "trade.persistence.mode=write-behind",
+        "spring.datasource.url=jdbc:h2:mem:archive-late-rows;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=60000"})
+@ActiveProfiles("test")
+class TradeArchiveLateRowsTest {
+
+    @Autowired
+    WriteBehindTradeWriter writeBehind;
+
+    @Autowired
+    TradeArchiveService archiveService;
+
+    @Autowired
+    TradeArchive archive;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Test
+    void lateWriteBehindTradeHoldsItsDayBack() throws Exception {
+        LocalDate day = LocalDate.now(DailyRollupService.IST).minusDays(3);
+        Instant noon = day.atTime(12, 0).atZone(DailyRollupService.IST).toInstant();
+
+        writeBehind.submit(record(8_000_000_001L, noon));
+        await(() -> writeBehind.flushHorizon() == null);
+
+        // an open transaction holding the checkpoint row keeps the next write-behind batch from committing
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread locker = new Thread(() -> new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            jdbc.update("merge into trade_journal_checkpoint (id, position, updated_at) key (id) values (1, 0, ?)",
+                    OffsetDateTime.now(ZoneOffset.UTC));
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            status.setRollbackOnly();
+        }));
+        locker.start();
+        locked.await();
+        try {
+            writeBehind.submit(record(8_000_000_002L, noon.plusSeconds(60)));
+            assertThat(writeBehind.flushHorizon()).isEqualTo(noon.plusSeconds(60));
+
+            TradeArchiveService.Result held = archiveService.run(1);
+            assertThat(held.days()).isEmpty();
+            assertThat(archive.isArchived(day)).isFalse();
+        } finally {
+            release.countDown();
+            locker.join();
+        }
+        await(() -> writeBehind.flushHorizon() == null);
+
+        TradeArchiveService.Result result = archiveService.run(1);
+        assertThat(result.days()).containsExactly(day);
+        assertThat(result.trades()).isEqualTo(2);
+        assertThat(archive.findTrade(8_000_000_001L)).hasSize(2);
+        assertThat(archive.findTrade(8_000_000_002L)).hasSize(2);
+        assertThat(jdbc.queryForObject("select count(*) from trade where id >= 8000000000", Long.class)).isZero();
+    }
+
+    private static TradeRecord record(long tradeId, Instant createdAt) {
+        return new TradeRecord(tradeId, 4, TradeType.LOSS, 10_000, createdAt, 1, null,
+                new long[]{tradeId * 10, tradeId * 10 + 1}, new long[]{4, 3},
+                new long[]{2_000, 8_000}, new long[]{8_000, 0});
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("waiting for the write-behind writer").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
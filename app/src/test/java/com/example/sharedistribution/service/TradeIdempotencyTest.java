@@ -0,0 +1,110 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.dto.TradeRequest;
+import com.example.sharedistribution.dto.TradeResponse;
+import com.example.sharedistribution.entity.TradeType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Concurrent requests with one Idempotency-Key execute one trade and all get its response.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TradeIdempotencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    TradeService tradeService;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void concurrentRetriesCreateOneTrade() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            String key = UUID.randomUUID().toString();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<TradeResponse>> sent = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    sent.add(pool.submit(() -> {
+                        start.await();
+                        return tradeService.executeTrade(trade("250.25"), key);
+                    }));
+                }
+                start.countDown();
+
+                Set<String> responses = new HashSet<>();
+                for (Future<TradeResponse> f : sent) {
+                    responses.add(objectMapper.writeValueAsString(f.get(30, TimeUnit.SECONDS)));
+                }
+                assertThat(responses).as("responses for key %s", key).hasSize(1);
+                assertThat(jdbc.queryForObject("select count(*) from trade where idempotency_key = ?", Long.class, key))
+                        .isEqualTo(1);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void keyReusedForAnotherTradeIsRejected() {
+        String key = UUID.randomUUID().toString();
+        TradeResponse first = tradeService.executeTrade(trade("10.00"), key);
+        assertThat(tradeService.executeTrade(trade("10.00"), key).getTradeId()).isEqualTo(first.getTradeId());
+        assertThatThrownBy(() -> tradeService.executeTrade(trade("11.00"), key))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void retryIsMatchedOnTheStoredAmountWhetherCachedOrNot() {
+        String key = UUID.randomUUID().toString();
+        TradeResponse first = tradeService.executeTrade(trade("100.004"), key);
+        assertThat(first.getAmount()).isEqualByComparingTo("100.00");
+
+        // from the cache
+        assertThat(tradeService.executeTrade(trade("100.004"), key).getTradeId()).isEqualTo(first.getTradeId());
+        assertThat(tradeService.executeTrade(trade("100.00"), key).getTradeId()).isEqualTo(first.getTradeId());
+        assertThatThrownBy(() -> tradeService.executeTrade(trade("100.01"), key))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // from the stored trade, as after eviction or a restart
+        assertThat(tradeService.storedTrade(key, trade("100.004")).getTradeId()).isEqualTo(first.getTradeId());
+        assertThat(tradeService.storedTrade(key, trade("100.00")).getTradeId()).isEqualTo(first.getTradeId());
+        assertThatThrownBy(() -> tradeService.storedTrade(key, trade("100.01")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TradeRequest trade(String amount) {
+        TradeRequest req = new TradeRequest();
+        req.setCustomerId(4L);
+        req.setAmount(new BigDecimal(amount));
+        req.setType(TradeType.PROFIT);
+        return req;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.entity.TradeType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * What releaseBefore() does with the segments behind the write-behind checkpoint under each retention.
+ */
+class TradeJournalRetentionTest {
+
+    private static final int CHUNK = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepRetainsEverySegment() throws Exception {
+        TradeJournal journal = journal("keep");
+        long end = appendSegments(journal);
+        journal.releaseBefore(end);
+
+        assertThat(journal.start()).isZero();
+        assertThat(tradeIds(journal)).hasSize(500);
+        assertThat(files(dir.resolve("journal"))).hasSizeGreaterThan(1);
+        journal.close();
+    }
+
+    @Test
+    void archiveMovesReleasedSegments() throws Exception {
+        TradeJournal journal = journal("archive");
+        long end = appendSegments(journal);
+        int segments = files(dir.resolve("journal")).size();
+        journal.releaseBefore(end);
+
+        assertThat(journal.start()).isPositive();
+        assertThat(files(dir.resolve("journal"))).hasSize(1);
+        assertThat(files(dir.resolve("archive"))).hasSize(segments - 1)
+                .anyMatch(f -> f.getFileName().toString().equals("trade-journal.bin"));
+        journal.close();
+
+        // a journal opened afterwards begins where the released segments ended
+        TradeJournal reopened = journal("archive");
+        assertThat(reopened.start()).isPositive();
+        assertThat(tradeIds(reopened)).isNotEmpty().doesNotContain(1L);
+        reopened.close();
+    }
+
+    @Test
+    void deleteDropsReleasedSegments() throws Exception {
+        TradeJournal journal = journal("delete");
+        long end = appendSegments(journal);
+        journal.releaseBefore(end);
+
+        assertThat(journal.start()).isPositive();
+        assertThat(files(dir.resolve("journal"))).hasSize(1);
+        assertThat(dir.resolve("archive")).doesNotExist();
+        journal.close();
+    }
+
+    private TradeJournal journal(String retention) {
+        return new TradeJournal(dir.resolve("journal/trade-journal.bin").toString(), CHUNK, CHUNK, retention,
+                dir.resolve("archive").toString());
+    }
+
+    // one chunk per segment, so 500 trades span many segments
+    private static long appendSegments(TradeJournal journal) {
+        long end = 0;
+        for (long id = 1; id <= 500; id++) {
+            end = journal.append(new TradeRecord(id, 4, TradeType.LOSS, 10_000, Instant.now(), 1, null,
+                    new long[]{id * 10, id * 10 + 1}, new long[]{4, 3}, new long[]{2_000, 8_000}, new long[]{8_000, 0}));
+        }
+        journal.forceAppended();
+        return end;
+    }
+
+    private static List<Long> tradeIds(TradeJournal journal) {
+        List<Long> ids = new ArrayList<>();
+        journal.read(0, (r, end) -> ids.add(r.tradeId()));
+        return ids;
+    }
+
+    private static List<Path> files(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.sharedistribution.service;
+
+import com.example.sharedistribution.SqlStatementCounter;
+import com.example.sharedistribution.dto.TradeRequest;
+import com.example.sharedistribution.dto.TradeResponse;
+import com.example.sharedistribution.entity.Participant;
+import com.example.sharedistribution.entity.ParticipantType;
+import com.example.sharedistribution.entity.ShareConfig;
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.repository.ParticipantRepository;
+import com.example.sharedistribution.repository.ShareConfigRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * JDBC statements per trade and per read request, counted by SqlStatementCounter on the calling thread
+ * (MockMvc runs requests on it too). None may grow with the chain depth or the number of rows returned.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TradeStatementCountTest {
+
+    // 3 measured at any depth, and one more now and then when ids or caches are (re)loaded
+    private static final long SYNC_MAX = 4;
+    // per chunk: the 3 fixed statements of one transaction (one more for an id block), then one per JDBC batch
+    private static final long CHUNK_MAX = 4;
+    private static final int JDBC_BATCH = 50;
+
+    private static final int WIDE = 1000;
+    // days seeded only for the reports: two with rollup rows, two with only trade lines
+    private static final LocalDate ROLLUP_NARROW = LocalDate.of(2023, 1, 1);
+    private static final LocalDate ROLLUP_WIDE = LocalDate.of(2023, 1, 2);
+    private static final LocalDate LINES_NARROW = LocalDate.of(2023, 2, 1);
+    private static final LocalDate LINES_WIDE = LocalDate.of(2023, 2, 2);
+
+    @Autowired
+    TradeService tradeService;
+
+    @Autowired
+    WebApplicationContext context;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ParticipantRepository participantRepo;
+
+    @Autowired
+    ShareConfigRepository shareRepo;
+
+    @Autowired
+    HierarchyGraphService graph;
+
+    @Autowired
+    ShareConfigSnapshotService shareSnapshots;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    MockMvc mvc;
+    // customers at the end of chains of 2 and of 8 participants
+    long shallowCustomer;
+    long deepCustomer;
+    // parent of WIDE share configs
+    long hub;
+    List<Long> spokes = new ArrayList<>();
+
+    @BeforeAll
+    void setUp() throws Exception {
+        mvc = MockMvcBuilders.webAppContextSetup(context).build();
+        shallowCustomer = chain("Shallow", 2);
+        deepCustomer = chain("Deep", 8);
+
+        Participant hubParticipant = participantRepo.save(new Participant("Hub", ParticipantType.AGENT));
+        hub = hubParticipant.getId();
+        List<Participant> customers = new ArrayList<>();
+        for (int i = 0; i < WIDE; i++) customers.add(new Participant("Spoke " + i, ParticipantType.CUSTOMER));
+        List<ShareConfig> shares = new ArrayList<>();
+        for (Participant c : participantRepo.saveAll(customers)) {
+            spokes.add(c.getId());
+            shares.add(new ShareConfig(hubParticipant, c, BigDecimal.valueOf(50)));
+        }
+        shareRepo.saveAll(shares);
+        graph.reload();
+        shareSnapshots.reload();
+
+        seedRollups(ROLLUP_NARROW, 10);
+        seedRollups(ROLLUP_WIDE, WIDE);
+        seedLines(LINES_NARROW, 10, 3_000_000_000L);
+        seedLines(LINES_WIDE, WIDE, 3_100_000_000L);
+    }
+
+    @Test
+    void syncTradeStatementsDoNotGrowWithDepth() {
+        long[] shallow = syncStatements(shallowCustomer, 2);
+        long[] deep = syncStatements(deepCustomer, 8);
+        // the fewest of several trades, so an occasional id block fetch does not count
+        assertThat(deep[0]).as("statements of a trade at depth 8 vs depth 2").isEqualTo(shallow[0]);
+        assertThat(Math.max(shallow[1], deep[1])).isLessThanOrEqualTo(SYNC_MAX);
+    }
+
+    @Test
+    void tradeLinesAreOneStatementAtAnyDepth() throws Exception {
+        for (long customer : new long[]{shallowCustomer, deepCustomer}) {
+            TradeResponse resp = tradeService.executeTrade(trade(customer, TradeType.LOSS));
+            assertThat(countStatements("/api/trades/" + resp.getTradeId())).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void batchInsertsInJdbcBatches() {
+        for (long customer : new long[]{shallowCustomer, deepCustomer}) {
+            int rowsPerTrade = 1 + graph.chainOf(customer).length;
+            for (int n : new int[]{1, 10, 100, 500}) {
+                List<TradeRequest> requests = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) requests.add(trade(customer, i % 2 == 0 ? TradeType.LOSS : TradeType.PROFIT));
+
+                long before = SqlStatementCounter.current();
+                tradeService.executeBatch(requests, 500);
+                long statements = SqlStatementCounter.current() - before;
+
+                long batches = ((long) n * rowsPerTrade + JDBC_BATCH - 1) / JDBC_BATCH;
+                assertThat(statements).as("statements of a batch of %d trades of %d rows", n, rowsPerTrade)
+                        .isLessThanOrEqualTo(CHUNK_MAX + batches);
+            }
+        }
+    }
+
+    @Test
+    void shareListIsOneStatementForAnyPageSize() throws Exception {
+        for (String filter : new String[]{"", "&parentId=" + hub, "&childId=" + spokes.get(0), "&parentId=" + hub + "&childId=" + spokes.get(0)}) {
+            long small = countStatements("/api/shares?limit=10" + filter);
+            long large = countStatements("/api/shares?limit=" + WIDE + filter);
+            assertThat(small).as("GET /api/shares?limit=10%s", filter).isEqualTo(1);
+            assertThat(large).as("GET /api/shares?limit=%d%s", WIDE, filter).isEqualTo(1);
+        }
+        // and the pages really are that large
+        JsonNode page = json("/api/shares?limit=" + WIDE + "&parentId=" + hub);
+        assertThat(page.get("items")).hasSize(WIDE);
+    }
+
+    @Test
+    void dailyReportStatementsDoNotGrowWithParticipants() throws Exception {
+        assertThat(json("/api/trades/reports/daily?date=" + ROLLUP_WIDE)).hasSize(WIDE);
+        assertThat(json("/api/trades/reports/daily?date=" + LINES_WIDE)).hasSize(WIDE);
+
+        long rollupNarrow = countStatements("/api/trades/reports/daily?date=" + ROLLUP_NARROW);
+        long rollupWide = countStatements("/api/trades/reports/daily?date=" + ROLLUP_WIDE);
+        assertThat(rollupNarrow).isEqualTo(2);
+        assertThat(rollupWide).as("report of %d participants from rollups", WIDE).isEqualTo(rollupNarrow);
+
+        long linesNarrow = countStatements("/api/trades/reports/daily?date=" + LINES_NARROW);
+        long linesWide = countStatements("/api/trades/reports/daily?date=" + LINES_WIDE);
+        assertThat(linesNarrow).isEqualTo(2);
+        assertThat(linesWide).as("report of %d participants from trade lines", WIDE).isEqualTo(linesNarrow);
+
+        // the service without the controller: the same counts
+        long before = SqlStatementCounter.current();
+        assertThat(tradeService.dailySummary(ROLLUP_WIDE)).hasSize(WIDE);
+        assertThat(SqlStatementCounter.current() - before).isEqualTo(rollupWide);
+    }
+
+    // fewest and most statements of 10 synchronous trades for customer, after a warm-up trade
+    private long[] syncStatements(long customer, int depth) {
+        tradeService.executeTrade(trade(customer, TradeType.LOSS));
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 10; i++) {
+            long before = SqlStatementCounter.current();
+            TradeResponse resp = tradeService.executeTrade(trade(customer, i % 2 == 0 ? TradeType.LOSS : TradeType.PROFIT));
+            long statements = SqlStatementCounter.current() - before;
+            assertThat(resp.getDistributions()).hasSize(depth);
+            min = Math.min(min, statements);
+            max = Math.max(max, statements);
+        }
+        return new long[]{min, max};
+    }
+
+    private long countStatements(String uri) throws Exception {
+        long before = SqlStatementCounter.current();
+        mvc.perform(get(uri)).andExpect(status().isOk());
+        return SqlStatementCounter.current() - before;
+    }
+
+    private JsonNode json(String uri) throws Exception {
+        MvcResult result = mvc.perform(get(uri)).andExpect(status().isOk()).andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    // owner -> operator -> agents... -> customer of the given length, created through the API; returns the customer
+    private long chain(String name, int length) throws Exception {
+        long parent = -1;
+        for (int i = 0; i < length; i++) {
+            String type = i == 0 ? "OWNER" : i == length - 1 ? "CUSTOMER" : i == 1 ? "OPERATOR" : "AGENT";
+            long id = objectMapper.readTree(mvc.perform(post("/api/participants").contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"" + name + " " + i + "\",\"type\":\"" + type + "\"}"))
+                    .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString()).get("id").asLong();
+            if (parent >= 0) {
+                mvc.perform(post("/api/participants/link").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"parentId\":" + parent + ",\"childId\":" + id + "}")).andExpect(status().isCreated());
+                mvc.perform(post("/api/shares").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"parentId\":" + parent + ",\"childId\":" + id + ",\"passPercentage\":80}"))
+                        .andExpect(status().is2xxSuccessful());
+            }
+            parent = id;
+        }
+        return parent;
+    }
+
+    private void seedRollups(LocalDate day, int participants) {
+        jdbc.batchUpdate("insert into daily_participant_rollup (report_date, participant_id, slot, total_kept, total_passed, "
+                        + "trade_count, subtree_kept, subtree_passed) values (?, ?, 0, 10.00, 5.00, 1, 10.00, 5.00)",
+                spokes.subList(0, participants).stream().map(id -> new Object[]{day, id}).toList());
+    }
+
+    // one trade of the hub per spoke, with a line for the spoke, created at noon IST of day
+    private void seedLines(LocalDate day, int participants, long firstId) {
+        String createdAt = "timestamp with time zone '" + day + " 12:00:00+05:30'";
+        for (int i = 0; i < participants; i++) {
+            long tradeId = firstId + i;
+            jdbc.update("insert into trade (id, customer_id, amount, type, created_at, share_config_version) "
+                    + "values (?, ?, 10.00, 'LOSS', " + createdAt + ", 1)", tradeId, spokes.get(i));
+            jdbc.update("insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at) "
+                    + "values (?, ?, ?, 10.00, 0.00, " + createdAt + ")", tradeId, tradeId, spokes.get(i));
+        }
+    }
+
+    private static TradeRequest trade(long customer, TradeType type) {
+        TradeRequest req = new TradeRequest();
+        req.setCustomerId(customer);
+        req.setAmount(new BigDecimal("1000.00"));
+        req.setType(type);
+        return req;
+    }
+}
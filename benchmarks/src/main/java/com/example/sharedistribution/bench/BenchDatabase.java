@@ -0,0 +1,137 @@
+package com.example.sharedistribution.bench;
+
+import com.example.sharedistribution.ShareDistributionApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Application context on a file H2 database under target/bench-db/&lt;name&gt;, plus bulk seeding in plain SQL.
+ * Seeded databases are kept between runs, so the large trade volumes are generated only once.
+ *
+ * Seeded hierarchy (on top of the five participants DataInitializer creates):
+ * owner 1 -> 10 operators (1001..) -> 100 agents (2001..) -> N customers (100001..), spread evenly.
+ */
+final class BenchDatabase {
+
+    static final long FIRST_CUSTOMER = 100_001;
+
+    private BenchDatabase() {}
+
+    static ConfigurableApplicationContext start(String name) {
+        return start(name, WebApplicationType.NONE);
+    }
+
+    /**
+     * Same, with the servlet server and the reactive trade API listening on free ports.
+     */
+    static ConfigurableApplicationContext startWeb(String name) {
+        return start(name, WebApplicationType.SERVLET, "--server.port=0", "--trade.reactive.port=0");
+    }
+
+    private static ConfigurableApplicationContext start(String name, WebApplicationType web, String... extra) {
+        Path dir = Path.of("target", "bench-db", name).toAbsolutePath();
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:file:" + dir.resolve("sharedb") + ";DB_CLOSE_ON_EXIT=FALSE",
+                "--trade.journal.path=" + dir.resolve("trade-journal.bin"),
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(extra));
+        return new SpringApplicationBuilder(ShareDistributionApplication.class)
+                .web(web)
+                // as command line arguments, so they win over application.properties
+                .run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Seed the operator / agent / customer hierarchy with share configs, unless it is already there.
+     */
+    static void seedHierarchy(JdbcTemplate jdbc, int customers) {
+        Long existing = jdbc.queryForObject("select count(*) from participant where id >= ?", Long.class, FIRST_CUSTOMER);
+        if (existing != null && existing == customers) return;
+        if (existing != null && existing > 0) {
+            throw new IllegalStateException("Benchmark database already holds " + existing
+                    + " customers; delete target/bench-db to reseed with " + customers);
+        }
+        jdbc.update("insert into participant (id, name, type, created_at) "
+                + "select 1000 + x, 'Operator ' || x, 'OPERATOR', current_timestamp from system_range(1, 10)");
+        jdbc.update("insert into participant (id, name, type, created_at) "
+                + "select 2000 + x, 'Agent ' || x, 'AGENT', current_timestamp from system_range(1, 100)");
+        jdbc.update("insert into participant (id, name, type, created_at) "
+                + "select 100000 + x, 'Customer ' || x, 'CUSTOMER', current_timestamp from system_range(1, ?)", customers);
+
+        // operator x -> agents, agent x -> customers, round robin
+        jdbc.update("insert into hierarchy_link (id, parent_id, child_id, created_at) "
+                + "select 1000 + x, 1, 1000 + x, current_timestamp from system_range(1, 10)");
+        jdbc.update("insert into hierarchy_link (id, parent_id, child_id, created_at) "
+                + "select 2000 + x, 1001 + mod(x - 1, 10), 2000 + x, current_timestamp from system_range(1, 100)");
+        jdbc.update("insert into hierarchy_link (id, parent_id, child_id, created_at) "
+                + "select 100000 + x, 2001 + mod(x - 1, 100), 100000 + x, current_timestamp from system_range(1, ?)", customers);
+
+        jdbc.update("insert into share_config (id, parent_id, child_id, pass_percentage, updated_at, effective_from) "
+                + "select id, parent_id, child_id, case when parent_id = 1 then 90.00 when parent_id < 2000 then 80.00 else 50.00 end, "
+                + "current_timestamp, current_timestamp from hierarchy_link where id > 1000");
+    }
+
+    /**
+     * Seed trades LOSS trades with four distribution lines each, spread over 30 days from 2025-01-01 UTC
+     * across the first 1000 customers, then rebuild the daily rollups. Skipped if already seeded.
+     */
+    static void seedTrades(JdbcTemplate jdbc, long trades) {
+        Long existing = jdbc.queryForObject("select count(*) from trade where id > 1000000000", Long.class);
+        if (existing != null && existing == trades) return;
+        if (existing != null && existing > 0) {
+            throw new IllegalStateException("Benchmark database already holds " + existing
+                    + " trades; delete target/bench-db to reseed with " + trades);
+        }
+        // x -> customer 100001 + x % 1000, its agent 2001 + x % 100, that agent's operator 1001 + x % 10, owner 1
+        String range = " from system_range(1, " + trades + ")";
+        String createdAt = "dateadd(second, mod(x * 7919, 86400), dateadd(day, mod(x, 30), timestamp with time zone '2025-01-01 00:00:00+00'))";
+        jdbc.update("insert into trade (id, customer_id, amount, type, created_at, share_config_version) "
+                + "select 1000000000 + x, 100001 + mod(x, 1000), 1000.00, 'LOSS', " + createdAt + ", 1" + range);
+        String[] lines = {
+                "100001 + mod(x, 1000), 500.00, 500.00",
+                "2001 + mod(x, 100), 250.00, 250.00",
+                "1001 + mod(x, 10), 50.00, 200.00",
+                "1, 200.00, 0.00"};
+        for (int k = 0; k < lines.length; k++) {
+            jdbc.update("insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at) "
+                    + "select 4000000000 + x * 4 + " + k + ", 1000000000 + x, " + lines[k] + ", " + createdAt + range);
+        }
+    }
+
+    /**
+     * Like seedTrades, but with varying amounts (whole paise, 0.08 to 40000.00) and every third trade a
+     * PROFIT, so column encodings and type filters see realistic data. Skipped if already seeded.
+     */
+    static void seedMixedTrades(JdbcTemplate jdbc, long trades) {
+        Long existing = jdbc.queryForObject("select count(*) from trade where id > 1000000000", Long.class);
+        if (existing != null && existing == trades) return;
+        if (existing != null && existing > 0) {
+            throw new IllegalStateException("Benchmark database already holds " + existing
+                    + " trades; delete target/bench-db to reseed with " + trades);
+        }
+        // the trade amount is 8 * p paise; customer, agent, operator and owner keep 4p, 2p, p and p of it
+        String range = " from system_range(1, " + trades + ")";
+        String p = "(1 + mod(x * 7919, 500000))";
+        String createdAt = "dateadd(second, mod(x * 7919, 86400), dateadd(day, mod(x, 30), timestamp with time zone '2025-01-01 00:00:00+00'))";
+        jdbc.update("insert into trade (id, customer_id, amount, type, created_at, share_config_version) "
+                + "select 1000000000 + x, 100001 + mod(x, 1000), " + p + " * 8 / 100.00, "
+                + "case when mod(x, 3) = 0 then 'PROFIT' else 'LOSS' end, " + createdAt + ", 1" + range);
+        String[] lines = {
+                "100001 + mod(x, 1000), " + p + " * 4 / 100.00, " + p + " * 4 / 100.00",
+                "2001 + mod(x, 100), " + p + " * 2 / 100.00, " + p + " * 2 / 100.00",
+                "1001 + mod(x, 10), " + p + " / 100.00, " + p + " / 100.00",
+                "1, " + p + " / 100.00, 0.00"};
+        for (int k = 0; k < lines.length; k++) {
+            jdbc.update("insert into trade_distribution (id, trade_id, participant_id, amount_kept, amount_passed, created_at) "
+                    + "select 4000000000 + x * 4 + " + k + ", 1000000000 + x, " + lines[k] + ", " + createdAt + range);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.sharedistribution.bench;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar: the JMH command line, with results written as JSON to
+ * target/jmh-results-&lt;timestamp&gt;.json unless -rf / -rff are given, so runs can be compared later.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> all = new ArrayList<>(Arrays.asList(args));
+        if (!all.contains("-rf") && !all.contains("-rff")) {
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            all.addAll(0, List.of("-rf", "json", "-rff", "target/jmh-results-" + stamp + ".json"));
+        }
+        org.openjdk.jmh.Main.main(all.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.sharedistribution.bench;
+
+import com.example.sharedistribution.service.HierarchyGraphService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving a customer's ancestor chain against an embedded H2 hierarchy:
+ * the in-memory HierarchyGraphService used by the trade path, the per-hop hierarchy_link walk the
+ * trade path did before (one select per ancestor), and the same walk as one recursive query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChainResolutionBenchmark {
+
+    @Param({"1000", "100000"})
+    int customers;
+
+    ConfigurableApplicationContext context;
+    HierarchyGraphService graph;
+    JdbcTemplate jdbc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchDatabase.start("chain-" + customers);
+        jdbc = context.getBean(JdbcTemplate.class);
+        BenchDatabase.seedHierarchy(jdbc, customers);
+        graph = context.getBean(HierarchyGraphService.class);
+        graph.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private long randomCustomer() {
+        return BenchDatabase.FIRST_CUSTOMER + ThreadLocalRandom.current().nextInt(customers);
+    }
+
+    @Benchmark
+    public long[] inMemoryGraph() {
+        return graph.chainOf(randomCustomer());
+    }
+
+    @Benchmark
+    public List<Long> perHopQueries() {
+        List<Long> chain = new ArrayList<>();
+        Long current = randomCustomer();
+        while (current != null) {
+            chain.add(current);
+            List<Long> parents = jdbc.queryForList("select parent_id from hierarchy_link where child_id = ?", Long.class, current);
+            current = parents.isEmpty() ? null : parents.get(0);
+        }
+        return chain;
+    }
+
+    @Benchmark
+    public List<Long> recursiveQuery() {
+        return jdbc.queryForList("with recursive chain(id, depth) as ("
+                + "select cast(? as bigint), 0 "
+                + "union all select l.parent_id, c.depth + 1 from chain c join hierarchy_link l on l.child_id = c.id) "
+                + "select id from chain order by depth", Long.class, randomCustomer());
+    }
+}
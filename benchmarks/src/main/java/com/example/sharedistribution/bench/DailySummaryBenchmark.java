@@ -0,0 +1,70 @@
+package com.example.sharedistribution.bench;
+
+import com.example.sharedistribution.repository.ParticipantTotals;
+import com.example.sharedistribution.repository.TradeDistributionRepository;
+import com.example.sharedistribution.service.DailyRollupService;
+import com.example.sharedistribution.service.HierarchyClosureService;
+import com.example.sharedistribution.service.TradeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The daily report over a seeded trade history: TradeService.dailySummary (served from the rollup rows)
+ * and the grouped scan over trade_distribution it falls back to for days without rollups.
+ * 10M trades take a long time and several GB to seed; run them explicitly with -p trades=10000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DailySummaryBenchmark {
+
+    @Param({"10000", "1000000"})
+    long trades;
+
+    static final LocalDate DAY = LocalDate.of(2025, 1, 15);
+
+    ConfigurableApplicationContext context;
+    TradeService tradeService;
+    TradeDistributionRepository distributionRepo;
+    Instant from;
+    Instant to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchDatabase.start("summary-" + trades);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        BenchDatabase.seedHierarchy(jdbc, 1000);
+        BenchDatabase.seedTrades(jdbc, trades);
+        context.getBean(HierarchyClosureService.class).rebuild();
+        context.getBean(DailyRollupService.class).rebuild();
+        tradeService = context.getBean(TradeService.class);
+        distributionRepo = context.getBean(TradeDistributionRepository.class);
+        from = DAY.atStartOfDay(DailyRollupService.IST).toInstant();
+        to = DAY.plusDays(1).atStartOfDay(DailyRollupService.IST).toInstant();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<Long, TradeService.ParticipantSummary> fromRollups() {
+        return tradeService.dailySummary(DAY);
+    }
+
+    @Benchmark
+    public List<ParticipantTotals> scanDistributions() {
+        return distributionRepo.sumByParticipantBetween(from, to);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.sharedistribution.bench;
+
+import com.example.sharedistribution.service.DistributionCalculator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LOSS / PROFIT distribution loop on its own, for chains of 2 to 16 participants:
+ * the fixed-point path used for normal amounts and the BigDecimal reference path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistributionBenchmark {
+
+    @Param({"2", "4", "8", "16"})
+    int depth;
+
+    long[] passBasisPoints;
+    long amountMinor;
+    BigDecimal amount;
+
+    @Setup
+    public void setUp() {
+        passBasisPoints = new long[depth - 1];
+        for (int i = 0; i < passBasisPoints.length; i++) {
+            passBasisPoints[i] = 5_000 + (i * 1_234L) % 4_500;
+        }
+        amountMinor = 123_456_789L;
+        amount = BigDecimal.valueOf(amountMinor, DistributionCalculator.SCALE);
+    }
+
+    @Benchmark
+    public void fixedPoint(Blackhole bh) {
+        long[] kept = new long[depth];
+        long[] passed = new long[depth];
+        DistributionCalculator.distribute(amountMinor, passBasisPoints, kept, passed);
+        bh.consume(kept);
+        bh.consume(passed);
+    }
+
+    @Benchmark
+    public void bigDecimal(Blackhole bh) {
+        BigDecimal[] kept = new BigDecimal[depth];
+        BigDecimal[] passed = new BigDecimal[depth];
+        DistributionCalculator.distributeExact(amount, passBasisPoints, kept, passed);
+        bh.consume(kept);
+        bh.consume(passed);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.sharedistribution.bench;
+
+import com.example.sharedistribution.entity.TradeType;
+import com.example.sharedistribution.service.DistributionSegment;
+import com.example.sharedistribution.service.SegmentScanner;
+import com.example.sharedistribution.service.TradeArchive;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sum and group-by-participant over 30 days of history, LOSS trades only: the columnar day files of the
+ * trade archive (SegmentScanner) against the same query in H2 over trade / trade_distribution.
+ * Each trade has four lines; 50M lines take long and about 10 GB to seed, run them with -p trades=12500000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SegmentScanBenchmark {
+
+    @Param({"250000"})
+    long trades;
+
+    static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+    static final int DAYS = 30;
+
+    private static final String SELECT_DAY =
+            "select d.id, t.id, t.customer_id, t.amount, t.type, t.created_at, t.share_config_version, t.idempotency_key, "
+            + "d.participant_id, d.amount_kept, d.amount_passed, d.created_at, d.adjustment_job_id "
+            + "from trade t join trade_distribution d on d.trade_id = t.id "
+            + "where t.created_at >= ? and t.created_at < ? order by t.created_at, t.id, d.id";
+
+    ConfigurableApplicationContext context;
+    JdbcTemplate jdbc;
+    List<Path> segments;
+    long run;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String name = "segments-" + trades;
+        context = BenchDatabase.start(name);
+        jdbc = context.getBean(JdbcTemplate.class);
+        BenchDatabase.seedHierarchy(jdbc, 1000);
+        BenchDatabase.seedMixedTrades(jdbc, trades);
+        segments = writeSegments(Path.of("target", "bench-db", name, "segments"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SegmentScanner.Totals segmentSum() {
+        SegmentScanner scanner = new SegmentScanner(TradeType.LOSS, false);
+        for (Path p : segments) scanner.scan(DistributionSegment.open(p));
+        return scanner.totals();
+    }
+
+    @Benchmark
+    public Map<Long, SegmentScanner.Totals> segmentByParticipant() {
+        SegmentScanner scanner = new SegmentScanner(TradeType.LOSS, true);
+        for (Path p : segments) scanner.scan(DistributionSegment.open(p));
+        return scanner.byParticipant();
+    }
+
+    // H2 reuses the result of a query it has run before on unchanged tables; a new bound makes each run count
+    @Benchmark
+    public Map<String, Object> h2Sum() {
+        return jdbc.queryForMap("select count(*), sum(d.amount_kept), sum(d.amount_passed) "
+                + "from trade_distribution d join trade t on t.id = d.trade_id where t.type = 'LOSS' and d.id > ?", --run);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> h2ByParticipant() {
+        return jdbc.queryForList("select d.participant_id, count(*), sum(d.amount_kept), sum(d.amount_passed) "
+                + "from trade_distribution d join trade t on t.id = d.trade_id where t.type = 'LOSS' and d.id > ? "
+                + "group by d.participant_id", --run);
+    }
+
+    // one segment per UTC day of the seeded history, written once and kept with the database
+    private List<Path> writeSegments(Path dir) {
+        List<Path> paths = new ArrayList<>();
+        try {
+            Files.createDirectories(dir);
+            for (int i = 0; i < DAYS; i++) {
+                LocalDate day = FIRST_DAY.plusDays(i);
+                Path path = dir.resolve("trades-" + day + ".seg");
+                paths.add(path);
+                if (Files.exists(path)) continue;
+                DistributionSegment.Builder builder = new DistributionSegment.Builder(day);
+                jdbc.query(SELECT_DAY, (ResultSet rs) -> {
+                    builder.add(new TradeArchive.Line(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4),
+                            TradeType.valueOf(rs.getString(5)), rs.getObject(6, OffsetDateTime.class).toInstant(),
+                            rs.getObject(7, Long.class), rs.getString(8), rs.getLong(9), rs.getBigDecimal(10),
+                            rs.getBigDecimal(11), rs.getObject(12, OffsetDateTime.class).toInstant(), rs.getObject(13, Long.class)));
+                }, day.atStartOfDay().atOffset(ZoneOffset.UTC), day.plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC));
+                Path temp = dir.resolve(path.getFileName() + ".tmp");
+                try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer bytes = builder.encode();
+                    while (bytes.hasRemaining()) ch.write(bytes);
+                }
+                Files.move(temp, path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return paths;
+    }
+}
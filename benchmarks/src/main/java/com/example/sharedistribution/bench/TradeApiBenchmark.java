@@ -0,0 +1,116 @@
+package com.example.sharedistribution.bench;
+
+import com.example.sharedistribution.ReactiveTradeServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end trade submission over HTTP: POST /api/trades on the servlet server (sync persistence) against
+ * POST /api/trades and the NDJSON POST /api/trades/stream of the reactive API, for TRADES trades per
+ * invocation with at most inFlight requests open at once. Scores are per trade.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class TradeApiBenchmark {
+
+    static final int TRADES = 256;
+
+    @Param({"1", "64"})
+    int inFlight;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    URI mvc;
+    URI reactive;
+    URI stream;
+    List<String> bodies;
+    String ndjson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchDatabase.startWeb("trade-api");
+        BenchDatabase.seedHierarchy(context.getBean(JdbcTemplate.class), 1000);
+        int mvcPort = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        int reactivePort = context.getBean(ReactiveTradeServer.class).port();
+        mvc = URI.create("http://localhost:" + mvcPort + "/api/trades");
+        reactive = URI.create("http://localhost:" + reactivePort + "/api/trades");
+        stream = URI.create("http://localhost:" + reactivePort + "/api/trades/stream");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        Random random = new Random(42);
+        bodies = new ArrayList<>(TRADES);
+        for (int i = 0; i < TRADES; i++) {
+            bodies.add("{\"customerId\":" + (BenchDatabase.FIRST_CUSTOMER + random.nextInt(1000))
+                    + ",\"amount\":" + (1 + random.nextInt(500_000)) / 100.0
+                    + ",\"type\":\"" + (random.nextBoolean() ? "LOSS" : "PROFIT") + "\"}");
+        }
+        ndjson = String.join("\n", bodies) + "\n";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRADES)
+    public void mvc() {
+        postAll(mvc);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRADES)
+    public void reactive() {
+        postAll(reactive);
+    }
+
+    // one request carries all trades; inFlight does not apply
+    @Benchmark
+    @OperationsPerInvocation(TRADES)
+    public String reactiveStream() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(stream)
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        check(response);
+        if (response.body().contains("\"success\":false")) throw new IllegalStateException(response.body());
+        return response.body();
+    }
+
+    private void postAll(URI uri) {
+        Semaphore open = new Semaphore(inFlight);
+        List<CompletableFuture<?>> sent = new ArrayList<>(TRADES);
+        for (String body : bodies) {
+            open.acquireUninterruptibly();
+            sent.add(client.sendAsync(HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build(), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, e) -> open.release())
+                    .thenAccept(TradeApiBenchmark::check));
+        }
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private static void check(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.sharedistribution.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load test of POST /api/trades against a running server: at each level, that many clients each
+ * send requests-per-client trades one after the other, so exactly that many requests are in flight. Reports
+ * throughput and p50 / p99 latency per level. The server runs in its own JVM, started with the
+ * request.threads / db.access.limit settings under test:
+ *
+ *   java -cp target/benchmarks.jar com.example.sharedistribution.bench.TradeLoadGenerator \
+ *        --url=http://localhost:8080/api/trades --clients=1000,10000,50000 --requests-per-client=5 --customers=4,5
+ *
+ * Every client holds its own connection: levels past the server's server.tomcat.max-connections (8192) queue
+ * in the accept backlog, and past about 28k the client host runs out of ephemeral ports unless
+ * net.ipv4.ip_local_port_range is widened (or the load is split over several hosts).
+ */
+public final class TradeLoadGenerator {
+
+    private final HttpClient client;
+    private final URI url;
+    private final long[] customers;
+    private final Duration timeout;
+
+    private TradeLoadGenerator(URI url, long[] customers, Duration timeout) {
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout).build();
+        this.url = url;
+        this.customers = customers;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "url", "http://localhost:8080/api/trades",
+                "clients", "1000,10000,50000",
+                "requests-per-client", "5",
+                "customers", "4,5",
+                "warmup", "2000",
+                "timeout-s", "120"));
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0 || !options.containsKey(arg.substring(2, eq))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + "; options: " + options.keySet());
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        TradeLoadGenerator load = new TradeLoadGenerator(URI.create(options.get("url")),
+                Arrays.stream(options.get("customers").split(",")).mapToLong(s -> Long.parseLong(s.trim())).toArray(),
+                Duration.ofSeconds(Long.parseLong(options.get("timeout-s"))));
+        int perClient = Integer.parseInt(options.get("requests-per-client"));
+
+        int warmup = Integer.parseInt(options.get("warmup"));
+        if (warmup > 0) load.run(64, (warmup + 63) / 64);
+        System.out.printf("%8s %9s %9s %8s %10s %10s %10s%n", "clients", "requests", "errors", "seconds",
+                "trades/s", "p50 ms", "p99 ms");
+        for (String level : options.get("clients").split(",")) {
+            Result r = load.run(Integer.parseInt(level.trim()), perClient);
+            System.out.printf("%8d %9d %9d %8.1f %10.0f %10.1f %10.1f%n", r.clients, r.requests, r.requests - r.ok,
+                    r.seconds, r.ok / r.seconds, r.percentileMs(50), r.percentileMs(99));
+            r.errors.forEach((error, count) -> System.out.printf("%28s x %d%n", error, count.sum()));
+        }
+    }
+
+    private Result run(int clients, int perClient) {
+        long[] latencies = new long[clients * perClient];
+        AtomicInteger ok = new AtomicInteger();
+        Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] done = new CompletableFuture<?>[clients];
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            done[c] = send(new Random(c), perClient, latencies, ok, errors);
+        }
+        CompletableFuture.allOf(done).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(clients, latencies.length, ok.get(), errors, seconds, Arrays.copyOf(latencies, ok.get()));
+    }
+
+    // one client: the next trade goes out when the previous one is answered
+    private CompletableFuture<Void> send(Random random, int remaining, long[] latencies, AtomicInteger ok,
+                                         Map<String, LongAdder> errors) {
+        if (remaining == 0) return CompletableFuture.completedFuture(null);
+        String body = "{\"customerId\":" + customers[random.nextInt(customers.length)]
+                + ",\"amount\":" + (1 + random.nextInt(500_000)) / 100.0
+                + ",\"type\":\"" + (random.nextBoolean() ? "LOSS" : "PROFIT") + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(url).timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        long sent = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    if (e == null && response.statusCode() == 200) {
+                        latencies[ok.getAndIncrement()] = System.nanoTime() - sent;
+                    } else {
+                        String error = e != null ? rootCause(e).getClass().getSimpleName() : "HTTP " + response.statusCode();
+                        errors.computeIfAbsent(error, k -> new LongAdder()).increment();
+                    }
+                    return null;
+                })
+                .thenCompose(v -> send(random, remaining - 1, latencies, ok, errors));
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null && e.getCause() != e) e = e.getCause();
+        return e;
+    }
+
+    private record Result(int clients, int requests, int ok, Map<String, LongAdder> errors, double seconds,
+                          long[] latencies) {
+        double percentileMs(int p) {
+            if (latencies.length == 0) return Double.NaN;
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * p / 100.0) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.sharedistribution.bench;
+
+import com.example.sharedistribution.dto.DistributionLine;
+import com.example.sharedistribution.dto.TradeResponse;
+import com.example.sharedistribution.entity.TradeType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the trade response, with an ObjectMapper configured the way Spring MVC builds it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradeResponseJsonBenchmark {
+
+    @Param({"4", "16"})
+    int lines;
+
+    ObjectMapper mapper;
+    TradeResponse response;
+
+    @Setup
+    public void setUp() {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        List<DistributionLine> distributions = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            distributions.add(new DistributionLine(1_000L + i, "Participant " + i,
+                    BigDecimal.valueOf(12_345 + i, 2), BigDecimal.valueOf(98_765 - i, 2)));
+        }
+        response = new TradeResponse(42L, new BigDecimal("1234.56"), TradeType.PROFIT, distributions);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(response);
+    }
+}
@@ -1,13 +0,0 @@
-package com.example.sharedistribution;
-
-import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
-
-@SpringBootApplication
-public class ShareDistributionApplication {
-
-	public static void main(String[] args) {
-		SpringApplication.run(ShareDistributionApplication.class, args);
-	}
-
-}